@@ -0,0 +1,66 @@
+package org.example.bench;
+
+import org.example.test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * test.attack 的一回合：选招式、格式化描述、扣血、按剩余血量选受伤描述
+ * 输出重定向到空流，测的是格式化和打印本身而不是终端。
+ * 被攻击者每回合开始时的血量取自固定种子生成的序列，各个受伤分支都会走到；
+ * attack内部用Math.random选招式和伤害，无法固定种子，只影响选中哪一条描述。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BattleBenchmark {
+    private static final int ROUNDS = 1024;
+
+    private PrintStream originalOut;
+    private test attacker;
+    private test enemy;
+    private int[] bloods;
+    private int next;
+
+    @Setup
+    public void setup() {
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream(), false));
+        attacker = new test("张三", 100, '男');
+        enemy = new test("李四", 100, '女');
+        SplittableRandom random = BenchData.random();
+        bloods = new int[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            bloods[i] = 1 + random.nextInt(120);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public int attack() {
+        enemy.setBlood(bloods[next++ & (ROUNDS - 1)]);
+        attacker.attack(enemy);
+        return enemy.getBlood();
+    }
+}
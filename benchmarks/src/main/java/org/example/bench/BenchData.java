@@ -0,0 +1,51 @@
+package org.example.bench;
+
+import org.example.board.BitBoard;
+
+import java.util.SplittableRandom;
+
+/**
+ * 基准测试共用的输入数据，全部由固定种子生成，每次运行完全相同
+ */
+final class BenchData {
+    static final long SEED = 20240601L;
+    static final int SIZE = BitBoard.DEFAULT_SIZE;
+
+    private BenchData() {
+    }
+
+    static SplittableRandom random() {
+        return new SplittableRandom(SEED);
+    }
+
+    /**
+     * 在中心附近随机落子生成的中局局面，每个局面下moves步
+     * @param lastMoves 输出每个局面最后一步的格子编号
+     */
+    static BitBoard[] positions(int count, int moves, int[] lastMoves) {
+        SplittableRandom random = random();
+        BitBoard[] positions = new BitBoard[count];
+        for (int i = 0; i < count; i++) {
+            BitBoard board = new BitBoard(SIZE);
+            int color = BitBoard.BLACK;
+            int last = -1;
+            while (board.moveCount() < moves) {
+                int row = SIZE / 2 - 5 + random.nextInt(11);
+                int col = SIZE / 2 - 5 + random.nextInt(11);
+                if (!board.isEmpty(row, col)) {
+                    continue;
+                }
+                // 最后一步允许连五，让胜负判断的两种结果都出现
+                if (board.place(row, col, color) && board.moveCount() < moves) {
+                    board.remove(row, col);
+                    continue;
+                }
+                last = row * SIZE + col;
+                color = BitBoard.opponent(color);
+            }
+            positions[i] = board;
+            lastMoves[i] = last;
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.bench;
+
+import org.example.net.Broadcaster;
+import org.example.net.OutboundQueue;
+import org.example.net.Peer;
+import org.example.protocol.Frame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一步棋广播给房间里的recipients个连接
+ * 基线是原来的做法：对每个连接各自拼接字符串并通过自动刷新的PrintWriter写出；
+ * 对比编码一次的Frame放进每个连接的发送队列。发送队列积压到一半时清空，相当于写线程及时写走了。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+    private static final int MOVES = 1024;
+    private static final int QUEUE_BYTES = 64 * 1024;
+
+    @Param({"2", "100", "1000"})
+    public int recipients;
+
+    private List<QueuePeer> peers;
+    private PrintWriter[] writers;
+    private int[] rows;
+    private int[] cols;
+    private int next;
+
+    @Setup
+    public void setup() {
+        peers = new ArrayList<>();
+        writers = new PrintWriter[recipients];
+        for (int i = 0; i < recipients; i++) {
+            peers.add(new QueuePeer("bench-" + i));
+            writers[i] = new PrintWriter(OutputStream.nullOutputStream(), true);
+        }
+        SplittableRandom random = BenchData.random();
+        rows = new int[MOVES];
+        cols = new int[MOVES];
+        for (int i = 0; i < MOVES; i++) {
+            rows[i] = random.nextInt(BenchData.SIZE);
+            cols[i] = random.nextInt(BenchData.SIZE);
+        }
+    }
+
+    @Benchmark
+    public void legacyFanOut() {
+        int i = next++ & (MOVES - 1);
+        for (PrintWriter out : writers) {
+            out.println("move," + rows[i] + "," + cols[i]);
+        }
+    }
+
+    @Benchmark
+    public int frameFanOut() {
+        int i = next++;
+        Frame frame = Frame.move(i, rows[i & (MOVES - 1)], cols[i & (MOVES - 1)]);
+        return Broadcaster.broadcast(peers, frame);
+    }
+
+    /**
+     * 只入队的连接，积压过半就清空
+     */
+    private static final class QueuePeer implements Peer {
+        private final String id;
+        private final OutboundQueue queue = new OutboundQueue(QUEUE_BYTES);
+
+        QueuePeer(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String id() {
+            return id;
+        }
+
+        @Override
+        public boolean send(Frame frame) {
+            if (queue.pendingBytes() > QUEUE_BYTES / 2) {
+                queue.clear();
+            }
+            return queue.offer(frame.encoded(Frame.TEXT));
+        }
+
+        @Override
+        public int pendingBytes() {
+            return queue.pendingBytes();
+        }
+
+        @Override
+        public boolean replacePending(Frame frame) {
+            return queue.replace(frame.encoded(Frame.TEXT));
+        }
+
+        @Override
+        public void close() {
+            queue.close();
+        }
+    }
+}
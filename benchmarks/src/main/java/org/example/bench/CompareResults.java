@@ -0,0 +1,96 @@
+package org.example.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 比较两次JMH运行的CSV结果（-rf csv），列出每个基准的变化，变差超过阈值的标为回退
+ * 用法：java -cp benchmarks.jar org.example.bench.CompareResults 基线.csv 本次.csv [阈值百分比，默认10]
+ * 平均时间越小越好，吞吐量越大越好；有回退时退出码为1，可以直接用在脚本里。
+ */
+public class CompareResults {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("用法: CompareResults 基线.csv 本次.csv [阈值百分比]");
+            return;
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, String[]> baseline = load(args[0]);
+        Map<String, String[]> current = load(args[1]);
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %8s%n", "基准", "基线", "本次", "变化");
+        for (Map.Entry<String, String[]> entry : current.entrySet()) {
+            String[] now = entry.getValue();
+            String[] before = baseline.get(entry.getKey());
+            double score = Double.parseDouble(now[4]);
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %8s  %s%n", entry.getKey(), "-", score, "-", now[6]);
+                continue;
+            }
+            double base = Double.parseDouble(before[4]);
+            double change = (score - base) / base * 100;
+            // 吞吐量模式下分数变小才是变差
+            double worse = now[1].equals("thrpt") ? -change : change;
+            boolean regressed = worse > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %14.3f %+7.1f%%  %s%s%n", entry.getKey(), base, score, change, now[6],
+                    regressed ? "  回退" : "");
+        }
+        System.out.println(regressions == 0 ? "没有超过 " + threshold + "% 的回退" : regressions + " 项回退超过 " + threshold + "%");
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return 基准名加参数 -> CSV的各列
+     */
+    private static Map<String, String[]> load(String file) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        Map<String, String[]> results = new LinkedHashMap<>();
+        for (int i = 1; i < lines.size(); i++) {
+            String[] columns = split(lines.get(i));
+            if (columns.length < 7) {
+                continue;
+            }
+            StringBuilder key = new StringBuilder(columns[0].replace("org.example.bench.", ""));
+            for (int c = 7; c < columns.length; c++) {
+                if (!columns[c].isEmpty()) {
+                    key.append(' ').append(columns[c]);
+                }
+            }
+            results.put(key.toString(), columns);
+        }
+        return results;
+    }
+
+    /**
+     * 按逗号拆分一行CSV，引号内的逗号不拆，去掉引号
+     */
+    private static String[] split(String line) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder column = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                columns.add(column.toString());
+                column.setLength(0);
+            } else {
+                column.append(c);
+            }
+        }
+        columns.add(column.toString());
+        return columns.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.bench;
+
+/**
+ * 改用BitBoard之前 Five.checkWin 和 GomokuServer.ClientHandler.checkWin 的判断方法，作为对比的基线
+ * 原来的棋盘是按钮数组，逐格比较按钮上的文字；这里用同样内容的字符串数组代替按钮，空格为null，
+ * 每格的字符串各自创建（原来由 String.valueOf(currentPlayer) 设置），比较走的是equals而不是引用相等。
+ */
+final class LegacyWinCheck {
+    private LegacyWinCheck() {
+    }
+
+    static boolean checkWin(String[][] buttons, int row, int col) {
+        int size = buttons.length;
+        String text = buttons[row][col];
+        // 检查水平方向
+        int count = 1;
+        for (int i = 1; i < 5; i++) {
+            if (col + i < size && buttons[row][col + i] != null && buttons[row][col + i].equals(text)) {
+                count++;
+            } else {
+                break;
+            }
+        }
+        for (int i = 1; i < 5; i++) {
+            if (col - i >= 0 && buttons[row][col - i] != null && buttons[row][col - i].equals(text)) {
+                count++;
+            } else {
+                break;
+            }
+        }
+        if (count >= 5) {
+            return true;
+        }
+
+        // 检查垂直方向
+        count = 1;
+        for (int i = 1; i < 5; i++) {
+            if (row + i < size && buttons[row + i][col] != null && buttons[row + i][col].equals(text)) {
+                count++;
+            } else {
+                break;
+            }
+        }
+        for (int i = 1; i < 5; i++) {
+            if (row - i >= 0 && buttons[row - i][col] != null && buttons[row - i][col].equals(text)) {
+                count++;
+            } else {
+                break;
+            }
+        }
+        if (count >= 5) {
+            return true;
+        }
+
+        // 检查对角线方向（左上到右下）
+        count = 1;
+        for (int i = 1; i < 5; i++) {
+            if (row + i < size && col + i < size && buttons[row + i][col + i] != null && buttons[row + i][col + i].equals(text)) {
+                count++;
+            } else {
+                break;
+            }
+        }
+        for (int i = 1; i < 5; i++) {
+            if (row - i >= 0 && col - i >= 0 && buttons[row - i][col - i] != null && buttons[row - i][col - i].equals(text)) {
+                count++;
+            } else {
+                break;
+            }
+        }
+        if (count >= 5) {
+            return true;
+        }
+
+        // 检查反向对角线方向（右上到左下）
+        count = 1;
+        for (int i = 1; i < 5; i++) {
+            if (row - i >= 0 && col + i < size && buttons[row - i][col + i] != null && buttons[row - i][col + i].equals(text)) {
+                count++;
+            } else {
+                break;
+            }
+        }
+        for (int i = 1; i < 5; i++) {
+            if (row + i < size && col - i >= 0 && buttons[row + i][col - i] != null && buttons[row + i][col - i].equals(text)) {
+                count++;
+            } else {
+                break;
+            }
+        }
+        return count >= 5;
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.bench;
+
+import org.example.protocol.MessageSink;
+import org.example.protocol.TextCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文本协议的解析和格式化
+ * 基线是原来 ClientHandler.handleInput 的 split + parseInt 和 sendMove 的字符串拼接，
+ * 对比TextCodec逐字符扫描的解码和直接写入ByteBuffer的编码
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextProtocolBenchmark {
+    private static final int MESSAGES = 1024;
+
+    private String[] lines;
+    private byte[][] lineBytes;
+    private int[] rows;
+    private int[] cols;
+    private final ByteBuffer out = ByteBuffer.allocate(TextCodec.MAX_FRAME_LENGTH);
+    private int decoded;
+    private final MessageSink sink = new MessageSink() {
+        @Override
+        public void onMove(int seq, int row, int col) {
+            decoded = row * BenchData.SIZE + col;
+        }
+    };
+    private int next;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = BenchData.random();
+        lines = new String[MESSAGES];
+        lineBytes = new byte[MESSAGES][];
+        rows = new int[MESSAGES];
+        cols = new int[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            rows[i] = random.nextInt(BenchData.SIZE);
+            cols[i] = random.nextInt(BenchData.SIZE);
+            lines[i] = "move," + rows[i] + "," + cols[i];
+            lineBytes[i] = lines[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    @Benchmark
+    public int legacyParse() {
+        String input = lines[next++ & (MESSAGES - 1)];
+        String[] parts = input.split(",");
+        if (parts.length == 3 && parts[0].equals("move")) {
+            int row = Integer.parseInt(parts[1]);
+            int col = Integer.parseInt(parts[2]);
+            return row * BenchData.SIZE + col;
+        }
+        return -1;
+    }
+
+    @Benchmark
+    public int textCodecDecodeString() {
+        TextCodec.decode(lines[next++ & (MESSAGES - 1)], sink);
+        return decoded;
+    }
+
+    @Benchmark
+    public int textCodecDecodeBytes() {
+        byte[] line = lineBytes[next++ & (MESSAGES - 1)];
+        TextCodec.decode(line, 0, line.length, sink);
+        return decoded;
+    }
+
+    /**
+     * 原来的 out.println("move," + row + "," + col)，包括编码为字节
+     */
+    @Benchmark
+    public byte[] legacyFormat() {
+        int i = next++ & (MESSAGES - 1);
+        return ("move," + rows[i] + "," + cols[i] + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int textCodecEncode() {
+        int i = next++ & (MESSAGES - 1);
+        out.clear();
+        TextCodec.encodeMove(out, i, rows[i], cols[i]);
+        return out.position();
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.bench;
+
+import org.example.board.BitBoard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 落子后的胜负判断：原来按钮数组上的逐格比较，对比BitBoard的线型查表
+ * 每次调用轮流取一个固定种子生成的中局局面，检查它的最后一步
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WinCheckBenchmark {
+    private static final int POSITIONS = 1024;
+    private static final int MOVES = 40;
+
+    private BitBoard[] boards;
+    private String[][][] legacyBoards;
+    private int[] lastMoves;
+    private int[] colors;
+    private int next;
+
+    @Setup
+    public void setup() {
+        lastMoves = new int[POSITIONS];
+        boards = BenchData.positions(POSITIONS, MOVES, lastMoves);
+        legacyBoards = new String[POSITIONS][BenchData.SIZE][BenchData.SIZE];
+        colors = new int[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            for (int row = 0; row < BenchData.SIZE; row++) {
+                for (int col = 0; col < BenchData.SIZE; col++) {
+                    int stone = boards[i].stoneAt(row, col);
+                    if (stone != BitBoard.EMPTY) {
+                        legacyBoards[i][row][col] = String.valueOf(BitBoard.symbol(stone));
+                    }
+                }
+            }
+            colors[i] = boards[i].stoneAt(lastMoves[i] / BenchData.SIZE, lastMoves[i] % BenchData.SIZE);
+        }
+    }
+
+    @Benchmark
+    public boolean legacyCheckWin() {
+        int i = next++ & (POSITIONS - 1);
+        return LegacyWinCheck.checkWin(legacyBoards[i], lastMoves[i] / BenchData.SIZE, lastMoves[i] % BenchData.SIZE);
+    }
+
+    @Benchmark
+    public boolean bitboardIsFive() {
+        int i = next++ & (POSITIONS - 1);
+        return boards[i].isFive(lastMoves[i] / BenchData.SIZE, lastMoves[i] % BenchData.SIZE, colors[i]);
+    }
+
+    /**
+     * 完整的一步：落子时增量更新线和评分并判断胜负，再撤回
+     */
+    @Benchmark
+    public boolean bitboardPlaceAndRemove() {
+        int i = next++ & (POSITIONS - 1);
+        BitBoard board = boards[i];
+        int row = lastMoves[i] / BenchData.SIZE;
+        int col = lastMoves[i] % BenchData.SIZE;
+        board.remove(row, col);
+        return board.place(row, col, colors[i]);
+    }
+}
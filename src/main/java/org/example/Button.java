@@ -1,13 +0,0 @@
-package org.example;
-
-public class Button {
-    private String text;
-
-    public Button(String text) {
-        this.text = text;
-    }
-
-    public String getText() {
-        return text;
-    }
-}
@@ -1,173 +1,66 @@
 package org.example;
+import org.example.board.BitBoard;
+import org.example.ui.BoardView;
+
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
 
 
-public class Five extends JFrame implements MouseListener {
-    private static final int BOARD_SIZE = 15; // 棋盘大小
-    private JPanel boardPanel;
-    private JButton[][] buttons; // 按钮数组
+public class Five extends JFrame implements BoardView.CellListener {
+    private static final int BOARD_SIZE = 15; // 默认棋盘大小，启动参数可以指定19路等更大的棋盘
+    private final BoardView boardView; // 自绘的棋盘
     private char currentPlayer = 'O'; // 当前玩家
+    private final BitBoard board;
 
     public Five() {
+        this(BOARD_SIZE);
+    }
+
+    public Five(int size) {
         super("五子棋");
+        board = new BitBoard(size);
         setSize(600, 600);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null); // 居中显示窗口
 
-        boardPanel = new JPanel(new GridLayout(BOARD_SIZE, BOARD_SIZE));
-        boardPanel.setBorder(BorderFactory.createLineBorder(Color.BLACK));
-
-        buttons = new JButton[BOARD_SIZE][BOARD_SIZE];
+        boardView = new BoardView(size);
+        boardView.setBorder(BorderFactory.createLineBorder(Color.BLACK));
+        boardView.setCellListener(this);
 
-        // 初始化按钮
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                JButton button = new JButton();
-                button.setBackground(Color.WHITE);
-                button.addMouseListener(this);
-                boardPanel.add(button);
-                buttons[i][j] = button;
-            }
-        }
-
-        add(boardPanel);
+        add(boardView);
         setVisible(true);
     }
 
     @Override
-    public void mouseClicked(MouseEvent e) {
-        JButton button = (JButton) e.getSource();
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                if (buttons[i][j] == button) {
-                    if (button.getText().isEmpty()) {
-                        button.setText(String.valueOf(currentPlayer));
-                        button.setEnabled(false); // 禁用已下过的按钮
-                        checkWin(i, j);
-                        currentPlayer = (currentPlayer == 'O') ? 'X' : 'O';
-                    }
-                    break;
-                }
-            }
+    public void onCell(int row, int col) {
+        if (board.isEmpty(row, col)) {
+            int color = currentPlayer == 'O' ? BitBoard.BLACK : BitBoard.WHITE;
+            boardView.place(row, col, color);
+            checkWin(row, col);
+            currentPlayer = (currentPlayer == 'O') ? 'X' : 'O';
         }
     }
 
     private void checkWin(int row, int col) {
-        // 检查水平方向
-        int count = 1;
-        for (int i = 1; i < 5; i++) {
-            if (col + i < BOARD_SIZE && buttons[row][col + i].getText().equals(String.valueOf(buttons[row][col].getText()))) {
-                count++;
-            } else {
-                break;
-            }
-        }
-        for (int i = 1; i < 5; i++) {
-            if (col - i >= 0 && buttons[row][col - i].getText().equals(String.valueOf(buttons[row][col].getText()))) {
-                count++;
-            } else {
-                break;
-            }
-        }
-        if (count >= 5) {
-            JOptionPane.showMessageDialog(this, "玩家 " + buttons[row][col].getText() + " 获胜！");
-            resetBoard();
-            return;
-        }
-
-        // 检查垂直方向
-        count = 1;
-        for (int i = 1; i < 5; i++) {
-            if (row + i < BOARD_SIZE && buttons[row + i][col].getText().equals(String.valueOf(buttons[row][col].getText()))) {
-                count++;
-            } else {
-                break;
-            }
-        }
-        for (int i = 1; i < 5; i++) {
-            if (row - i >= 0 && buttons[row - i][col].getText().equals(String.valueOf(buttons[row][col].getText()))) {
-                count++;
-            } else {
-                break;
-            }
-        }
-        if (count >= 5) {
-            JOptionPane.showMessageDialog(this, "玩家 " + buttons[row][col].getText() + " 获胜！");
-            resetBoard();
-            return;
-        }
-
-        // 检查对角线方向（左上到右下）
-        count = 1;
-        for (int i = 1; i < 5; i++) {
-            if (row + i < BOARD_SIZE && col + i < BOARD_SIZE && buttons[row + i][col + i].getText().equals(String.valueOf(buttons[row][col].getText()))) {
-                count++;
-            } else {
-                break;
-            }
-        }
-        for (int i = 1; i < 5; i++) {
-            if (row - i >= 0 && col - i >= 0 && buttons[row - i][col - i].getText().equals(String.valueOf(buttons[row][col].getText()))) {
-                count++;
-            } else {
-                break;
-            }
-        }
-        if (count >= 5) {
-            JOptionPane.showMessageDialog(this, "玩家 " + buttons[row][col].getText() + " 获胜！");
-            resetBoard();
-            return;
-        }
-
-        // 检查反向对角线方向（右上到左下）
-        count = 1;
-        for (int i = 1; i < 5; i++) {
-            if (row - i >= 0 && col + i < BOARD_SIZE && buttons[row - i][col + i].getText().equals(String.valueOf(buttons[row][col].getText()))) {
-                count++;
-            } else {
-                break;
-            }
-        }
-        for (int i = 1; i < 5; i++) {
-            if (row + i < BOARD_SIZE && col - i >= 0 && buttons[row + i][col - i].getText().equals(String.valueOf(buttons[row][col].getText()))) {
-                count++;
-            } else {
-                break;
-            }
-        }
-        if (count >= 5) {
-            JOptionPane.showMessageDialog(this, "玩家 " + buttons[row][col].getText() + " 获胜！");
+        // 四个方向的判断交给位棋盘的线型表
+        int color = currentPlayer == 'O' ? BitBoard.BLACK : BitBoard.WHITE;
+        if (board.place(row, col, color)) {
+            JOptionPane.showMessageDialog(this, "玩家 " + currentPlayer + " 获胜！");
             resetBoard();
-            return;
         }
     }
 
     private void resetBoard() {
         currentPlayer = 'O';
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                buttons[i][j].setText("");
-                buttons[i][j].setEnabled(true);
-            }
-        }
+        board.clear();
+        boardView.clear();
     }
 
-    @Override
-    public void mousePressed(MouseEvent e) {}
-
-    @Override
-    public void mouseReleased(MouseEvent e) {}
-
-    @Override
-    public void mouseEntered(MouseEvent e) {}
-
-    @Override
-    public void mouseExited(MouseEvent e) {}
-
+    /**
+     * 启动参数为棋盘大小，默认15
+     */
     public static void main(String[] args) {
-        new Five();
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : BOARD_SIZE;
+        SwingUtilities.invokeLater(() -> new Five(size));
     }
 }
@@ -1,70 +1,171 @@
 package org.example;
 
+import org.example.board.BitBoard;
+import org.example.protocol.ErrorCode;
+import org.example.protocol.MessageSink;
+import org.example.protocol.TextCodec;
+import org.example.ui.BoardView;
+import org.example.ui.ClientBoard;
+
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * 五子棋客户端类，继承自JFrame并实现了MouseListener接口
+ * 五子棋客户端类，继承自JFrame，棋盘由BoardView绘制，点击的格子通过CellListener回调
  * 负责创建游戏界面，处理玩家的点击事件，并与服务器通信
+ * 网络消息在"server-reader"线程上解码，落子写进无锁的ClientBoard，标题、棋钟和提示先放在原子字段里，
+ * 再请求一次界面刷新；刷新还没执行时不再重复invokeLater，重放或重连补发的大量落子只会让事件分发线程刷新一次。
+ * 发往服务器的消息由"server-writer"线程写出，事件分发线程不做网络I/O。
  */
-public class GomokuClient extends JFrame implements MouseListener {
-    // 棋盘大小常量
-    private static final int BOARD_SIZE = 15;
-    // 用于显示棋盘的面板
-    private JPanel boardPanel;
-    // 二维按钮数组，表示棋盘上的每个位置
-    private JButton[][] buttons;
-    // 当前玩家，初始为'O'
+public class GomokuClient extends JFrame implements BoardView.CellListener {
+    // 棋盘大小，和服务器一致
+    private static final int BOARD_SIZE = BitBoard.DEFAULT_SIZE;
+    // 自绘的棋盘，只在事件分发线程上访问
+    private final BoardView boardView = new BoardView(BOARD_SIZE);
+    // 网络线程更新的棋盘模型，刷新时同步到boardView
+    private final ClientBoard model = new ClientBoard(BOARD_SIZE);
+    // 已经投递了一次界面刷新、还没执行
+    private final AtomicBoolean renderPending = new AtomicBoolean();
+    // 等待刷新时应用的标题、棋钟（黑方毫秒、次数、白方毫秒、次数、走时的一方、收到时的nanoTime）和提示框
+    private final AtomicReference<String> pendingTitle = new AtomicReference<>();
+    private final AtomicReference<long[]> pendingClock = new AtomicReference<>();
+    private final AtomicBoolean pendingClockStop = new AtomicBoolean();
+    private final Queue<String> pendingMessages = new ConcurrentLinkedQueue<>();
+    // 当前玩家，初始为'O'，只在网络线程上访问
     private char currentPlayer = 'O';
     // 与服务器通信的Socket
     private Socket socket;
-    // 向服务器发送消息的输出流
-    private PrintWriter out;
+    // 向服务器发送消息的输出流，重连时替换
+    private volatile PrintWriter out;
+    // 写出发往服务器的消息
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "server-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
     // 从服务器接收消息的输入流
     private BufferedReader in;
+    // 断线后重连的最多尝试次数
+    private static final int RECONNECT_ATTEMPTS = 10;
+    // 服务器分配的会话令牌和最后收到的落子序号，重连时凭它们恢复
+    private volatile long token;
+    private volatile int lastSeq = -1;
+    // 棋钟：服务器随落子发来双方的时间，轮到的一方在本地倒数；以下字段只在事件分发线程上访问
+    private final JLabel clockLabel = new JLabel(" ", SwingConstants.CENTER);
+    private final Timer clockTimer = new Timer(200, e -> showClock());
+    private final int[] clockMillis = new int[2];
+    private final int[] clockPeriods = new int[2];
+    private int clockRunning = BitBoard.EMPTY;
+    private long clockStart;
+    // 观战的房间名，为null时作为玩家
+    private final String watchRoom;
+    // 服务器消息的解码回调，只创建一次
+    private final MessageSink serverMessages = new MessageSink() {
+        @Override
+        public void onMove(int seq, int row, int col) {
+            // 更新棋盘状态，服务器发来的序号决定是哪一方的棋子
+            char player = seq < 0 ? currentPlayer : seq % 2 == 0 ? 'O' : 'X';
+            updateBoard(row, col, player);
+            currentPlayer = player == 'O' ? 'X' : 'O';
+            lastSeq = Math.max(lastSeq, seq);
+        }
+
+        @Override
+        public void onMatched(int color, String room) {
+            showTitle("五子棋 - " + room + " 执" + (color == BitBoard.BLACK ? "黑" : "白"));
+        }
+
+        @Override
+        public void onError(int code) {
+            // 落子被服务器拒绝，棋盘本来就没有改动
+            showTitle("五子棋 - " + ErrorCode.describe(code));
+        }
+
+        @Override
+        public void onClock(int blackMillis, int blackPeriods, int whiteMillis, int whitePeriods) {
+            // 落子之后轮到的一方开始走时间；连续到达时只有最后一次会显示
+            int running = lastSeq % 2 == 0 ? BitBoard.WHITE : BitBoard.BLACK;
+            pendingClock.set(new long[]{blackMillis, blackPeriods, whiteMillis, whitePeriods, running, System.nanoTime()});
+            requestRender();
+        }
+
+        @Override
+        public void onPing() {
+            // 回应服务器的心跳，否则会被当作死连接断开
+            send("pong");
+        }
+
+        @Override
+        public void onSession(long sessionToken) {
+            token = sessionToken;
+        }
+
+        @Override
+        public void onSnapshot(int seq, int[] cells, int count) {
+            // 清空棋盘后按顺序重放快照中的着法，界面只整体重画一次
+            model.clear();
+            for (int i = 0; i < count; i++) {
+                model.place(cells[i] / BOARD_SIZE, cells[i] % BOARD_SIZE, i % 2 == 0 ? BitBoard.BLACK : BitBoard.WHITE);
+            }
+            requestRender();
+            currentPlayer = count % 2 == 0 ? 'O' : 'X';
+            lastSeq = seq;
+        }
+
+        @Override
+        public void onWin(int seq, int color) {
+            pendingClockStop.set(true);
+            // 刷新时在棋盘画好之后显示获胜信息对话框
+            showMessage("玩家 " + BitBoard.symbol(color) + " 获胜！");
+        }
+
+        @Override
+        public void onDecided(int seq, int color) {
+            showTitle("五子棋 - 玩家 " + BitBoard.symbol(color) + " 已有必胜");
+        }
+    };
+    /**
+     * 启动参数 "watch 房间名" 以观众身份进入房间，只看不下
+     */
     public static void main(String[] args) {
-        new GomokuClient();
+        new GomokuClient(args.length > 1 && args[0].equals("watch") ? args[1] : null);
+    }
+
+    public GomokuClient() {
+        this(null);
     }
 
     /**
      * GomokuClient构造函数
-     * 初始化游戏界面，创建棋盘和按钮，并尝试连接到服务器
+     * 初始化游戏界面，创建棋盘，并尝试连接到服务器
+     * @param watchRoom 观战的房间名，为null时作为玩家
      */
-    public GomokuClient() {
-        super("五子棋");
+    public GomokuClient(String watchRoom) {
+        super(watchRoom == null ? "五子棋" : "五子棋 - 观战 " + watchRoom);
+        this.watchRoom = watchRoom;
         setSize(600, 600);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
 
-        // 创建并设置棋盘面板
-        boardPanel = new JPanel(new GridLayout(BOARD_SIZE, BOARD_SIZE));
-        boardPanel.setBorder(BorderFactory.createLineBorder(Color.BLACK));
-
-        // 初始化棋盘按钮
-        buttons = new JButton[BOARD_SIZE][BOARD_SIZE];
-
-        // 遍历棋盘大小，创建每个按钮并添加到面板
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                JButton button = new JButton();
-                button.setBackground(Color.WHITE);
-                // 为按钮添加鼠标监听器
-                button.addMouseListener(this);
-                boardPanel.add(button);
-                buttons[i][j] = button;
-            }
-        }
-
+        // 设置棋盘，观战时不响应点击
+        boardView.setBorder(BorderFactory.createLineBorder(Color.BLACK));
+        boardView.setEnabled(watchRoom == null);
+        boardView.setCellListener(this);
 
-        // 将棋盘面板添加到框架，并显示出来
-        add(boardPanel);
+        // 将棋盘添加到框架，棋钟显示在上方，并显示出来
+        add(clockLabel, BorderLayout.NORTH);
+        add(boardView);
         setVisible(true);
 
         // 尝试连接到服务器
@@ -73,124 +174,183 @@ public class GomokuClient extends JFrame implements MouseListener {
 
     /**
      * 连接到服务器方法
-     * 尝试连接到指定地址和端口的服务器，并创建读写流
+     * 尝试连接到指定地址和端口的服务器，并启动接收线程
      */
     private void connectToServer() {
         try {
-            socket = new Socket("localhost", 8080);
-            out = new PrintWriter(socket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            open();
+        } catch (IOException e) {
+            // 连接服务器失败时显示对话框
+            JOptionPane.showMessageDialog(this, "无法连接到服务器，请检查服务器是否运行。");
+            e.printStackTrace();
+            return;
+        }
+        // 启动新线程监听服务器消息，断线后在同一个线程上重连
+        new Thread(this::receiveLoop, "server-reader").start();
+    }
 
-            // 启动新线程监听服务器消息
-            new Thread(() -> {
-                try {
-                    while (true) {
-                        String input = in.readLine();
-                        if (input == null) break;
+    /**
+     * 建立连接并创建读写流；已有会话时请求恢复，观战时重新进入房间
+     */
+    private void open() throws IOException {
+        socket = new Socket("localhost", 8080);
+        out = new PrintWriter(socket.getOutputStream(), true);
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        // 声明能处理落子中的序号和棋钟字段
+        out.println("hello");
+        if (watchRoom != null) {
+            out.println("watch," + watchRoom);
+        } else if (token != 0) {
+            out.println("resume," + String.format("%016x", token) + "," + lastSeq);
+        }
+    }
 
-                        // 处理服务器发来的消息
-                        handleInput(input);
-                    }
+    private void receiveLoop() {
+        while (true) {
+            try {
+                while (true) {
+                    String input = in.readLine();
+                    if (input == null) break;
+
+                    // 处理服务器发来的消息
+                    handleInput(input);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                try {
+                    socket.close();
                 } catch (IOException e) {
                     e.printStackTrace();
-                } finally {
-                    try {
-                        socket.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
                 }
-            }).start();
-        } catch (IOException e) {
-            // 连接服务器失败时显示对话框
-            JOptionPane.showMessageDialog(this, "无法连接到服务器，请检查服务器是否运行。");
-            e.printStackTrace();
+            }
+            if (!reconnect()) {
+                break;
+            }
         }
     }
 
+    /**
+     * 断线后每秒重试一次，最多RECONNECT_ATTEMPTS次
+     * @return 重连成功返回true
+     */
+    private boolean reconnect() {
+        for (int attempt = 0; attempt < RECONNECT_ATTEMPTS; attempt++) {
+            try {
+                Thread.sleep(1000);
+                open();
+                return true;
+            } catch (IOException e) {
+                // 服务器还没回来，继续重试
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        showMessage("与服务器的连接已断开。");
+        return false;
+    }
+
     /**
      * 处理服务器发来的消息
      * 根据消息类型更新棋盘或显示获胜信息
      * @param input 服务器发来的消息字符串
      */
     private void handleInput(String input) {
-        String[] parts = input.split(",");
-        if (parts.length == 3 && parts[0].equals("move")) {
-            int row = Integer.parseInt(parts[1]);
-            int col = Integer.parseInt(parts[2]);
-            // 更新棋盘状态
-            updateBoard(row, col, currentPlayer);
-        } else if (parts.length == 2 && parts[0].equals("win")) {
-            // 显示获胜信息对话框
-            JOptionPane.showMessageDialog(this, "玩家 " + parts[1] + " 获胜！");
-        }
+        TextCodec.decode(input, serverMessages);
     }
 
     /**
-     * 更新棋盘上的按钮状态
-     * 根据指定的位置和玩家标记按钮
-     * @param row 按钮所在的行
-     * @param col 按钮所在的列
+     * 在棋盘模型上放一颗棋子，界面在下一次刷新时更新，网络线程调用
+     * @param row 行
+     * @param col 列
      * @param player 当前玩家标记('O'或'X')
      */
     private void updateBoard(int row, int col, char player) {
-        JButton button = buttons[row][col];
-        button.setText(String.valueOf(player));
-        // 禁用已下棋的按钮
-        button.setEnabled(false);
-        // 根据当前玩家改变按钮背景色
-        button.setBackground(player == 'O' ? Color.BLACK : Color.RED);
+        model.place(row, col, player == 'O' ? BitBoard.BLACK : BitBoard.WHITE);
+        requestRender();
+    }
+
+    private void showTitle(String title) {
+        pendingTitle.set(title);
+        requestRender();
+    }
+
+    private void showMessage(String message) {
+        pendingMessages.offer(message);
+        requestRender();
     }
 
     /**
-     * 鼠标点击事件处理方法
-     * 当按钮被点击时，确定点击的按钮位置，并发送位置信息到服务器，同时更新棋盘状态
-     * @param e 鼠标事件
+     * 请求刷新界面，已经有一次刷新在排队时什么也不做
      */
-    @Override
-    public void mouseClicked(MouseEvent e) {
-        Component component = e.getComponent();
-        if (component instanceof JButton) {
-            JButton button = (JButton) component;
-            int row = -1;
-            int col = -1;
-
-            // 确定点击按钮的位置
-            for (int i = 0; i < BOARD_SIZE; i++) {
-                for (int j = 0; j < BOARD_SIZE; j++) {
-                    if (buttons[i][j] == button) {
-                        row = i;
-                        col = j;
-                        break;
-                    }
-                }
-            }
+    private void requestRender() {
+        if (renderPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::render);
+        }
+    }
 
-            // 如果找到按钮位置，发送位置信息到服务器，并更新棋盘状态
-            if (row != -1 && col != -1) {
-                out.println("move," + row + "," + col);
-                updateBoard(row, col, currentPlayer);
-                // 切换当前玩家
-                currentPlayer = (currentPlayer == 'O') ? 'X' : 'O';
-            }
+    /**
+     * 在事件分发线程上把网络线程积累的变化一次性应用到界面
+     */
+    private void render() {
+        // 先清掉标记，刷新过程中到达的变化会再投递一次
+        renderPending.set(false);
+        model.drainTo(boardView);
+        String title = pendingTitle.getAndSet(null);
+        if (title != null) {
+            setTitle(title);
+        }
+        long[] clock = pendingClock.getAndSet(null);
+        if (clock != null) {
+            clockMillis[BitBoard.BLACK] = (int) clock[0];
+            clockPeriods[BitBoard.BLACK] = (int) clock[1];
+            clockMillis[BitBoard.WHITE] = (int) clock[2];
+            clockPeriods[BitBoard.WHITE] = (int) clock[3];
+            clockRunning = (int) clock[4];
+            clockStart = clock[5];
+            clockTimer.start();
+            showClock();
+        }
+        if (pendingClockStop.getAndSet(false)) {
+            clockTimer.stop();
+            clockRunning = BitBoard.EMPTY;
+        }
+        String message;
+        while ((message = pendingMessages.poll()) != null) {
+            JOptionPane.showMessageDialog(this, message);
         }
     }
 
-    // 以下方法为MouseListener接口的实现，暂不需要实现逻辑
-    @Override
-    public void mousePressed(MouseEvent e) {}
+    /**
+     * 在写线程上发送一行，不阻塞调用者
+     */
+    private void send(String line) {
+        sender.execute(() -> out.println(line));
+    }
 
-    @Override
-    public void mouseReleased(MouseEvent e) {}
+    /**
+     * 刷新棋钟显示，轮到的一方减去从收到落子起经过的时间
+     */
+    private void showClock() {
+        long elapsed = clockRunning == BitBoard.EMPTY ? 0 : (System.nanoTime() - clockStart) / 1_000_000;
+        clockLabel.setText("黑 " + formatClock(BitBoard.BLACK, elapsed) + "    白 " + formatClock(BitBoard.WHITE, elapsed));
+    }
 
-    @Override
-    public void mouseEntered(MouseEvent e) {}
+    private String formatClock(int color, long elapsed) {
+        long millis = clockMillis[color] - (color == clockRunning ? elapsed : 0);
+        // 倒数到0时停在0，是否超时以服务器为准
+        long seconds = Math.max(0, (millis + 999) / 1000);
+        String text = String.format("%d:%02d", seconds / 60, seconds % 60);
+        return clockPeriods[color] > 0 ? text + " 读秒" + clockPeriods[color] + "次" : text;
+    }
 
+    /**
+     * 点击棋盘上的一格，把位置发送到服务器
+     * 棋盘等服务器广播这一步时再更新，不合法的落子会被拒绝
+     */
     @Override
-    public void mouseExited(MouseEvent e) {}
-
+    public void onCell(int row, int col) {
+        send("move," + row + "," + col);
+    }
 }
-
-
-
-
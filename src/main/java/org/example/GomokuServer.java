@@ -1,213 +1,460 @@
 package org.example;
 
-import java.awt.*;
+import org.example.archive.ArchiveExporter;
+import org.example.book.OpeningBook;
+import org.example.journal.MoveJournal;
+import org.example.log.AsyncLog;
+import org.example.net.HandlerExecutors;
+import org.example.net.IdleMonitor;
+import org.example.net.NioServer;
+import org.example.net.OutboundQueue;
+import org.example.net.Peer;
+import org.example.net.PeerListener;
+import org.example.protocol.BinaryCodec;
+import org.example.protocol.Frame;
+import org.example.protocol.MessageSink;
+import org.example.protocol.TextCodec;
+import org.example.room.Matchmaker;
+import org.example.room.Room;
+import org.example.room.RoomManager;
+import org.example.room.Session;
+import org.example.room.SessionRegistry;
+
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class GomokuServer {
+/**
+ * 五子棋服务器
+ * 启动参数：
+ *   "platform [线程数]"（默认）阻塞Socket，每个连接的读任务占用线程池中的一个平台线程，写任务另有按需创建的线程；
+ *   "virtual" 阻塞Socket，每个连接一个虚拟线程，可支撑数千名玩家同时在线；
+ *   "nio [线程数]" 基于Selector的非阻塞模式，少量事件循环线程即可维持大量空闲连接
+ * 每个连接属于一个房间，客户端发送 "join,房间名" 切换房间，未指定时进入默认房间；发送 "ai[,线程数]" 请电脑玩家对弈
+ * 棋局结束后再次发送 "join,本房间名" 开始新的一局，房间里的玩家都离开后也会开新局；棋盘下满按和棋结束
+ * 发送 "queue,等级分" 排队匹配分数相近的对手，配好后服务器发 "matched,O或X,房间名" 并把双方加入新房间
+ * 发送 "watch,房间名" 以观众身份进入房间：先收到一份棋局快照，之后是带序号的落子，跟不上时重发快照
+ * 连接建立后服务器发出 "session,令牌"；断线的客户端重连后发送 "resume,令牌,最后收到的序号" 回到原来的座位，
+ * 只补发错过的落子，错过太多时改发快照
+ * 连接长时间没有数据时服务器发 "ping"，客户端应回 "pong"，仍无回应就断开；每步有走棋时限，超时判负
+ * 每步之后服务器在后台判定轮到的一方是否有连续冲四或活三的必胜，有就向房间广播 "decided,X"
+ * 连接后第一个字节为BinaryCodec.MAGIC的客户端使用二进制协议，其余使用原来的文本协议
+ * 系统属性 gomoku.book 指定开局库文件时，电脑玩家先查开局库再搜索；
+ * 系统属性 gomoku.journal 指定日志目录时记录每一步，重启后恢复未结束的棋局；
+ * 系统属性 gomoku.archive 指定棋谱库文件时，分出胜负或和棋的棋局追加到其中，再指定 gomoku.index 目录时同时建局面索引
+ * 运行中的日志经AsyncLog异步、限速写出；运行指标见ServerMetrics，可通过JMX查看，也定期写入日志
+ */
+public class GomokuServer implements PeerListener {
     private static final int PORT = 8080;
-    private Map<String, ClientHandler> clients = new HashMap<>();
-    private char currentPlayer = 'O';
-    private Button[][] buttons;
+    // 阻塞模式下单个连接积压的待发送字节上限，以及写任务的合并缓冲区大小
+    private static final int MAX_PENDING_BYTES = 64 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 8 * 1024;
+    private Map<String, Peer> clients = new ConcurrentHashMap<>();
+    private AtomicInteger nextClientId = new AtomicInteger();
+    // 每盘棋由一个房间负责，房间分布在固定数量的工作线程上
+    private final RoomManager rooms = new RoomManager(Runtime.getRuntime().availableProcessors(),
+            loadOpeningBook(), openJournal(), openArchive());
+    // 会话比连接活得长，断线重连后凭令牌找回
+    private final SessionRegistry sessions = new SessionRegistry(rooms, rooms.timers());
+    // 按等级分排队匹配对手，配好后进入新建的房间
+    private final Matchmaker matchmaker = new Matchmaker(rooms, sessions);
 
-    public GomokuServer() {
-        initializeButtons();
+    public static void main(String[] args) {
+        GomokuServer server = new GomokuServer();
+        // 正常退出时把日志缓冲区写完
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.rooms.shutdown();
+            AsyncLog.close();
+        }));
+        server.rooms.metrics().start(server.rooms.timers(), server.clients.values(), server.rooms::roomCount);
+        if (args.length > 0 && args[0].equals("nio")) {
+            int loops = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+            server.startNioServer(loops);
+        } else {
+            String mode = args.length > 0 ? args[0] : HandlerExecutors.PLATFORM;
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+            server.startServer(HandlerExecutors.create(mode, threads), HandlerExecutors.createWriters(mode));
+        }
     }
 
-    private void initializeButtons() {
-        buttons = new Button[15][15];
-        for (int i = 0; i < 15; i++) {
-            for (int j = 0; j < 15; j++) {
-                buttons[i][j] = new Button(""); // 初始为空
-            }
+    /**
+     * 读取系统属性 gomoku.book 指定的开局库，未指定或打不开时返回null
+     */
+    private static OpeningBook loadOpeningBook() {
+        String path = System.getProperty("gomoku.book");
+        if (path == null) {
+            return null;
+        }
+        try {
+            OpeningBook book = OpeningBook.open(Paths.get(path));
+            System.out.println("已加载开局库 " + path + "，共 " + book.entryCount() + " 个条目");
+            return book;
+        } catch (IOException e) {
+            System.out.println("开局库加载失败: " + e.getMessage());
+            return null;
         }
     }
 
+    /**
+     * 打开系统属性 gomoku.journal 指定的日志目录，未指定或打不开时返回null
+     */
+    private static MoveJournal openJournal() {
+        String path = System.getProperty("gomoku.journal");
+        if (path == null) {
+            return null;
+        }
+        try {
+            MoveJournal journal = MoveJournal.open(Paths.get(path));
+            System.out.println("走棋日志 " + path + "，待恢复棋局 " + journal.recoveredGames().size() + " 盘");
+            return journal;
+        } catch (IOException e) {
+            System.out.println("走棋日志打开失败: " + e.getMessage());
+            return null;
+        }
+    }
 
-    public static void main(String[] args) {
-        new GomokuServer().startServer();
+    /**
+     * 打开系统属性 gomoku.archive 指定的棋谱库，未指定或打不开时返回null
+     */
+    private static ArchiveExporter openArchive() {
+        String path = System.getProperty("gomoku.archive");
+        if (path == null) {
+            return null;
+        }
+        try {
+            String index = System.getProperty("gomoku.index");
+            return new ArchiveExporter(Paths.get(path), index == null ? null : Paths.get(index));
+        } catch (IOException e) {
+            System.out.println("棋谱库打开失败: " + e.getMessage());
+            return null;
+        }
     }
 
-    private void startServer() {
+    /**
+     * @param executor 运行每个连接的读任务
+     * @param writers 运行每个连接的写任务，不能和executor共用固定大小的线程池
+     */
+    private void startServer(ExecutorService executor, ExecutorService writers) {
         try (ServerSocket serverSocket = new ServerSocket(PORT)) {
             System.out.println("服务器启动，等待客户端连接...");
 
             while (true) {
                 Socket clientSocket = serverSocket.accept();
-                String clientId = "client" + clients.size();
-                clients.put(clientId, new ClientHandler(clientSocket, clientId));
-                System.out.println("客户端 " + clientId + " 已连接");
+                String clientId = "client" + nextClientId.getAndIncrement();
+                ClientHandler handler = new ClientHandler(clientSocket, clientId, writers);
+                onConnect(handler);
+                executor.execute(handler);
             }
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            executor.shutdown();
+            writers.shutdown();
+        }
+    }
+
+    private void startNioServer(int loops) {
+        try {
+            System.out.println("服务器以NIO模式启动（" + loops + " 个事件循环），等待客户端连接...");
+            new NioServer(PORT, loops, this, rooms.timers()).serve();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void onConnect(Peer peer) {
+        clients.put(peer.id(), peer);
+        sessions.open(peer);
+        rooms.join(RoomManager.DEFAULT_ROOM, peer);
+        AsyncLog.info("客户端 " + peer.id() + " 已连接");
+    }
+
+    /**
+     * 协商前排队的会话令牌和快照是文本格式，已被丢弃，按二进制重发
+     */
+    @Override
+    public void onBinary(Peer peer) {
+        Session session = sessions.sessionOf(peer);
+        if (session != null) {
+            peer.send(Frame.session(session.token()));
         }
+        Room room = rooms.roomOf(peer);
+        if (room != null) {
+            room.sync(peer);
+        }
+    }
+
+    @Override
+    public void onClose(Peer peer) {
+        clients.remove(peer.id());
+        matchmaker.leave(peer);
+        // 玩家的座位保留一段时间等它重连
+        sessions.close(peer);
+        AsyncLog.info("客户端 " + peer.id() + " 已断开");
+    }
+
+    /**
+     * 处理客户端的落子请求
+     * 这里只转交给房间线程串行处理，网络线程不会因为棋局状态而阻塞
+     */
+    @Override
+    public void onMove(Peer peer, int row, int col) {
+        Room room = rooms.roomOf(peer);
+        Session session = sessions.sessionOf(peer);
+        if (room != null && session != null) {
+            room.move(peer, session.name(), row, col);
+        }
+    }
+
+    @Override
+    public void onJoin(Peer peer, String room) {
+        matchmaker.leave(peer);
+        sessions.moved(peer, room, false);
+        rooms.join(room, peer);
     }
 
-    private class ClientHandler implements Runnable {
+    @Override
+    public void onWatch(Peer peer, String room) {
+        matchmaker.leave(peer);
+        sessions.moved(peer, room, true);
+        rooms.watch(room, peer);
+    }
+
+    @Override
+    public void onQueue(Peer peer, int rating) {
+        matchmaker.enqueue(peer, rating);
+    }
+
+    @Override
+    public void onUnqueue(Peer peer) {
+        matchmaker.leave(peer);
+    }
+
+    @Override
+    public void onResume(Peer peer, long token, int lastSeq) {
+        if (sessions.resume(peer, token, lastSeq)) {
+            AsyncLog.info("客户端 " + peer.id() + " 恢复了会话");
+        }
+    }
+
+    @Override
+    public void onAi(Peer peer, int threads) {
+        Room room = rooms.roomOf(peer);
+        if (room != null) {
+            room.addAi(peer, threads);
+        }
+    }
+
+    /**
+     * 阻塞模式的连接处理器
+     * 第一个字节为BinaryCodec.MAGIC时按二进制帧读取，否则按行读取文本消息；
+     * 发送由单独的写任务完成，它从发送队列中取出积压的帧合并写出，广播线程不会被慢客户端阻塞
+     */
+    private class ClientHandler implements Runnable, Peer, MessageSink {
         private Socket socket;
         private String clientId;
-        private PrintWriter out;
-        private BufferedReader in;
+        private OutputStream out;
+        private BufferedInputStream in;
+        // 运行写任务，和读任务的线程池分开
+        private final Executor writers;
+        private final OutboundQueue outbound = new OutboundQueue(MAX_PENDING_BYTES);
+        // 空闲超时直接关闭Socket，阻塞在读上的线程随之退出
+        private final IdleMonitor idle = new IdleMonitor(rooms.timers(), this, this::close);
+        private volatile boolean binary;
+        // 文本客户端发过hello、resume或watch，落子带序号和棋钟
+        private volatile boolean extendedText;
 
-        public ClientHandler(Socket socket, String clientId) {
+        public ClientHandler(Socket socket, String clientId, Executor writers) throws IOException {
             this.socket = socket;
             this.clientId = clientId;
+            this.writers = writers;
+            this.out = socket.getOutputStream();
         }
 
         @Override
-        public void run() {
-            try {
-                out = new PrintWriter(socket.getOutputStream(), true);
-                in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        public String id() {
+            return clientId;
+        }
 
+        @Override
+        public boolean send(Frame frame) {
+            if (outbound.offer(frame.encoded(format()))) {
+                return true;
+            }
+            // 积压超过上限说明客户端读得太慢，断开它
+            close();
+            return false;
+        }
+
+        @Override
+        public int pendingBytes() {
+            return outbound.pendingBytes();
+        }
+
+        private int format() {
+            return binary ? Frame.BINARY : extendedText ? Frame.TEXT : Frame.LEGACY_TEXT;
+        }
+
+        @Override
+        public boolean replacePending(Frame frame) {
+            return outbound.replace(frame.encoded(format()));
+        }
+
+        /**
+         * 写任务：等待发送队列中的数据，合并后一次写出
+         */
+        private void writeLoop() {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            try {
                 while (true) {
-                    String input = in.readLine();
-                    if (input == null) break;
+                    buffer.clear();
+                    int n = outbound.take(buffer);
+                    if (n < 0) break;
 
-                    handleInput(input);
+                    out.write(buffer.array(), 0, n);
+                    out.flush();
                 }
             } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                try {
-                    socket.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+                // 写失败说明连接已断开，读线程会随之退出并清理
+                close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
 
-        private void handleInput(String input) {
-            String[] parts = input.split(",");
-            if (parts.length == 3 && parts[0].equals("move")) {
-                int row = Integer.parseInt(parts[1]);
-                int col = Integer.parseInt(parts[2]);
+        @Override
+        public void onMove(int seq, int row, int col) {
+            GomokuServer.this.onMove(this, row, col);
+        }
 
-                if (isValidMove(row, col)) {
-                    makeMove(row, col);
-                    broadcastMove(row, col);
-                    checkWin(row, col);
-                }
-            }
+        @Override
+        public void onJoin(String room) {
+            GomokuServer.this.onJoin(this, room);
         }
 
-        private boolean isValidMove(int row, int col) {
-            return row >= 0 && row < 15 && col >= 0 && col < 15;
+        @Override
+        public void onWatch(String room) {
+            extendedText = true;
+            GomokuServer.this.onWatch(this, room);
         }
 
-        private void makeMove(int row, int col) {
-            System.out.println("玩家 " + currentPlayer + " 下棋 (" + row + ", " + col + ")");
-            buttons[row][col] = new Button(String.valueOf(currentPlayer));
-            currentPlayer = (currentPlayer == 'O') ? 'X' : 'O';
+        @Override
+        public void onHello() {
+            extendedText = true;
+            idle.heartbeatSupported();
         }
 
-        private void broadcastMove(int row, int col) {
-            for (ClientHandler client : clients.values()) {
-                client.sendMove(row, col);
-            }
+        @Override
+        public void onPong() {
+            idle.heartbeatSupported();
         }
 
-        private void sendMove(int row, int col) {
-            out.println("move," + row + "," + col);
+        @Override
+        public void onPing() {
+            send(Frame.PONG);
         }
 
-        private void checkWin(int row, int col) {
-            // 检查水平方向
-            int count = 1;
-            for (int i = 1; i < 5; i++) {
-                if (col + i < 15 && buttons[row][col + i] != null && buttons[row][col + i].getText().equals(buttons[row][col].getText())) {
-                    count++;
-                } else {
-                    break;
-                }
-            }
-            for (int i = 1; i < 5; i++) {
-                if (col - i >= 0 && buttons[row][col - i] != null && buttons[row][col - i].getText().equals(buttons[row][col].getText())) {
-                    count++;
-                } else {
-                    break;
-                }
-            }
-            if (count >= 5) {
-                broadcastWin(buttons[row][col].getText());
-                return;
-            }
+        @Override
+        public void onQueue(int rating) {
+            GomokuServer.this.onQueue(this, rating);
+        }
 
-            // 检查垂直方向
-            count = 1;
-            for (int i = 1; i < 5; i++) {
-                if (row + i < 15 && buttons[row + i][col] != null && buttons[row + i][col].getText().equals(buttons[row][col].getText())) {
-                    count++;
-                } else {
-                    break;
-                }
-            }
-            for (int i = 1; i < 5; i++) {
-                if (row - i >= 0 && buttons[row - i][col] != null && buttons[row - i][col].getText().equals(buttons[row][col].getText())) {
-                    count++;
-                } else {
-                    break;
-                }
-            }
-            if (count >= 5) {
-                broadcastWin(buttons[row][col].getText());
-                return;
-            }
+        @Override
+        public void onUnqueue() {
+            GomokuServer.this.onUnqueue(this);
+        }
 
-            // 检查对角线方向（左上到右下）
-            count = 1;
-            for (int i = 1; i < 5; i++) {
-                if (row + i < 15 && col + i < 15 && buttons[row + i][col + i] != null && buttons[row + i][col + i].getText().equals(buttons[row][col].getText())) {
-                    count++;
-                } else {
-                    break;
-                }
-            }
-            for (int i = 1; i < 5; i++) {
-                if (row - i >= 0 && col - i >= 0 && buttons[row - i][col - i] != null && buttons[row - i][col - i].getText().equals(buttons[row][col].getText())) {
-                    count++;
-                } else {
-                    break;
-                }
-            }
-            if (count >= 5) {
-                broadcastWin(buttons[row][col].getText());
-                return;
-            }
+        @Override
+        public void onResume(long token, int lastSeq) {
+            extendedText = true;
+            GomokuServer.this.onResume(this, token, lastSeq);
+        }
 
-            // 检查反向对角线方向（右上到左下）
-            count = 1;
-            for (int i = 1; i < 5; i++) {
-                if (row - i >= 0 && col + i < 15 && buttons[row - i][col + i] != null && buttons[row - i][col + i].getText().equals(buttons[row][col].getText())) {
-                    count++;
-                } else {
-                    break;
-                }
+        @Override
+        public void onAi(int threads) {
+            GomokuServer.this.onAi(this, threads);
+        }
+
+        @Override
+        public void close() {
+            idle.stop();
+            outbound.close();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-            for (int i = 1; i < 5; i++) {
-                if (row + i < 15 && col - i >= 0 && buttons[row + i][col - i] != null && buttons[row + i][col - i].getText().equals(buttons[row][col].getText())) {
-                    count++;
+        }
+
+        @Override
+        public void run() {
+            try {
+                writers.execute(this::writeLoop);
+                idle.start();
+                in = new BufferedInputStream(socket.getInputStream());
+                in.mark(1);
+                if (in.read() == (BinaryCodec.MAGIC & 0xFF)) {
+                    // 丢弃还没发出的文本消息，并回送MAGIC
+                    binary = true;
+                    outbound.clear();
+                    outbound.offer(BinaryCodec.MAGIC_FRAME);
+                    idle.heartbeatSupported();
+                    onBinary(this);
+                    readBinary();
                 } else {
-                    break;
+                    in.reset();
+                    readText();
                 }
-            }
-            if (count >= 5) {
-                broadcastWin(buttons[row][col].getText());
-                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                close();
+                onClose(this);
             }
         }
 
-        private void broadcastWin(String winner) {
-            for (ClientHandler client : clients.values()) {
-                client.sendWin(winner);
+        private void readText() throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+            while (true) {
+                String input = reader.readLine();
+                if (input == null) break;
+
+                idle.touch();
+                TextCodec.decode(input, this);
             }
         }
 
-        private void sendWin(String winner) {
-            out.println("win," + winner);
+        private void readBinary() throws IOException {
+            DataInputStream data = new DataInputStream(in);
+            ByteBuffer frame = ByteBuffer.allocate(BinaryCodec.MAX_FRAME_LENGTH);
+            while (true) {
+                int type = data.read();
+                if (type < 0) break;
+
+                // 读出类型字节（变长帧再加上长度字节），确定帧长度后读完整帧
+                frame.clear();
+                frame.put((byte) type);
+                if (type == BinaryCodec.TYPE_JOIN || type == BinaryCodec.TYPE_WATCH) {
+                    frame.put(data.readByte());
+                }
+                frame.flip();
+                int length = BinaryCodec.frameLength(frame, 0);
+                if (length <= 0) break;
+
+                data.readFully(frame.array(), frame.limit(), length - frame.limit());
+                frame.limit(length);
+                idle.touch();
+                BinaryCodec.decode(frame, this);
+            }
         }
     }
 }
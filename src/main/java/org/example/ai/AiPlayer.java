@@ -0,0 +1,107 @@
+package org.example.ai;
+
+import org.example.board.BitBoard;
+import org.example.book.OpeningBook;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+/**
+ * 电脑玩家，可以坐在房间里代替一方下棋
+ * 搜索在单独的执行器上进行，不占用房间线程；每个电脑玩家有自己的置换表，可以在多步之间复用。
+ * 有连续冲四或活三的必胜时直接按ThreatSolver的证明走棋，局面在开局库中时按权重随机选一个库中的着法。
+ * 线程数按棋局配置，大于1时用Lazy SMP并行搜索，辅助线程也运行在同一个执行器上，
+ * 因此所有棋局的电脑玩家加起来最多占用执行器的线程数。
+ */
+public class AiPlayer {
+    // 置换表大小 2^16 个条目，约1MB
+    private static final int TABLE_BITS = 16;
+    // 证明数求解器的节点表大小和每次求解的节点预算
+    private static final int SOLVER_CAPACITY = 1 << 16;
+    private static final int SOLVER_BUDGET = 5_000;
+
+    private final Executor executor;
+    private final long thinkMillis;
+    private final BitBoard snapshot;
+    private final ParallelSearch search;
+    private final ThreatSolver solver = new ThreatSolver(SOLVER_CAPACITY);
+    // 开局库，棋盘大小不一致或没有时为null
+    private final OpeningBook book;
+    private final Zobrist zobrist;
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    /**
+     * @param threads 搜索线程数
+     */
+    public AiPlayer(int size, int threads, Executor executor, long thinkMillis) {
+        this(size, threads, executor, thinkMillis, null);
+    }
+
+    /**
+     * @param book 开局库，可以为null
+     */
+    public AiPlayer(int size, int threads, Executor executor, long thinkMillis, OpeningBook book) {
+        this.book = book != null && book.size() == size ? book : null;
+        this.zobrist = Zobrist.forSize(size);
+        this.executor = executor;
+        this.thinkMillis = thinkMillis;
+        this.snapshot = new BitBoard(size);
+        this.search = new ParallelSearch(size, threads, TABLE_BITS, executor);
+    }
+
+    /**
+     * 请求电脑为color走一步
+     * 局面在调用线程上复制，之后调用方可以继续修改自己的棋盘
+     * @param onMove 在搜索线程上回调，参数为格子编号，棋盘已满时为-1
+     * @return 上一次请求还没算完时不接受新请求，返回false
+     */
+    public boolean requestMove(BitBoard position, int color, IntConsumer onMove) {
+        if (!busy.compareAndSet(false, true)) {
+            return false;
+        }
+        snapshot.copyFrom(position);
+        executor.execute(() -> {
+            int cell;
+            try {
+                cell = forcedWin(color);
+                if (cell < 0) {
+                    cell = bookMove();
+                }
+                if (cell < 0) {
+                    cell = search.bestMove(snapshot, color, thinkMillis);
+                }
+            } finally {
+                busy.set(false);
+            }
+            onMove.accept(cell);
+        });
+        return true;
+    }
+
+    /**
+     * 开局库中的着法，哈希碰撞导致着法落在已有棋子上时不用
+     * @return 格子编号，库中没有这个局面时为-1
+     */
+    private int bookMove() {
+        if (book == null) {
+            return -1;
+        }
+        int cell = book.pickMove(zobrist.hash(snapshot), ThreadLocalRandom.current().nextLong());
+        int size = snapshot.size();
+        return cell >= 0 && cell < size * size && snapshot.isEmpty(cell / size, cell % size) ? cell : -1;
+    }
+
+    /**
+     * 有连续冲四或活三的必胜时直接走证明出的第一步，不做alpha-beta搜索
+     * @return 格子编号，没有找到必胜时为-1
+     */
+    private int forcedWin(int color) {
+        if (solver.solve(snapshot, color, ThreatSolver.VCF, SOLVER_BUDGET) == ThreatSolver.WIN
+                || solver.solve(snapshot, color, ThreatSolver.VCT, SOLVER_BUDGET) == ThreatSolver.WIN) {
+            return solver.winningMove();
+        }
+        return -1;
+    }
+}
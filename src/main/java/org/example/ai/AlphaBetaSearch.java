@@ -0,0 +1,315 @@
+package org.example.ai;
+
+import org.example.board.BitBoard;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 迭代加深的alpha-beta搜索（negamax形式）
+ * 候选着法只考虑已有棋子周围两格内的空位，并按Evaluator.scoreCell排序后只保留前若干个；
+ * 局面用Zobrist哈希增量维护，结果存入置换表。搜索过程中使用的数组都预先分配，不产生垃圾。
+ * 一个实例同一时间只能被一个线程使用；多个实例可以共享置换表并行搜索，见ParallelSearch。
+ */
+public class AlphaBetaSearch {
+    public static final int WIN_SCORE = 10_000_000;
+    // 分数超过这个值表示已经搜到必胜或必败
+    private static final int WIN_THRESHOLD = WIN_SCORE - 1_000;
+    private static final int INFINITY = Integer.MAX_VALUE - 1;
+    private static final int MAX_PLY = 32;
+    // 每个节点最多展开的候选着法数
+    private static final int BEAM_WIDTH = 12;
+    // 每搜索这么多节点检查一次时间
+    private static final int TIME_CHECK_MASK = 1023;
+
+    private final BitBoard board;
+    private final int size;
+    private final Zobrist zobrist;
+    private final TranspositionTable table;
+    private final int[][] moves;
+    private final int[][] scores;
+    // 候选着法去重用的标记，用递增的戳代替每次清空
+    private final int[] mark;
+    private int stamp;
+    // 并行搜索时由主线程置位，让辅助线程尽快结束
+    private final AtomicBoolean stopFlag;
+    // 辅助线程从更深的一层开始迭代，并给着法排序加少量随机扰动，让各线程搜索不同的子树
+    private final int startDepth;
+    private long noise;
+
+    private long hash;
+    private long nodes;
+    private long deadline;
+    private boolean aborted;
+    private int completedDepth;
+    private int rootScore;
+
+    public AlphaBetaSearch(int size, TranspositionTable table) {
+        this(size, table, 0, new AtomicBoolean());
+    }
+
+    /**
+     * @param helperIndex 0为主线程，大于0为辅助线程
+     */
+    AlphaBetaSearch(int size, TranspositionTable table, int helperIndex, AtomicBoolean stopFlag) {
+        this.stopFlag = stopFlag;
+        this.startDepth = 1 + helperIndex % 2;
+        this.noise = helperIndex == 0 ? 0 : 0x9E3779B97F4A7C15L * helperIndex;
+        this.board = new BitBoard(size);
+        this.size = size;
+        this.zobrist = Zobrist.forSize(size);
+        this.table = table;
+        this.moves = new int[MAX_PLY + 1][size * size];
+        this.scores = new int[MAX_PLY + 1][size * size];
+        this.mark = new int[size * size];
+    }
+
+    /**
+     * 在限定时间内为color找出最佳着法
+     * @param position 当前局面，不会被修改
+     * @param timeMillis 思考时间
+     * @return 格子编号 row * size + col；棋盘已满时返回-1
+     */
+    public int bestMove(BitBoard position, int color, long timeMillis) {
+        return bestMove(position, color, timeMillis, MAX_PLY);
+    }
+
+    /**
+     * 同bestMove，但最多搜索到maxDepth层
+     */
+    public int bestMove(BitBoard position, int color, long timeMillis, int maxDepth) {
+        board.copyFrom(position);
+        hash = zobrist.hash(board);
+        nodes = 0;
+        aborted = false;
+        completedDepth = 0;
+        deadline = System.nanoTime() + timeMillis * 1_000_000L;
+
+        int count = generateMoves(0, color, -1);
+        if (count == 0) {
+            return -1;
+        }
+        // 能直接连五就不用搜索
+        for (int i = 0; i < count; i++) {
+            int cell = moves[0][i];
+            if (board.place(cell / size, cell % size, color)) {
+                board.remove(cell / size, cell % size);
+                return cell;
+            }
+            board.remove(cell / size, cell % size);
+        }
+
+        int best = moves[0][0];
+        for (int depth = Math.min(startDepth, maxDepth); depth <= Math.min(maxDepth, MAX_PLY); depth++) {
+            int move = searchRoot(depth, color, best);
+            if (aborted) {
+                break;
+            }
+            best = move;
+            completedDepth = depth;
+            if (rootScore >= WIN_THRESHOLD) {
+                // 已经找到必胜，继续加深没有意义
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 上一次搜索完整完成的深度
+     */
+    public int completedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * 上一次搜索访问的节点数
+     */
+    public long nodes() {
+        return nodes;
+    }
+
+    private int searchRoot(int depth, int color, int previousBest) {
+        int count = generateMoves(0, color, previousBest);
+        int alpha = -INFINITY;
+        int bestMove = moves[0][0];
+        for (int i = 0; i < count; i++) {
+            int cell = moves[0][i];
+            int score = searchMove(cell, depth, 0, alpha, INFINITY, color);
+            if (aborted) {
+                break;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestMove = cell;
+            }
+        }
+        if (!aborted) {
+            rootScore = alpha;
+            table.store(hash, depth, alpha, TranspositionTable.EXACT, bestMove);
+        }
+        return bestMove;
+    }
+
+    /**
+     * 走一步并递归搜索，返回这一步对color的分数
+     */
+    private int searchMove(int cell, int depth, int ply, int alpha, int beta, int color) {
+        int row = cell / size;
+        int col = cell % size;
+        int score;
+        if (board.place(row, col, color)) {
+            score = WIN_SCORE - ply - 1;
+        } else {
+            hash ^= zobrist.key(color, cell);
+            score = -negamax(depth - 1, ply + 1, -beta, -alpha, BitBoard.opponent(color));
+            hash ^= zobrist.key(color, cell);
+        }
+        board.remove(row, col);
+        return score;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta, int color) {
+        if ((++nodes & TIME_CHECK_MASK) == 0 && (stopFlag.get() || System.nanoTime() > deadline)) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (depth <= 0 || ply >= MAX_PLY) {
+            return Evaluator.evaluate(board, color);
+        }
+
+        int ttMove = -1;
+        long entry = table.probe(hash);
+        if (entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int flag = TranspositionTable.flag(entry);
+                if (flag == TranspositionTable.EXACT
+                        || (flag == TranspositionTable.LOWER && score >= beta)
+                        || (flag == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int count = generateMoves(ply, color, ttMove);
+        if (count == 0) {
+            return 0;
+        }
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = -1;
+        for (int i = 0; i < count; i++) {
+            int cell = moves[ply][i];
+            int score = searchMove(cell, depth, ply, alpha, beta, color);
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = cell;
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+
+        int flag = best <= originalAlpha ? TranspositionTable.UPPER
+                : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        table.store(hash, depth, toTable(best, ply), flag, bestMove);
+        return best;
+    }
+
+    /**
+     * 生成候选着法并排序，firstMove（置换表或上一轮的最佳着法）排在最前
+     * @return 候选着法数量，结果在moves[ply]中
+     */
+    private int generateMoves(int ply, int color, int firstMove) {
+        int[] list = moves[ply];
+        int[] values = scores[ply];
+        int count = 0;
+        if (board.moveCount() == 0) {
+            list[0] = (size / 2) * size + size / 2;
+            return 1;
+        }
+
+        stamp++;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (board.isEmpty(row, col)) {
+                    continue;
+                }
+                // 棋子周围两格内的空位都是候选
+                for (int r = Math.max(0, row - 2); r <= Math.min(size - 1, row + 2); r++) {
+                    for (int c = Math.max(0, col - 2); c <= Math.min(size - 1, col + 2); c++) {
+                        int cell = r * size + c;
+                        if (mark[cell] == stamp || !board.isEmpty(r, c)) {
+                            continue;
+                        }
+                        mark[cell] = stamp;
+                        int value = cell == firstMove ? Integer.MAX_VALUE : Evaluator.scoreCell(board, r, c, color) + nextNoise();
+                        // 插入排序，只保留分数最高的BEAM_WIDTH个
+                        int pos = Math.min(count, BEAM_WIDTH);
+                        while (pos > 0 && values[pos - 1] < value) {
+                            if (pos < BEAM_WIDTH) {
+                                list[pos] = list[pos - 1];
+                                values[pos] = values[pos - 1];
+                            }
+                            pos--;
+                        }
+                        if (pos < BEAM_WIDTH) {
+                            list[pos] = cell;
+                            values[pos] = value;
+                            if (count < BEAM_WIDTH) {
+                                count++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 辅助线程的排序扰动，只影响分数相近的着法；主线程恒为0
+     */
+    private int nextNoise() {
+        if (noise == 0) {
+            return 0;
+        }
+        noise ^= noise << 13;
+        noise ^= noise >>> 7;
+        noise ^= noise << 17;
+        return (int) (noise & 7);
+    }
+
+    /**
+     * 必胜分数存入置换表前换算成相对当前节点的距离，取出时再换算回来
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_THRESHOLD) {
+            return score + ply;
+        }
+        if (score <= -WIN_THRESHOLD) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_THRESHOLD) {
+            return score - ply;
+        }
+        if (score <= -WIN_THRESHOLD) {
+            return score + ply;
+        }
+        return score;
+    }
+}
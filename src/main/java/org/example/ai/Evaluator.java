@@ -0,0 +1,37 @@
+package org.example.ai;
+
+import org.example.board.BitBoard;
+
+/**
+ * 局面评估
+ * 整体评估：BitBoard随落子增量维护的窗口分，查询是O(1)；
+ * 着法排序：在空位试下一子，用LinePatterns查四个方向的线型，用于挑选候选着法
+ */
+public final class Evaluator {
+    // 各线型对着法排序的价值，下标为LinePatterns.NONE到FIVE
+    private static final int[] SHAPE_SCORE = {0, 12, 150, 1_500, 2_000, 20_000, 100_000};
+
+    private Evaluator() {
+    }
+
+    /**
+     * 从color的角度评估整个棋盘
+     */
+    public static int evaluate(BitBoard board, int color) {
+        return board.score(color);
+    }
+
+    /**
+     * 空位(row, col)对双方的价值，进攻和防守都计入，用于着法排序
+     */
+    public static int scoreCell(BitBoard board, int row, int col, int color) {
+        return shapeScore(board, row, col, color) * 2 + shapeScore(board, row, col, BitBoard.opponent(color));
+    }
+
+    private static int shapeScore(BitBoard board, int row, int col, int color) {
+        return SHAPE_SCORE[board.shape(row, col, color, BitBoard.HORIZONTAL)]
+                + SHAPE_SCORE[board.shape(row, col, color, BitBoard.VERTICAL)]
+                + SHAPE_SCORE[board.shape(row, col, color, BitBoard.DIAGONAL)]
+                + SHAPE_SCORE[board.shape(row, col, color, BitBoard.ANTI_DIAGONAL)];
+    }
+}
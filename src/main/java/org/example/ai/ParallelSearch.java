@@ -0,0 +1,111 @@
+package org.example.ai;
+
+import org.example.board.BitBoard;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lazy SMP并行搜索
+ * 主线程和若干辅助线程对同一局面各自做迭代加深搜索，共享一张无锁置换表；
+ * 辅助线程的结果不直接使用，它们写入置换表的条目让主线程更快地截断和排序。
+ * 主线程结束后置位停止标志，辅助线程在下一次检查时退出，主线程不等待它们；需要完整统计时调用awaitHelpers。
+ */
+public class ParallelSearch {
+    private final Executor helperExecutor;
+    private final AtomicBoolean stopFlag = new AtomicBoolean();
+    private final AlphaBetaSearch main;
+    private final AlphaBetaSearch[] helpers;
+    // 每个辅助线程自己的局面副本，启动前在调用线程上复制
+    private final BitBoard[] helperBoards;
+    // 辅助线程还在运行时不重复启动它，避免同一个搜索实例被两个线程使用
+    private final AtomicBoolean[] helperBusy;
+
+    /**
+     * @param threads 总线程数，包括调用bestMove的线程
+     * @param tableBits 共享置换表大小为 2^tableBits
+     * @param helperExecutor 运行辅助线程的执行器
+     */
+    public ParallelSearch(int size, int threads, int tableBits, Executor helperExecutor) {
+        this.helperExecutor = helperExecutor;
+        TranspositionTable table = new TranspositionTable(tableBits);
+        this.main = new AlphaBetaSearch(size, table, 0, stopFlag);
+        int helperCount = Math.max(0, threads - 1);
+        this.helpers = new AlphaBetaSearch[helperCount];
+        this.helperBoards = new BitBoard[helperCount];
+        this.helperBusy = new AtomicBoolean[helperCount];
+        for (int i = 0; i < helperCount; i++) {
+            helpers[i] = new AlphaBetaSearch(size, table, i + 1, stopFlag);
+            helperBoards[i] = new BitBoard(size);
+            helperBusy[i] = new AtomicBoolean();
+        }
+    }
+
+    /**
+     * 在限定时间内为color找出最佳着法，在调用线程上运行主搜索
+     * @return 格子编号；棋盘已满时返回-1
+     */
+    public int bestMove(BitBoard position, int color, long timeMillis) {
+        return bestMove(position, color, timeMillis, Integer.MAX_VALUE);
+    }
+
+    public int bestMove(BitBoard position, int color, long timeMillis, int maxDepth) {
+        stopFlag.set(false);
+        for (int i = 0; i < helpers.length; i++) {
+            if (!helperBusy[i].compareAndSet(false, true)) {
+                continue;
+            }
+            helperBoards[i].copyFrom(position);
+            AlphaBetaSearch helper = helpers[i];
+            BitBoard board = helperBoards[i];
+            AtomicBoolean busy = helperBusy[i];
+            helperExecutor.execute(() -> {
+                try {
+                    if (!stopFlag.get()) {
+                        helper.bestMove(board, color, timeMillis, maxDepth);
+                    }
+                } finally {
+                    busy.set(false);
+                }
+            });
+        }
+        int move = main.bestMove(position, color, timeMillis, maxDepth);
+        stopFlag.set(true);
+        return move;
+    }
+
+    public int threads() {
+        return helpers.length + 1;
+    }
+
+    /**
+     * 主线程上一次搜索完整完成的深度
+     */
+    public int completedDepth() {
+        return main.completedDepth();
+    }
+
+    /**
+     * 等上一次搜索的辅助线程全部退出，之后nodes()不再变化
+     * 停止标志已经置位，辅助线程每隔几千个节点检查一次，等待很短
+     */
+    public void awaitHelpers() {
+        for (AtomicBoolean busy : helperBusy) {
+            while (busy.get()) {
+                LockSupport.parkNanos(50_000);
+            }
+        }
+    }
+
+    /**
+     * 上一次搜索所有线程访问的节点数之和（辅助线程可能还在累加，先调用awaitHelpers）
+     */
+    public long nodes() {
+        long nodes = main.nodes();
+        for (AlphaBetaSearch helper : helpers) {
+            nodes += helper.nodes();
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.ai;
+
+import org.example.board.BitBoard;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 并行搜索的扩展性测试：同一组中局局面分别用1到N个线程搜索到固定深度，比较所用时间
+ * 用法：java org.example.ai.SearchScaling [最大线程数] [深度] [局面数]
+ * 局面由固定种子随机生成，多次运行结果可以比较。
+ * 加速比是1线程的用时除以N线程的用时。Lazy SMP的辅助线程大多在重复主线程的工作，节点数随线程数增加不代表搜得更快，
+ * 所以不用每秒节点数算加速比，只作参考列出；节点数在辅助线程全部退出后读取。
+ * 线程数超过CPU核数时各线程只是轮流运行，加速比没有意义，表头前会输出核数。
+ */
+public class SearchScaling {
+    private static final long SEED = 20240601L;
+    private static final int SIZE = BitBoard.DEFAULT_SIZE;
+    // 每个局面先走这么多步
+    private static final int OPENING_MOVES = 12;
+    // 搜索到固定深度，时间只是防止某个局面跑得太久的上限
+    private static final long TIME_LIMIT_MILLIS = 600_000;
+
+    public static void main(String[] args) {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int positionCount = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        BitBoard[] positions = positions(positionCount);
+        ExecutorService executor = Executors.newFixedThreadPool(maxThreads, r -> {
+            Thread thread = new Thread(r, "scaling-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 先用1线程跑一遍预热JIT，否则第一行的用时偏长，后面的加速比虚高
+        run(positions, 1, depth, executor);
+        System.out.println("CPU核数 " + Runtime.getRuntime().availableProcessors() + "，搜索深度 " + depth
+                + "，局面数 " + positions.length);
+        System.out.println("线程数  平均毫秒  加速比  节点/秒  未到深度");
+        double base = 0;
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            long[] result = run(positions, threads, depth, executor);
+            long elapsed = result[0];
+            if (threads == 1) {
+                base = elapsed;
+            }
+            System.out.printf("%6d  %8.1f  %6.2f  %8.0f  %8d%n", threads, elapsed / 1e6 / positions.length,
+                    base / elapsed, result[1] * 1e9 / elapsed, result[2]);
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * 每个局面搜索到depth层
+     * @return 总用时（纳秒）、总节点数、没有搜完depth层的局面数
+     */
+    private static long[] run(BitBoard[] positions, int threads, int depth, ExecutorService executor) {
+        long elapsed = 0;
+        long nodes = 0;
+        long shallow = 0;
+        for (BitBoard position : positions) {
+            // 每个局面用新的置换表，避免前一次搜索的结果影响下一次
+            ParallelSearch search = new ParallelSearch(SIZE, threads, 18, executor);
+            int color = position.moveCount() % 2 == 0 ? BitBoard.BLACK : BitBoard.WHITE;
+            long start = System.nanoTime();
+            search.bestMove(position, color, TIME_LIMIT_MILLIS, depth);
+            elapsed += System.nanoTime() - start;
+            search.awaitHelpers();
+            nodes += search.nodes();
+            // 找到必胜时会提前结束，不算到达固定深度
+            if (search.completedDepth() < depth) {
+                shallow++;
+            }
+        }
+        return new long[]{elapsed, nodes, shallow};
+    }
+
+    /**
+     * 在中心附近随机落子生成局面，跳过已经连五的走法
+     */
+    private static BitBoard[] positions(int count) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        BitBoard[] positions = new BitBoard[count];
+        for (int i = 0; i < count; i++) {
+            BitBoard board = new BitBoard(SIZE);
+            int color = BitBoard.BLACK;
+            while (board.moveCount() < OPENING_MOVES) {
+                int row = SIZE / 2 - 3 + random.nextInt(7);
+                int col = SIZE / 2 - 3 + random.nextInt(7);
+                if (!board.isEmpty(row, col)) {
+                    continue;
+                }
+                if (board.place(row, col, color)) {
+                    board.remove(row, col);
+                    continue;
+                }
+                color = BitBoard.opponent(color);
+            }
+            positions[i] = board;
+        }
+        return positions;
+    }
+}
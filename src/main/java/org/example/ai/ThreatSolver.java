@@ -0,0 +1,331 @@
+package org.example.ai;
+
+import org.example.board.BitBoard;
+import org.example.board.LinePatterns;
+
+/**
+ * 连续冲四（VCF）/ 连续活三冲四（VCT）的证明数搜索
+ * 进攻方每一步都必须形成威胁：VCF只走冲四，VCT还可以走活三；防守方只考虑挡住威胁的点和自己的反冲四。
+ * 搜索树显式保存在预先分配的节点表中，节点表满或展开次数达到预算时停止，结果为UNKNOWN。
+ * 一个实例同一时间只能被一个线程使用，节点表在多次求解之间复用。
+ */
+public class ThreatSolver {
+    public static final int VCF = 0;
+    public static final int VCT = 1;
+
+    public static final int UNKNOWN = 0;
+    // 进攻方有必胜
+    public static final int WIN = 1;
+    // 在限定的威胁着法内没有必胜，不代表局面不好
+    public static final int NO_WIN = 2;
+
+    private static final int INFINITY = 1_000_000_000;
+    // 超过这个深度的分支当作失败，避免无穷的冲四序列
+    private static final int MAX_DEPTH = 40;
+    // 每个节点最多生成的子节点数
+    private static final int MAX_CHILDREN = 64;
+
+    private final int capacity;
+    // 节点表：证明数、反证数、第一个子节点、下一个兄弟节点、到达该节点的着法
+    private final int[] proof;
+    private final int[] disproof;
+    private final int[] firstChild;
+    private final int[] sibling;
+    private final int[] move;
+    private int count;
+
+    // 从根到当前节点的路径，选择和回退时使用
+    private final int[] path = new int[MAX_DEPTH + 1];
+    private final int[] children = new int[MAX_CHILDREN];
+    // evaluate只数个数，不能覆盖正在展开的children
+    private final int[] scratch = new int[2];
+    private int[] mark = new int[0];
+    private int stamp;
+
+    private BitBoard board;
+    private int attacker;
+    private int mode;
+    private long expansions;
+
+    /**
+     * @param capacity 节点表最多保存的节点数，每个节点20字节
+     */
+    public ThreatSolver(int capacity) {
+        this.capacity = capacity;
+        this.proof = new int[capacity];
+        this.disproof = new int[capacity];
+        this.firstChild = new int[capacity];
+        this.sibling = new int[capacity];
+        this.move = new int[capacity];
+    }
+
+    /**
+     * 判断attacker在position上是否有VCF或VCT必胜
+     * 调用前应轮到attacker走棋
+     * @param nodeBudget 最多展开的节点数
+     * @return WIN、NO_WIN或UNKNOWN
+     */
+    public int solve(BitBoard position, int attacker, int mode, int nodeBudget) {
+        if (board == null || board.size() != position.size()) {
+            board = new BitBoard(position.size());
+            mark = new int[position.size() * position.size()];
+        }
+        board.copyFrom(position);
+        this.attacker = attacker;
+        this.mode = mode;
+        expansions = 0;
+        count = 0;
+        newNode(-1);
+        evaluate(0, true);
+
+        while (proof[0] != 0 && disproof[0] != 0 && expansions < nodeBudget) {
+            int depth = 0;
+            int node = 0;
+            path[0] = 0;
+            while (firstChild[node] >= 0) {
+                node = selectChild(node, depth % 2 == 0);
+                board.place(move[node] / board.size(), move[node] % board.size(), depth % 2 == 0 ? attacker : BitBoard.opponent(attacker));
+                path[++depth] = node;
+            }
+            boolean full = !expand(node, depth);
+            for (int i = depth; i >= 0; i--) {
+                update(path[i], i % 2 == 0);
+                if (i > 0) {
+                    board.remove(move[path[i]] / board.size(), move[path[i]] % board.size());
+                }
+            }
+            if (full) {
+                break;
+            }
+        }
+        if (proof[0] == 0) {
+            return WIN;
+        }
+        return disproof[0] == 0 ? NO_WIN : UNKNOWN;
+    }
+
+    /**
+     * 上一次求解为WIN时的第一步，格子编号；否则为-1
+     */
+    public int winningMove() {
+        if (count == 0 || proof[0] != 0) {
+            return -1;
+        }
+        if (firstChild[0] < 0) {
+            // 根节点就能直接连五
+            return fiveCell(attacker);
+        }
+        for (int child = firstChild[0]; child >= 0; child = sibling[child]) {
+            if (proof[child] == 0) {
+                return move[child];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 上一次求解展开的节点数
+     */
+    public long expansions() {
+        return expansions;
+    }
+
+    private int newNode(int cell) {
+        int node = count++;
+        proof[node] = 1;
+        disproof[node] = 1;
+        firstChild[node] = -1;
+        sibling[node] = -1;
+        move[node] = cell;
+        return node;
+    }
+
+    /**
+     * 进攻方节点选证明数最小的子节点，防守方节点选反证数最小的子节点
+     */
+    private int selectChild(int node, boolean attackerToMove) {
+        int best = -1;
+        int bestValue = Integer.MAX_VALUE;
+        for (int child = firstChild[node]; child >= 0; child = sibling[child]) {
+            int value = attackerToMove ? proof[child] : disproof[child];
+            if (value < bestValue) {
+                best = child;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    private void update(int node, boolean attackerToMove) {
+        if (firstChild[node] < 0) {
+            return;
+        }
+        int min = INFINITY;
+        int sum = 0;
+        for (int child = firstChild[node]; child >= 0; child = sibling[child]) {
+            int minPart = attackerToMove ? proof[child] : disproof[child];
+            int sumPart = attackerToMove ? disproof[child] : proof[child];
+            min = Math.min(min, minPart);
+            sum = Math.min(INFINITY, sum + sumPart);
+        }
+        if (attackerToMove) {
+            proof[node] = min;
+            disproof[node] = sum;
+        } else {
+            proof[node] = sum;
+            disproof[node] = min;
+        }
+    }
+
+    /**
+     * 生成子节点并立即判断每个子节点是否已分胜负，棋盘此时处于node的局面
+     * @return 节点表已满返回false
+     */
+    private boolean expand(int node, int depth) {
+        expansions++;
+        boolean attackerToMove = depth % 2 == 0;
+        int side = attackerToMove ? attacker : BitBoard.opponent(attacker);
+        if (depth >= MAX_DEPTH) {
+            setResult(node, false);
+            return true;
+        }
+        int n = generate(attackerToMove);
+        if (n == 0) {
+            // 进攻方没有威胁可走；防守方总能去挡，evaluate已经排除了进攻方没有威胁的情况
+            setResult(node, !attackerToMove);
+            return true;
+        }
+        if (count + n > capacity) {
+            return false;
+        }
+        int previous = -1;
+        for (int i = 0; i < n; i++) {
+            int cell = children[i];
+            int child = newNode(cell);
+            if (previous < 0) {
+                firstChild[node] = child;
+            } else {
+                sibling[previous] = child;
+            }
+            previous = child;
+            int row = cell / board.size();
+            int col = cell % board.size();
+            board.place(row, col, side);
+            evaluate(child, !attackerToMove);
+            board.remove(row, col);
+        }
+        return true;
+    }
+
+    /**
+     * 不展开就能确定的胜负：轮到的一方能直接连五，或对方已有两个成五点挡不住
+     * 防守方走棋时进攻方必须正持有威胁，否则防守方获得先手，进攻失败
+     */
+    private void evaluate(int node, boolean attackerToMove) {
+        int side = attackerToMove ? attacker : BitBoard.opponent(attacker);
+        if (countFivePoints(side, 1) > 0) {
+            setResult(node, attackerToMove);
+            return;
+        }
+        int threats = countFivePoints(BitBoard.opponent(side), 2);
+        if (threats >= 2) {
+            setResult(node, !attackerToMove);
+            return;
+        }
+        if (!attackerToMove && threats == 0 && (mode == VCF || countPoints(attacker, LinePatterns.OPEN_FOUR, 1) == 0)) {
+            setResult(node, false);
+            return;
+        }
+        if (board.isFull()) {
+            setResult(node, false);
+        }
+    }
+
+    private void setResult(int node, boolean attackerWins) {
+        proof[node] = attackerWins ? 0 : INFINITY;
+        disproof[node] = attackerWins ? INFINITY : 0;
+    }
+
+    /**
+     * 生成候选着法到children
+     * 对方有成五点时只能去挡；否则进攻方走冲四（VCT还有活三），
+     * 防守方走挡住活三的点（进攻方在那里能成四的点）和自己的冲四
+     */
+    private int generate(boolean attackerToMove) {
+        int side = attackerToMove ? attacker : BitBoard.opponent(attacker);
+        int other = BitBoard.opponent(side);
+        stamp++;
+        int n = collect(other, LinePatterns.FIVE, children, 0);
+        if (n > 0) {
+            return n;
+        }
+        if (attackerToMove) {
+            n = collect(side, LinePatterns.FOUR, children, 0);
+            if (mode == VCT) {
+                n = collect(side, LinePatterns.OPEN_THREE, children, n);
+            }
+            return n;
+        }
+        n = collect(other, LinePatterns.FOUR, children, 0);
+        return collect(side, LinePatterns.FOUR, children, n);
+    }
+
+    /**
+     * 收集color落子后在某个方向上线型不低于minShape的空位，追加到out[n..]
+     * 只检查线上含有足够多己方棋子且没有对方棋子的5格窗口里的空位；同一个stamp内不重复收集
+     * @return 收集后的数量，最多out.length个
+     */
+    private int collect(int color, int minShape, int[] out, int n) {
+        int limit = out.length;
+        // 落子后窗口内要有5/4/3个己方棋子才能成五、成四、成活三
+        int need = minShape == LinePatterns.FIVE ? 4 : minShape >= LinePatterns.FOUR ? 3 : 2;
+        int other = BitBoard.opponent(color);
+        int size = board.size();
+        for (int line = 0; line < board.lineCount() && n < limit; line++) {
+            long own = board.lineBits(color, line);
+            if (Long.bitCount(own) < need) {
+                continue;
+            }
+            long theirs = board.lineBits(other, line);
+            int last = board.lineLast(line);
+            long candidates = 0;
+            for (int start = board.lineFirst(line); start + 4 <= last; start++) {
+                long window = 0x1FL << start;
+                if ((theirs & window) == 0 && Long.bitCount(own & window) >= need) {
+                    candidates |= window & ~own;
+                }
+            }
+            int direction = board.lineDirection(line);
+            while (candidates != 0 && n < limit) {
+                int pos = Long.numberOfTrailingZeros(candidates);
+                candidates &= candidates - 1;
+                int cell = board.lineCell(line, pos);
+                if (mark[cell] == stamp) {
+                    continue;
+                }
+                if (board.shape(cell / size, cell % size, color, direction) >= minShape) {
+                    mark[cell] = stamp;
+                    out[n++] = cell;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * color的成五点数量，数到limit为止
+     */
+    private int countFivePoints(int color, int limit) {
+        return countPoints(color, LinePatterns.FIVE, limit);
+    }
+
+    private int countPoints(int color, int minShape, int limit) {
+        stamp++;
+        return Math.min(limit, collect(color, minShape, scratch, 0));
+    }
+
+    private int fiveCell(int color) {
+        stamp++;
+        return collect(color, LinePatterns.FIVE, scratch, 0) > 0 ? scratch[0] : -1;
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.ai;
+
+import java.util.Arrays;
+
+/**
+ * 固定大小的置换表，全部数据放在两个long数组里，不为每个条目创建对象
+ * 条目打包为一个long：
+ *   位0-15 最佳着法（格子编号，0xFFFF表示无），位16-47 分数，位48-55 深度，位56-57 类型，位63 有效位
+ * 多个搜索线程可以无锁共享同一张表：键数组里存的是 局面哈希 ^ 条目，读取时用条目还原哈希再比较，
+ * 两个数组被不同线程交错写入时还原出的哈希对不上，只会当作未命中，不会读到错误的条目
+ */
+public class TranspositionTable {
+    public static final int EXACT = 0;
+    // 分数是下界（发生了beta截断）
+    public static final int LOWER = 1;
+    // 分数是上界（没有着法超过alpha）
+    public static final int UPPER = 2;
+
+    private static final long VALID = 1L << 63;
+    private static final int NO_MOVE = 0xFFFF;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int mask;
+
+    /**
+     * @param bits 表的大小为 2^bits 个条目，每个条目16字节
+     */
+    public TranspositionTable(int bits) {
+        keys = new long[1 << bits];
+        entries = new long[1 << bits];
+        mask = (1 << bits) - 1;
+    }
+
+    /**
+     * 查找局面
+     * @return 打包的条目；没有找到时返回0
+     */
+    public long probe(long key) {
+        int index = (int) key & mask;
+        long entry = entries[index];
+        return (keys[index] ^ entry) == key ? entry : 0;
+    }
+
+    /**
+     * 写入局面，深度不低于原条目或是另一个局面时覆盖
+     */
+    public void store(long key, int depth, int score, int flag, int move) {
+        int index = (int) key & mask;
+        long old = entries[index];
+        if (old != 0 && (keys[index] ^ old) == key && depth(old) > depth) {
+            return;
+        }
+        long entry = pack(depth, score, flag, move);
+        keys[index] = key ^ entry;
+        entries[index] = entry;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(entries, 0L);
+    }
+
+    static long pack(int depth, int score, int flag, int move) {
+        return VALID
+                | ((long) flag << 56)
+                | ((long) (depth & 0xFF) << 48)
+                | ((score & 0xFFFFFFFFL) << 16)
+                | (move < 0 ? NO_MOVE : move);
+    }
+
+    public static int move(long entry) {
+        int move = (int) (entry & 0xFFFF);
+        return move == NO_MOVE ? -1 : move;
+    }
+
+    public static int score(long entry) {
+        return (int) (entry >>> 16);
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 48) & 0xFF;
+    }
+
+    public static int flag(long entry) {
+        return (int) (entry >>> 56) & 0x3;
+    }
+}
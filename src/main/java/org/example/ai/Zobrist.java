@@ -0,0 +1,55 @@
+package org.example.ai;
+
+import org.example.board.BitBoard;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist哈希：每个(颜色, 格子)对应一个固定的随机long，局面哈希为所有棋子的异或
+ * 随机数由固定种子生成，同一局面在不同进程、不同机器上的哈希相同，可以写入文件
+ */
+public final class Zobrist {
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+    private static final Zobrist STANDARD = new Zobrist(BitBoard.DEFAULT_SIZE);
+
+    private final int size;
+    // keys[color * cells + cell]
+    private final long[] keys;
+
+    private Zobrist(int size) {
+        this.size = size;
+        int cells = size * size;
+        keys = new long[2 * cells];
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * 取得指定棋盘大小的哈希表，15路棋盘共用一个实例
+     */
+    public static Zobrist forSize(int size) {
+        return size == STANDARD.size ? STANDARD : new Zobrist(size);
+    }
+
+    public long key(int color, int cell) {
+        return keys[color * size * size + cell];
+    }
+
+    /**
+     * 从头计算整个棋盘的哈希
+     */
+    public long hash(BitBoard board) {
+        long hash = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int stone = board.stoneAt(row, col);
+                if (stone != BitBoard.EMPTY) {
+                    hash ^= key(stone, row * size + col);
+                }
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.archive;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把服务器上结束的棋局导出到棋谱库
+ * 压缩和写盘在单独的线程上进行，房间线程只提交记录；进程退出前需要close，否则最后一块还在内存中。
+ * 指定了索引目录时同时把棋局加入局面索引；索引的段总是在棋谱库落盘之后才写，
+ * 打开时把棋谱库中索引没有覆盖的棋局补上。
+ */
+public class ArchiveExporter implements AutoCloseable {
+    private final ArchiveWriter writer;
+    private final PositionIndex index;
+    // 下一盘棋在棋谱库中的序号，只在导出线程上访问
+    private int nextGameId;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "archive-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ArchiveExporter(Path path) throws IOException {
+        this(path, null);
+    }
+
+    /**
+     * @param indexDir 局面索引目录，为null时不建索引
+     */
+    public ArchiveExporter(Path path, Path indexDir) throws IOException {
+        this.writer = new ArchiveWriter(path);
+        this.index = indexDir == null ? null : PositionIndex.open(indexDir);
+        executor.execute(() -> {
+            try (ArchiveReader reader = ArchiveReader.open(path)) {
+                nextGameId = (int) reader.gameCount();
+                if (index != null) {
+                    int added = index.catchUp(reader);
+                    if (added > 0) {
+                        System.out.println("局面索引补上 " + added + " 盘棋");
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("棋谱库读取失败: " + e.getMessage());
+            }
+        });
+    }
+
+    public PositionIndex index() {
+        return index;
+    }
+
+    public void export(GameRecord game) {
+        executor.execute(() -> {
+            try {
+                writer.write(game);
+                if (index != null) {
+                    if (index.needsFlush()) {
+                        writer.flush();
+                        writer.sync();
+                        index.flush();
+                    }
+                    index.add(nextGameId, game);
+                }
+                nextGameId++;
+            } catch (IOException e) {
+                System.out.println("棋谱导出失败: " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+            writer.close();
+            if (index != null) {
+                index.close();
+            }
+        } catch (IOException e) {
+            System.out.println("棋谱库关闭失败: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
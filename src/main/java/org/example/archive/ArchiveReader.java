@@ -0,0 +1,243 @@
+package org.example.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 棋谱库读取器，格式见ArchiveWriter
+ * 打开时只扫描各块的块头建立索引，棋局在遍历时逐块解压、逐盘解码，内存中最多同时有每个线程的一块数据。
+ * Spliterator按块拆分，并行流的各个线程用按位置读取的方式各读各的块，互不影响。
+ */
+public class ArchiveReader implements AutoCloseable {
+    private final FileChannel channel;
+    // 每块在文件中的位置（指向块头）
+    private final long[] offsets;
+    // gamesBefore[i]：第i块之前所有块的棋局数之和，最后一个元素为总数
+    private final long[] gamesBefore;
+    // 最后一个完整块的结尾，之后是写到一半的数据
+    private final long end;
+
+    private ArchiveReader(FileChannel channel, long[] offsets, long[] gamesBefore, long end) {
+        this.channel = channel;
+        this.offsets = offsets;
+        this.gamesBefore = gamesBefore;
+        this.end = end;
+    }
+
+    public static ArchiveReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            checkHeader(channel, path);
+            long[] offsets = new long[16];
+            long[] gamesBefore = new long[17];
+            int blocks = 0;
+            long position = ArchiveWriter.FILE_HEADER_LENGTH;
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(ArchiveWriter.BLOCK_HEADER_LENGTH);
+            while (position + ArchiveWriter.BLOCK_HEADER_LENGTH <= size) {
+                readFully(channel, header.clear(), position);
+                int compressedLength = header.getInt(4);
+                int games = header.getInt(8);
+                if (position + ArchiveWriter.BLOCK_HEADER_LENGTH + compressedLength > size) {
+                    // 写到一半的块，忽略
+                    break;
+                }
+                if (blocks == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, blocks * 2);
+                    gamesBefore = Arrays.copyOf(gamesBefore, blocks * 2 + 1);
+                }
+                offsets[blocks] = position;
+                gamesBefore[blocks + 1] = gamesBefore[blocks] + games;
+                blocks++;
+                position += ArchiveWriter.BLOCK_HEADER_LENGTH + compressedLength;
+            }
+            return new ArchiveReader(channel, Arrays.copyOf(offsets, blocks), Arrays.copyOf(gamesBefore, blocks + 1),
+                    position);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int blockCount() {
+        return offsets.length;
+    }
+
+    public long gameCount() {
+        return gamesBefore[offsets.length];
+    }
+
+    /**
+     * 有效数据的长度，追加写入时从这里开始，覆盖掉写到一半的块
+     */
+    long validLength() {
+        return end;
+    }
+
+    /**
+     * 按顺序逐盘读取所有棋局
+     */
+    public Stream<GameRecord> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * 并行读取，各线程分到不同的块
+     */
+    public Stream<GameRecord> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    public Spliterator<GameRecord> spliterator() {
+        return new BlockSpliterator(0, offsets.length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static void checkHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(ArchiveWriter.FILE_HEADER_LENGTH);
+        if (channel.size() < ArchiveWriter.FILE_HEADER_LENGTH) {
+            throw new IOException("不是棋谱库文件: " + path);
+        }
+        readFully(channel, header, 0);
+        if (header.getInt(0) != ArchiveWriter.MAGIC || header.getInt(4) != ArchiveWriter.VERSION) {
+            throw new IOException("不是棋谱库文件: " + path);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("棋谱库文件意外结束");
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * 遍历块区间 [block, end) 中的棋局
+     */
+    private final class BlockSpliterator implements Spliterator<GameRecord> {
+        private int block;
+        private int end;
+        private Inflater inflater;
+        private ByteBuffer compressed;
+        private byte[] data;
+        // 当前块已解压的数据和剩余棋局数
+        private ByteBuffer current;
+        private int remaining;
+        private final byte[] moves = new byte[GameRecord.MAX_MOVES];
+
+        BlockSpliterator(int block, int end) {
+            this.block = block;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super GameRecord> action) {
+            while (remaining == 0) {
+                if (block >= end) {
+                    if (inflater != null) {
+                        inflater.end();
+                        inflater = null;
+                    }
+                    return false;
+                }
+                load(block++);
+            }
+            remaining--;
+            action.accept(decode(current));
+            return true;
+        }
+
+        @Override
+        public Spliterator<GameRecord> trySplit() {
+            if (remaining > 0 || end - block < 2) {
+                return null;
+            }
+            int mid = (block + end) >>> 1;
+            BlockSpliterator prefix = new BlockSpliterator(block, mid);
+            block = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining + gamesBefore[end] - gamesBefore[block];
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
+        }
+
+        private void load(int index) {
+            try {
+                ByteBuffer header = ByteBuffer.allocate(ArchiveWriter.BLOCK_HEADER_LENGTH);
+                readFully(channel, header, offsets[index]);
+                int length = header.getInt(0);
+                int compressedLength = header.getInt(4);
+                if (compressed == null || compressed.capacity() < compressedLength) {
+                    compressed = ByteBuffer.allocate(compressedLength);
+                }
+                readFully(channel, compressed.clear().limit(compressedLength),
+                        offsets[index] + ArchiveWriter.BLOCK_HEADER_LENGTH);
+                if (data == null || data.length < length) {
+                    data = new byte[length];
+                }
+                if (inflater == null) {
+                    inflater = new Inflater();
+                }
+                inflater.reset();
+                inflater.setInput(compressed.array(), 0, compressedLength);
+                int n = 0;
+                while (n < length && !inflater.finished() && !inflater.needsInput()) {
+                    n += inflater.inflate(data, n, length - n);
+                }
+                if (n != length) {
+                    throw new IOException("第 " + index + " 块解压后长度不对");
+                }
+                current = ByteBuffer.wrap(data, 0, length);
+                remaining = header.getInt(8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (DataFormatException e) {
+                throw new UncheckedIOException(new IOException("第 " + index + " 块数据损坏", e));
+            }
+        }
+
+        private GameRecord decode(ByteBuffer in) {
+            int result = in.get();
+            long start = in.getLong();
+            long end = in.getLong();
+            String black = getName(in);
+            String white = getName(in);
+            int count = in.get() & 0xFF;
+            in.get(moves, 0, count);
+            return new GameRecord(black, white, result, start, end, moves, count);
+        }
+
+        private String getName(ByteBuffer in) {
+            int length = in.get() & 0xFF;
+            String name = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return name;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.archive;
+
+import org.example.board.GameText;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+/**
+ * 棋谱库命令行工具
+ *   import 文本棋谱 棋谱库    把纯文本棋谱（格式见GameText）追加到棋谱库，结果按着法重放得到
+ *   export 棋谱库 文本棋谱    把棋谱库导出为纯文本棋谱
+ *   stats 棋谱库              并行扫描整个棋谱库，统计结果和平均步数
+ *   index 棋谱库 索引目录     为棋谱库中还没有索引的棋局建局面索引（格式见PositionIndex）
+ *   find 索引目录 着法        查询走过这些着法（格式见GameText）后的局面或其对称局面出现在哪些棋局的第几步
+ */
+public class ArchiveTool {
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("import")) {
+            importText(args[1], args[2]);
+        } else if (args.length == 3 && args[0].equals("export")) {
+            exportText(args[1], args[2]);
+        } else if (args.length == 2 && args[0].equals("stats")) {
+            stats(args[1]);
+        } else if (args.length == 3 && args[0].equals("index")) {
+            index(args[1], args[2]);
+        } else if (args.length == 3 && args[0].equals("find")) {
+            find(args[1], args[2]);
+        } else {
+            System.out.println("用法: ArchiveTool import 文本棋谱 棋谱库 | export 棋谱库 文本棋谱 | stats 棋谱库"
+                    + " | index 棋谱库 索引目录 | find 索引目录 着法");
+        }
+    }
+
+    private static void importText(String text, String archive) throws IOException {
+        int[] cells = new int[GameRecord.MAX_MOVES];
+        byte[] moves = new byte[GameRecord.MAX_MOVES];
+        int imported = 0;
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(text), StandardCharsets.UTF_8);
+             ArchiveWriter writer = new ArchiveWriter(Paths.get(archive))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (GameText.isComment(line)) {
+                    continue;
+                }
+                int count = GameText.parse(line, GameRecord.BOARD_SIZE, cells);
+                int result = count < 0 ? -1 : GameRecord.resultOf(cells, count);
+                if (result < 0) {
+                    skipped++;
+                    continue;
+                }
+                for (int i = 0; i < count; i++) {
+                    moves[i] = (byte) cells[i];
+                }
+                writer.write(new GameRecord("", "", result, 0, 0, moves, count));
+                imported++;
+            }
+        }
+        System.out.println("导入 " + imported + " 盘，跳过 " + skipped + " 盘");
+    }
+
+    private static void exportText(String archive, String text) throws IOException {
+        int[] cells = new int[GameRecord.MAX_MOVES];
+        try (ArchiveReader reader = ArchiveReader.open(Paths.get(archive));
+             BufferedWriter writer = Files.newBufferedWriter(Paths.get(text), StandardCharsets.UTF_8);
+             Stream<GameRecord> games = reader.stream()) {
+            for (GameRecord game : (Iterable<GameRecord>) games::iterator) {
+                for (int i = 0; i < game.moveCount(); i++) {
+                    cells[i] = game.cell(i);
+                }
+                writer.write(GameText.format(cells, game.moveCount(), GameRecord.BOARD_SIZE));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static void stats(String archive) throws IOException {
+        try (ArchiveReader reader = ArchiveReader.open(Paths.get(archive))) {
+            long start = System.nanoTime();
+            long[] counts = reader.parallelStream().collect(() -> new long[5], (acc, game) -> {
+                acc[game.result()]++;
+                acc[4] += game.moveCount();
+            }, (a, b) -> {
+                for (int i = 0; i < a.length; i++) {
+                    a[i] += b[i];
+                }
+            });
+            long games = counts[0] + counts[1] + counts[2] + counts[3];
+            System.out.println("共 " + games + " 盘（" + reader.blockCount() + " 块）：黑胜 " + counts[0] + "，白胜 " + counts[1]
+                    + "，和棋 " + counts[2] + "，未下完 " + counts[3]);
+            System.out.printf("平均 %.1f 步，扫描用时 %d 毫秒%n", games == 0 ? 0.0 : (double) counts[4] / games,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private static void index(String archive, String dir) throws IOException {
+        long start = System.nanoTime();
+        try (ArchiveReader reader = ArchiveReader.open(Paths.get(archive));
+             PositionIndex index = PositionIndex.open(Paths.get(dir))) {
+            int added = index.catchUp(reader);
+            System.out.println("加入 " + added + " 盘，用时 " + (System.nanoTime() - start) / 1_000_000 + " 毫秒");
+        }
+    }
+
+    private static void find(String dir, String moves) throws IOException {
+        int[] cells = new int[GameRecord.MAX_MOVES];
+        int count = GameText.parse(moves, GameRecord.BOARD_SIZE, cells);
+        if (count < 0) {
+            System.out.println("着法格式不对: " + moves);
+            return;
+        }
+        try (PositionIndex index = PositionIndex.open(Paths.get(dir))) {
+            StringBuilder shown = new StringBuilder();
+            long start = System.nanoTime();
+            int found = index.query(cells, count, (gameId, ply) -> {
+                if (shown.length() < 200) {
+                    shown.append(' ').append(gameId).append('@').append(ply);
+                }
+            });
+            long micros = (System.nanoTime() - start) / 1000;
+            System.out.println("命中 " + found + " 次（" + index.segmentCount() + " 个段），用时 " + micros + " 微秒");
+            System.out.println("棋局编号@步数:" + shown);
+        }
+    }
+}
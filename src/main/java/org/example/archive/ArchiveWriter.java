@@ -0,0 +1,127 @@
+package org.example.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+
+/**
+ * 棋谱库写入器
+ * 文件格式（大端序）：
+ *   文件头 魔数(4) + 版本(4)
+ *   若干块 原始长度(4) + 压缩后长度(4) + 棋局数(4) + Deflate压缩的数据
+ * 块内依次是每盘棋：结果(1) + 开始时间(8) + 结束时间(8) + 黑方名长度(1) + 黑方名 + 白方名长度(1) + 白方名
+ *   + 着法数(1) + 着法（每步1字节）
+ * 棋局先攒在内存中，攒够一块再压缩写出；已有的文件会在末尾追加新块，末尾写到一半的块先截掉。
+ * 不是线程安全的。
+ */
+public class ArchiveWriter implements AutoCloseable {
+    public static final int MAGIC = 0x47415243;
+    public static final int VERSION = 1;
+    static final int FILE_HEADER_LENGTH = 8;
+    static final int BLOCK_HEADER_LENGTH = 12;
+    // 每块压缩前的目标大小
+    static final int BLOCK_SIZE = 64 * 1024;
+    // 一盘棋编码后的最大长度
+    static final int MAX_RECORD_LENGTH = 1 + 8 + 8 + 1 + 255 + 1 + 255 + 1 + GameRecord.MAX_MOVES;
+
+    private final FileChannel channel;
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE + MAX_RECORD_LENGTH);
+    private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    private byte[] compressed = new byte[BLOCK_SIZE];
+    private int games;
+
+    public ArchiveWriter(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_LENGTH).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            writeFully(header);
+        } else {
+            long end;
+            try (ArchiveReader reader = ArchiveReader.open(path)) {
+                end = reader.validLength();
+            }
+            channel.truncate(end);
+            channel.position(end);
+        }
+    }
+
+    public void write(GameRecord game) throws IOException {
+        block.put((byte) game.result());
+        block.putLong(game.startMillis());
+        block.putLong(game.endMillis());
+        putName(game.black());
+        putName(game.white());
+        block.put((byte) game.moveCount());
+        for (int i = 0; i < game.moveCount(); i++) {
+            block.put((byte) game.cell(i));
+        }
+        games++;
+        if (block.position() >= BLOCK_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * 把未满的块压缩写出
+     */
+    public void flush() throws IOException {
+        if (games == 0) {
+            return;
+        }
+        int length = block.position();
+        deflater.reset();
+        deflater.setInput(block.array(), 0, length);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == compressed.length) {
+                byte[] grown = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, grown, 0, size);
+                compressed = grown;
+            }
+            size += deflater.deflate(compressed, size, compressed.length - size);
+        }
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_LENGTH).putInt(length).putInt(size).putInt(games);
+        header.flip();
+        writeFully(header);
+        writeFully(ByteBuffer.wrap(compressed, 0, size));
+        block.clear();
+        games = 0;
+    }
+
+    /**
+     * 把已写出的块刷到磁盘
+     */
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            channel.force(false);
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+    }
+
+    private void putName(String name) {
+        byte[] bytes = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(255, bytes.length);
+        block.put((byte) length);
+        block.put(bytes, 0, length);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
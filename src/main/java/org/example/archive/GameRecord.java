@@ -0,0 +1,90 @@
+package org.example.archive;
+
+import org.example.board.BitBoard;
+
+/**
+ * 一盘已结束的棋局：双方玩家、结果、起止时间和着法
+ * 着法按格子编号 row * 15 + col 保存，每步一个字节
+ */
+public final class GameRecord {
+    public static final int BLACK_WINS = 0;
+    public static final int WHITE_WINS = 1;
+    public static final int DRAW = 2;
+    // 没有下完（例如玩家离开）
+    public static final int UNFINISHED = 3;
+
+    public static final int BOARD_SIZE = BitBoard.DEFAULT_SIZE;
+    public static final int MAX_MOVES = BOARD_SIZE * BOARD_SIZE;
+
+    private final String black;
+    private final String white;
+    private final int result;
+    private final long startMillis;
+    private final long endMillis;
+    private final byte[] moves;
+
+    /**
+     * @param moves 每步的格子编号，构造时复制
+     */
+    public GameRecord(String black, String white, int result, long startMillis, long endMillis, byte[] moves, int moveCount) {
+        if (moveCount > MAX_MOVES) {
+            throw new IllegalArgumentException("着法数超过棋盘格子数: " + moveCount);
+        }
+        this.black = black;
+        this.white = white;
+        this.result = result;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.moves = new byte[moveCount];
+        System.arraycopy(moves, 0, this.moves, 0, moveCount);
+    }
+
+    public String black() {
+        return black;
+    }
+
+    public String white() {
+        return white;
+    }
+
+    public int result() {
+        return result;
+    }
+
+    public long startMillis() {
+        return startMillis;
+    }
+
+    public long endMillis() {
+        return endMillis;
+    }
+
+    public int moveCount() {
+        return moves.length;
+    }
+
+    /**
+     * 第i步的格子编号
+     */
+    public int cell(int i) {
+        return moves[i] & 0xFF;
+    }
+
+    /**
+     * 按着法重放得到结果：最后一步连五则该方胜，下满为和棋，否则未下完
+     * @return 结果；着法有重复或越界时返回-1
+     */
+    public static int resultOf(int[] cells, int count) {
+        BitBoard board = new BitBoard(BOARD_SIZE);
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            if (cell < 0 || cell >= MAX_MOVES || !board.isEmpty(cell / BOARD_SIZE, cell % BOARD_SIZE)) {
+                return -1;
+            }
+            if (board.place(cell / BOARD_SIZE, cell % BOARD_SIZE, i % 2)) {
+                return i == count - 1 ? (i % 2 == 0 ? BLACK_WINS : WHITE_WINS) : -1;
+            }
+        }
+        return board.isFull() ? DRAW : UNFINISHED;
+    }
+}
@@ -0,0 +1,166 @@
+package org.example.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 局面索引的一个只读段，整个文件映射到内存
+ * 文件格式（大端序）：
+ *   文件头 魔数(4) + 版本(4) + 层级(4) + 起始序号(4) + 结束序号(4) + 棋局上限(4) + 条目数(8)
+ *   条目   局面哈希(8) + 棋局编号(4) + 步数(4)，按哈希、棋局编号、步数升序（都按有符号数比较）
+ * 棋局上限是段中最大的棋局编号加1，重新打开索引时据此从棋谱库补上没有落盘的棋局。
+ * 内存中的条目刷出时是第0层，合并FAN_IN个第k层的段得到第k+1层；序号区间记录段由哪些原始段合并而来，
+ * 合并中途崩溃留下的旧段可以据此识别并丢弃。
+ */
+final class IndexSegment {
+    static final int MAGIC = 0x50494458;
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 32;
+    static final int ENTRY_LENGTH = 16;
+    // 单个段最多的条目数，保证映射区域不超过2GB
+    static final long MAX_ENTRIES = (Integer.MAX_VALUE - HEADER_LENGTH) / ENTRY_LENGTH;
+
+    private final Path path;
+    private final ByteBuffer entries;
+    private final int level;
+    private final int firstSeq;
+    private final int lastSeq;
+    private final int gameLimit;
+    private final int count;
+
+    private IndexSegment(Path path, ByteBuffer entries, int level, int firstSeq, int lastSeq, int gameLimit, int count) {
+        this.path = path;
+        this.entries = entries;
+        this.level = level;
+        this.firstSeq = firstSeq;
+        this.lastSeq = lastSeq;
+        this.gameLimit = gameLimit;
+        this.count = count;
+    }
+
+    static IndexSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_LENGTH || length > Integer.MAX_VALUE) {
+                throw new IOException("索引段长度不对: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            long count = buffer.getLong(24);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || HEADER_LENGTH + count * ENTRY_LENGTH != length) {
+                throw new IOException("不是完整的索引段: " + path);
+            }
+            ByteBuffer entries = buffer.position(HEADER_LENGTH).slice().asReadOnlyBuffer();
+            return new IndexSegment(path, entries, buffer.getInt(8), buffer.getInt(12), buffer.getInt(16),
+                    buffer.getInt(20), (int) count);
+        }
+    }
+
+    /**
+     * 写出一个新段：先写临时文件，fsync后改名
+     * @param source 依次提供已排好序的条目
+     */
+    static IndexSegment write(Path path, int level, int firstSeq, int lastSeq, int gameLimit,
+                              long count, EntrySource source) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(level).putInt(firstSeq).putInt(lastSeq).putInt(gameLimit).putLong(count);
+            for (long i = 0; i < count; i++) {
+                if (buffer.remaining() < ENTRY_LENGTH) {
+                    drain(channel, buffer);
+                }
+                source.next(buffer);
+            }
+            drain(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return open(path);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int level() {
+        return level;
+    }
+
+    int firstSeq() {
+        return firstSeq;
+    }
+
+    int lastSeq() {
+        return lastSeq;
+    }
+
+    int gameLimit() {
+        return gameLimit;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long hashAt(int index) {
+        return entries.getLong(index * ENTRY_LENGTH);
+    }
+
+    /**
+     * 棋局编号和步数拼成的long，高32位是棋局编号，排序时和哈希一起作为键
+     */
+    long payloadAt(int index) {
+        return entries.getLong(index * ENTRY_LENGTH + 8);
+    }
+
+    int gameAt(int index) {
+        return entries.getInt(index * ENTRY_LENGTH + 8);
+    }
+
+    int plyAt(int index) {
+        return entries.getInt(index * ENTRY_LENGTH + 12);
+    }
+
+    /**
+     * 第一个哈希不小于hash的条目下标
+     */
+    int lowerBound(long hash) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (hashAt(mid) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 写段时逐条提供条目
+     */
+    interface EntrySource {
+        /**
+         * 把下一条条目写入out
+         */
+        void next(ByteBuffer out);
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.archive;
+
+import org.example.ai.Zobrist;
+
+/**
+ * 对称归一化的局面哈希
+ * 同时维护局面在8种对称变换（4种旋转 x 是否翻转）下的Zobrist哈希，取最小值作为局面的代表，
+ * 这样旋转或镜像后相同的局面得到同一个哈希。每步只需更新8个long。
+ */
+public final class PositionHasher {
+    private static final int SIZE = GameRecord.BOARD_SIZE;
+    private static final int SYMMETRIES = 8;
+    // TRANSFORM[对称][格子] -> 变换后的格子
+    private static final int[][] TRANSFORM = new int[SYMMETRIES][SIZE * SIZE];
+
+    static {
+        int n = SIZE - 1;
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                int cell = row * SIZE + col;
+                TRANSFORM[0][cell] = row * SIZE + col;
+                TRANSFORM[1][cell] = col * SIZE + (n - row);
+                TRANSFORM[2][cell] = (n - row) * SIZE + (n - col);
+                TRANSFORM[3][cell] = (n - col) * SIZE + row;
+                TRANSFORM[4][cell] = row * SIZE + (n - col);
+                TRANSFORM[5][cell] = (n - row) * SIZE + col;
+                TRANSFORM[6][cell] = col * SIZE + row;
+                TRANSFORM[7][cell] = (n - col) * SIZE + (n - row);
+            }
+        }
+    }
+
+    private final Zobrist zobrist = Zobrist.forSize(SIZE);
+    private final long[] hashes = new long[SYMMETRIES];
+
+    public void reset() {
+        for (int i = 0; i < SYMMETRIES; i++) {
+            hashes[i] = 0;
+        }
+    }
+
+    public void play(int cell, int color) {
+        for (int i = 0; i < SYMMETRIES; i++) {
+            hashes[i] ^= zobrist.key(color, TRANSFORM[i][cell]);
+        }
+    }
+
+    /**
+     * 当前局面的归一化哈希
+     */
+    public long canonical() {
+        long min = hashes[0];
+        for (int i = 1; i < SYMMETRIES; i++) {
+            min = Math.min(min, hashes[i]);
+        }
+        return min;
+    }
+}
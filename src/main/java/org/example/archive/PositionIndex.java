@@ -0,0 +1,420 @@
+package org.example.archive;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 棋谱库的局面索引：对称归一化的局面哈希 -> (棋局编号, 步数)
+ * 新棋局的条目先进内存表，攒满后排好序写成一个第0层的段；后台线程把FAN_IN个同层的相邻段合并成上一层的一个段，
+ * 段数保持在对数级别。查询在每个段里二分查找，再扫一遍内存表，不需要重放棋谱。
+ * 棋局编号就是棋局在棋谱库中的序号（从0开始）。
+ * add和flush只能在一个线程上调用，query可以在任意线程上并发调用。
+ */
+public class PositionIndex implements AutoCloseable {
+    // 内存表的条目数，扫描一遍在1毫秒以内
+    static final int MEMTABLE_ENTRIES = 1 << 18;
+    static final int FAN_IN = 4;
+    private static final String SUFFIX = ".idx";
+
+    private final Path dir;
+    private final PositionHasher hasher = new PositionHasher();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Thread merger;
+    // 按起始序号排列的段，整体替换；查询在锁内取快照，二分查找不加锁
+    private volatile List<IndexSegment> segments;
+    // 内存表，查询时在锁内扫描
+    private long[] hashes = new long[MEMTABLE_ENTRIES];
+    private long[] payloads = new long[MEMTABLE_ENTRIES];
+    private int size;
+    // 正在写盘的内存表，写完发布成段之前查询也要看它
+    private long[] flushingHashes;
+    private long[] flushingPayloads;
+    private int flushingSize;
+    private int nextSeq;
+    // 已写成段的和已加入内存表的棋局编号上限
+    private int gameLimit;
+    private int addedLimit;
+    private boolean closed;
+
+    private PositionIndex(Path dir, List<IndexSegment> segments) {
+        this.dir = dir;
+        this.segments = segments;
+        for (IndexSegment segment : segments) {
+            nextSeq = Math.max(nextSeq, segment.lastSeq() + 1);
+            gameLimit = Math.max(gameLimit, segment.gameLimit());
+        }
+        addedLimit = gameLimit;
+        merger = new Thread(this::mergeLoop, "index-merge");
+        merger.setDaemon(true);
+        merger.start();
+    }
+
+    /**
+     * 打开索引目录，不存在就创建
+     * 合并到一半崩溃时新段和被合并的旧段会同时存在，序号区间被别的段包含的旧段直接删掉。
+     */
+    public static PositionIndex open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        List<IndexSegment> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(file);
+                } else if (name.endsWith(SUFFIX)) {
+                    found.add(IndexSegment.open(file));
+                }
+            }
+        }
+        found.sort(Comparator.comparingInt(IndexSegment::firstSeq).thenComparingInt(s -> -s.lastSeq()));
+        List<IndexSegment> live = new ArrayList<>();
+        for (IndexSegment segment : found) {
+            if (!live.isEmpty() && segment.lastSeq() <= live.get(live.size() - 1).lastSeq()) {
+                Files.delete(segment.path());
+            } else {
+                live.add(segment);
+            }
+        }
+        return new PositionIndex(dir, List.copyOf(live));
+    }
+
+    /**
+     * 索引覆盖的棋局编号上限，只算已经写成段的部分
+     */
+    public int gameLimit() {
+        lock.lock();
+        try {
+            return gameLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 加入一盘棋从第1步到最后一步的每个局面
+     */
+    public void add(int gameId, GameRecord game) {
+        hasher.reset();
+        int count = game.moveCount();
+        if (size + count > MEMTABLE_ENTRIES) {
+            throw new IllegalStateException("内存表已满，需要先flush");
+        }
+        lock.lock();
+        try {
+            for (int ply = 1; ply <= count; ply++) {
+                hasher.play(game.cell(ply - 1), (ply - 1) % 2);
+                hashes[size] = hasher.canonical();
+                payloads[size] = (long) gameId << 32 | ply;
+                size++;
+            }
+            addedLimit = Math.max(addedLimit, gameId + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把棋谱库中还没有写进索引的棋局补上，用于建索引和崩溃后恢复
+     * @return 补上的棋局数
+     */
+    public int catchUp(ArchiveReader reader) throws IOException {
+        int first = addedLimit;
+        int gameId = 0;
+        try (Stream<GameRecord> games = reader.stream()) {
+            for (GameRecord game : (Iterable<GameRecord>) games::iterator) {
+                if (gameId >= first) {
+                    if (needsFlush()) {
+                        flush();
+                    }
+                    add(gameId, game);
+                }
+                gameId++;
+            }
+        }
+        return Math.max(0, gameId - first);
+    }
+
+    /**
+     * 内存表放不下一盘最长的棋时返回true，调用者应当在确保棋谱库落盘后调用flush
+     */
+    public boolean needsFlush() {
+        return size + GameRecord.MAX_MOVES > MEMTABLE_ENTRIES;
+    }
+
+    /**
+     * 把内存表排序后写成第0层的段
+     */
+    public void flush() throws IOException {
+        int count;
+        int seq;
+        int limit;
+        lock.lock();
+        try {
+            if (size == 0) {
+                return;
+            }
+            flushingHashes = hashes;
+            flushingPayloads = payloads;
+            flushingSize = count = size;
+            hashes = new long[MEMTABLE_ENTRIES];
+            payloads = new long[MEMTABLE_ENTRIES];
+            size = 0;
+            seq = nextSeq++;
+            limit = addedLimit;
+        } finally {
+            lock.unlock();
+        }
+        // 排序只动写盘用的副本，并发的查询仍然线性扫描原来的数组
+        long[] sortedHashes = Arrays.copyOf(flushingHashes, count);
+        long[] sortedPayloads = Arrays.copyOf(flushingPayloads, count);
+        sort(sortedHashes, sortedPayloads, 0, count - 1);
+        int[] next = new int[1];
+        IndexSegment segment = IndexSegment.write(segmentPath(seq, seq), 0, seq, seq, limit, count, out -> {
+            int i = next[0]++;
+            out.putLong(sortedHashes[i]).putLong(sortedPayloads[i]);
+        });
+        lock.lock();
+        try {
+            List<IndexSegment> list = new ArrayList<>(segments);
+            list.add(segment);
+            segments = List.copyOf(list);
+            flushingHashes = null;
+            flushingPayloads = null;
+            flushingSize = 0;
+            gameLimit = limit;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 查询走过这些着法后的局面（包括对称局面）在哪些棋局中出现过
+     * @return 命中的条目数
+     */
+    public int query(int[] cells, int count, Hit hit) {
+        PositionHasher positionHasher = new PositionHasher();
+        for (int i = 0; i < count; i++) {
+            positionHasher.play(cells[i], i % 2);
+        }
+        return query(positionHasher.canonical(), hit);
+    }
+
+    /**
+     * 按归一化哈希查询，同一盘棋在不同段中不会重复出现
+     * @return 命中的条目数
+     */
+    public int query(long hash, Hit hit) {
+        int found = 0;
+        List<IndexSegment> snapshot;
+        // 段列表和内存表在同一把锁下切换，一起取才不会漏掉或重复正在发布的条目
+        lock.lock();
+        try {
+            snapshot = segments;
+            found += scan(flushingHashes, flushingPayloads, flushingSize, hash, hit);
+            found += scan(hashes, payloads, size, hash, hit);
+        } finally {
+            lock.unlock();
+        }
+        for (IndexSegment segment : snapshot) {
+            for (int i = segment.lowerBound(hash); i < segment.count() && segment.hashAt(i) == hash; i++) {
+                hit.accept(segment.gameAt(i), segment.plyAt(i));
+                found++;
+            }
+        }
+        return found;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 写出内存表并停止后台合并
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            merger.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int scan(long[] hashes, long[] payloads, int size, long hash, Hit hit) {
+        int found = 0;
+        for (int i = 0; i < size; i++) {
+            if (hashes[i] == hash) {
+                hit.accept((int) (payloads[i] >>> 32), (int) payloads[i]);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private Path segmentPath(int firstSeq, int lastSeq) {
+        return dir.resolve(String.format("segment-%08d-%08d%s", firstSeq, lastSeq, SUFFIX));
+    }
+
+    private void mergeLoop() {
+        while (true) {
+            List<IndexSegment> run;
+            lock.lock();
+            try {
+                while ((run = pickRun(segments)) == null && !closed) {
+                    changed.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                IndexSegment merged = merge(run);
+                lock.lock();
+                try {
+                    List<IndexSegment> list = new ArrayList<>(segments);
+                    int at = list.indexOf(run.get(0));
+                    list.subList(at, at + run.size()).clear();
+                    list.add(at, merged);
+                    segments = List.copyOf(list);
+                } finally {
+                    lock.unlock();
+                }
+                // 已经映射的旧段删掉文件后仍然可读，正在进行的查询不受影响
+                for (IndexSegment segment : run) {
+                    Files.delete(segment.path());
+                }
+            } catch (IOException e) {
+                System.out.println("索引合并失败: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * 找最老的一组FAN_IN个同层相邻段，合并后不能超过单段的上限
+     */
+    private static List<IndexSegment> pickRun(List<IndexSegment> list) {
+        for (int start = 0; start + FAN_IN <= list.size(); start++) {
+            int level = list.get(start).level();
+            long total = 0;
+            int end = start;
+            while (end < start + FAN_IN && list.get(end).level() == level) {
+                total += list.get(end).count();
+                end++;
+            }
+            if (end == start + FAN_IN && total <= IndexSegment.MAX_ENTRIES) {
+                return list.subList(start, end);
+            }
+        }
+        return null;
+    }
+
+    private IndexSegment merge(List<IndexSegment> run) throws IOException {
+        IndexSegment first = run.get(0);
+        IndexSegment last = run.get(run.size() - 1);
+        int[] positions = new int[run.size()];
+        long total = 0;
+        int limit = 0;
+        for (IndexSegment segment : run) {
+            total += segment.count();
+            limit = Math.max(limit, segment.gameLimit());
+        }
+        return IndexSegment.write(segmentPath(first.firstSeq(), last.lastSeq()), first.level() + 1,
+                first.firstSeq(), last.lastSeq(), limit, total, out -> {
+                    int best = -1;
+                    for (int i = 0; i < positions.length; i++) {
+                        IndexSegment segment = run.get(i);
+                        if (positions[i] < segment.count() && (best < 0 || less(segment, positions[i], run.get(best), positions[best]))) {
+                            best = i;
+                        }
+                    }
+                    IndexSegment segment = run.get(best);
+                    out.putLong(segment.hashAt(positions[best])).putLong(segment.payloadAt(positions[best]));
+                    positions[best]++;
+                });
+    }
+
+    private static boolean less(IndexSegment a, int i, IndexSegment b, int j) {
+        long x = a.hashAt(i);
+        long y = b.hashAt(j);
+        return x != y ? x < y : a.payloadAt(i) < b.payloadAt(j);
+    }
+
+    /**
+     * 按(哈希, 棋局编号和步数)对两个平行数组快速排序
+     */
+    private static void sort(long[] keys, long[] values, int low, int high) {
+        while (high - low > 16) {
+            int mid = (low + high) >>> 1;
+            long pivotKey = keys[mid];
+            long pivotValue = values[mid];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(keys[i], values[i], pivotKey, pivotValue) < 0) {
+                    i++;
+                }
+                while (compare(keys[j], values[j], pivotKey, pivotValue) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, values, i++, j--);
+                }
+            }
+            // 先递归短的一边，栈深度不超过log n
+            if (j - low < high - i) {
+                sort(keys, values, low, j);
+                low = i;
+            } else {
+                sort(keys, values, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && compare(keys[j], values[j], keys[j - 1], values[j - 1]) < 0; j--) {
+                swap(keys, values, j, j - 1);
+            }
+        }
+    }
+
+    private static int compare(long key, long value, long otherKey, long otherValue) {
+        return key != otherKey ? Long.compare(key, otherKey) : Long.compare(value, otherValue);
+    }
+
+    private static void swap(long[] keys, long[] values, int i, int j) {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    /**
+     * 查询结果回调
+     */
+    public interface Hit {
+        void accept(int gameId, int ply);
+    }
+}
@@ -0,0 +1,328 @@
+package org.example.board;
+
+import java.util.Arrays;
+
+/**
+ * 位棋盘：每种颜色的每一条线（行、列、主对角线、副对角线）用一个long保存
+ * 落子时只需更新四个long，胜负判断只需对经过该点的四条线做几次移位与运算，
+ * 整个过程不分配任何对象，耗时与棋盘上的棋子数量无关。
+ * 局面分随落子和移除增量维护：只查经过该点的四条线在LinePatterns中的分值，落子前后相减。
+ */
+public class BitBoard {
+    // 默认棋盘大小，与客户端一致
+    public static final int DEFAULT_SIZE = 15;
+    // 一条线最多64格，对应一个long
+    public static final int MAX_SIZE = 64;
+
+    // 颜色编号，黑方'O'先手
+    public static final int EMPTY = -1;
+    public static final int BLACK = 0;
+    public static final int WHITE = 1;
+
+    // 四个方向：水平、垂直、主对角线（左上到右下）、副对角线（右上到左下）
+    public static final int HORIZONTAL = 0;
+    public static final int VERTICAL = 1;
+    public static final int DIAGONAL = 2;
+    public static final int ANTI_DIAGONAL = 3;
+
+    private final int size;
+    // 单个颜色占用的线数量：size行 + size列 + 两组对角线各(2*size-1)条
+    private final int linesPerColor;
+    // lines[color * linesPerColor + 线编号]，每条线中第i位表示该线上的第i格
+    private final long[] lines;
+    // 每格的棋子：0为空，1为黑，2为白，用于O(1)查询
+    private final byte[] cells;
+    // walls[线编号]：这条线上不存在的格子，用于LinePatterns编码
+    private final long[] walls;
+    private int moveCount;
+    // 黑方角度的局面分
+    private int score;
+
+    public BitBoard() {
+        this(DEFAULT_SIZE);
+    }
+
+    public BitBoard(int size) {
+        if (size < 5 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("棋盘大小必须在5到" + MAX_SIZE + "之间: " + size);
+        }
+        this.size = size;
+        this.linesPerColor = 6 * size - 2;
+        this.lines = new long[2 * linesPerColor];
+        this.cells = new byte[size * size];
+        this.walls = new long[linesPerColor];
+        for (int line = 0; line < linesPerColor; line++) {
+            int first = lineFirst(line);
+            int last = lineLast(line);
+            long valid = (last == 63 ? -1L : (1L << (last + 1)) - 1) & (-1L << first);
+            walls[line] = ~valid;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int moveCount() {
+        return moveCount;
+    }
+
+    public boolean isFull() {
+        return moveCount == cells.length;
+    }
+
+    public boolean isInside(int row, int col) {
+        return row >= 0 && row < size && col >= 0 && col < size;
+    }
+
+    public boolean isEmpty(int row, int col) {
+        return cells[row * size + col] == 0;
+    }
+
+    /**
+     * 查询某格上的棋子
+     * @return BLACK、WHITE或EMPTY
+     */
+    public int stoneAt(int row, int col) {
+        return cells[row * size + col] - 1;
+    }
+
+    /**
+     * 在空位落子，并判断这一步是否形成五连
+     * @param color BLACK或WHITE
+     * @return 这一步是否获胜
+     */
+    public boolean place(int row, int col, int color) {
+        int cell = row * size + col;
+        if (cells[cell] != 0) {
+            throw new IllegalStateException("位置已有棋子: (" + row + ", " + col + ")");
+        }
+        cells[cell] = (byte) (color + 1);
+        moveCount++;
+
+        score -= lineScores(row, col);
+        int base = color * linesPerColor;
+        lines[base + rowLine(row)] |= 1L << col;
+        lines[base + colLine(col)] |= 1L << row;
+        lines[base + diagLine(row, col)] |= 1L << col;
+        lines[base + antiLine(row, col)] |= 1L << col;
+        score += lineScores(row, col);
+        return isFive(row, col, color);
+    }
+
+    /**
+     * 移除一枚棋子，供悔棋和AI搜索回退使用
+     */
+    public void remove(int row, int col) {
+        int cell = row * size + col;
+        int color = cells[cell] - 1;
+        if (color == EMPTY) {
+            return;
+        }
+        cells[cell] = 0;
+        moveCount--;
+
+        score -= lineScores(row, col);
+        int base = color * linesPerColor;
+        lines[base + rowLine(row)] &= ~(1L << col);
+        lines[base + colLine(col)] &= ~(1L << row);
+        lines[base + diagLine(row, col)] &= ~(1L << col);
+        lines[base + antiLine(row, col)] &= ~(1L << col);
+        score += lineScores(row, col);
+    }
+
+    /**
+     * 判断经过(row, col)的四条线上是否有color的五连
+     * 只看以该点为中心、前后各4格的窗口，所以找到的五连一定包含该点
+     */
+    public boolean isFive(int row, int col, int color) {
+        return LinePatterns.isFive(patternIndex(color, rowLine(row), col))
+                || LinePatterns.isFive(patternIndex(color, colLine(col), row))
+                || LinePatterns.isFive(patternIndex(color, diagLine(row, col), col))
+                || LinePatterns.isFive(patternIndex(color, antiLine(row, col), col));
+    }
+
+    /**
+     * 假设(row, col)上是color的棋子，某个方向上形成的线型
+     * 该格为空时相当于试下一子，不需要真的落子
+     * @return LinePatterns中的NONE到FIVE
+     */
+    public int shape(int row, int col, int color, int direction) {
+        switch (direction) {
+            case HORIZONTAL:
+                return LinePatterns.shape(patternIndex(color, rowLine(row), col));
+            case VERTICAL:
+                return LinePatterns.shape(patternIndex(color, colLine(col), row));
+            case DIAGONAL:
+                return LinePatterns.shape(patternIndex(color, diagLine(row, col), col));
+            default:
+                return LinePatterns.shape(patternIndex(color, antiLine(row, col), col));
+        }
+    }
+
+    /**
+     * 从color的角度看的局面分：所有没有出界的5格窗口中，只有一方棋子的窗口按棋子数计分，己方为正
+     * 随落子增量维护，查询是O(1)
+     */
+    public int score(int color) {
+        return color == BLACK ? score : -score;
+    }
+
+    /**
+     * 返回经过(row, col)的某个方向上color的整条线
+     * 水平线和两条对角线以列号为位序号，垂直线以行号为位序号
+     */
+    public long line(int color, int direction, int row, int col) {
+        int base = color * linesPerColor;
+        switch (direction) {
+            case HORIZONTAL:
+                return lines[base + rowLine(row)];
+            case VERTICAL:
+                return lines[base + colLine(col)];
+            case DIAGONAL:
+                return lines[base + diagLine(row, col)];
+            default:
+                return lines[base + antiLine(row, col)];
+        }
+    }
+
+    /**
+     * 单个颜色的线数量，线编号依次为：行、列、主对角线、副对角线
+     */
+    public int lineCount() {
+        return linesPerColor;
+    }
+
+    /**
+     * 按线编号取color在这条线上的棋子
+     */
+    public long lineBits(int color, int line) {
+        return lines[color * linesPerColor + line];
+    }
+
+    /**
+     * 线编号对应的线上第一个格子的位序号
+     */
+    public int lineFirst(int line) {
+        if (line < 2 * size) {
+            return 0;
+        }
+        if (line < 4 * size - 1) {
+            // 主对角线 row - col = d
+            int d = line - 2 * size - (size - 1);
+            return Math.max(0, -d);
+        }
+        // 副对角线 row + col = s
+        int s = line - (4 * size - 1);
+        return Math.max(0, s - size + 1);
+    }
+
+    /**
+     * 线编号对应的线上最后一个格子的位序号（包含）
+     */
+    public int lineLast(int line) {
+        if (line < 2 * size) {
+            return size - 1;
+        }
+        if (line < 4 * size - 1) {
+            int d = line - 2 * size - (size - 1);
+            return Math.min(size - 1, size - 1 - d);
+        }
+        int s = line - (4 * size - 1);
+        return Math.min(size - 1, s);
+    }
+
+    /**
+     * 线编号对应的方向
+     */
+    public int lineDirection(int line) {
+        if (line < size) {
+            return HORIZONTAL;
+        }
+        if (line < 2 * size) {
+            return VERTICAL;
+        }
+        return line < 4 * size - 1 ? DIAGONAL : ANTI_DIAGONAL;
+    }
+
+    /**
+     * 线上第pos位对应的格子编号 row * size + col
+     */
+    public int lineCell(int line, int pos) {
+        if (line < size) {
+            return line * size + pos;
+        }
+        if (line < 2 * size) {
+            return pos * size + (line - size);
+        }
+        if (line < 4 * size - 1) {
+            int d = line - 2 * size - (size - 1);
+            return (pos + d) * size + pos;
+        }
+        int s = line - (4 * size - 1);
+        return (s - pos) * size + pos;
+    }
+
+    public void clear() {
+        Arrays.fill(lines, 0L);
+        Arrays.fill(cells, (byte) 0);
+        moveCount = 0;
+        score = 0;
+    }
+
+    /**
+     * 把另一个同样大小的棋盘复制过来，不分配新数组
+     */
+    public void copyFrom(BitBoard other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("棋盘大小不一致");
+        }
+        System.arraycopy(other.lines, 0, lines, 0, lines.length);
+        System.arraycopy(other.cells, 0, cells, 0, cells.length);
+        moveCount = other.moveCount;
+        score = other.score;
+    }
+
+    public static char symbol(int color) {
+        return color == BLACK ? 'O' : 'X';
+    }
+
+    public static int opponent(int color) {
+        return color ^ 1;
+    }
+
+    /**
+     * 以color为低位平面，取线上pos前后各4格的编码
+     */
+    private int patternIndex(int color, int line, int pos) {
+        int base = color * linesPerColor;
+        int other = (color ^ 1) * linesPerColor;
+        return LinePatterns.index(lines[base + line], lines[other + line], walls[line], pos);
+    }
+
+    /**
+     * 经过(row, col)的四条线上包含该点的窗口分值之和，黑方角度
+     */
+    private int lineScores(int row, int col) {
+        return LinePatterns.score(patternIndex(BLACK, rowLine(row), col))
+                + LinePatterns.score(patternIndex(BLACK, colLine(col), row))
+                + LinePatterns.score(patternIndex(BLACK, diagLine(row, col), col))
+                + LinePatterns.score(patternIndex(BLACK, antiLine(row, col), col));
+    }
+
+    private int rowLine(int row) {
+        return row;
+    }
+
+    private int colLine(int col) {
+        return size + col;
+    }
+
+    private int diagLine(int row, int col) {
+        return 2 * size + (row - col + size - 1);
+    }
+
+    private int antiLine(int row, int col) {
+        return 2 * size + (2 * size - 1) + (row + col);
+    }
+}
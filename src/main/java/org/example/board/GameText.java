@@ -0,0 +1,77 @@
+package org.example.board;
+
+/**
+ * 棋谱的纯文本格式：一行一盘，着法为 "行,列"，用空格分隔，黑方先手，例如
+ *   7,7 7,8 8,8 6,6
+ * 以#开头的行和空行是注释。开局库生成和棋谱导入都读这种格式。
+ */
+public final class GameText {
+    private GameText() {
+    }
+
+    public static boolean isComment(CharSequence line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '#') {
+                return true;
+            }
+            if (c != ' ' && c != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 解析一行棋谱，着法以格子编号 row * size + col 写入cells
+     * @return 着法数；格式错误、坐标越界或超过cells长度时返回-1
+     */
+    public static int parse(CharSequence line, int size, int[] cells) {
+        int count = 0;
+        int i = 0;
+        int len = line.length();
+        while (true) {
+            while (i < len && (line.charAt(i) == ' ' || line.charAt(i) == '\t')) {
+                i++;
+            }
+            if (i >= len) {
+                return count;
+            }
+            int row = 0;
+            int start = i;
+            while (i < len && isDigit(line.charAt(i))) {
+                row = row * 10 + (line.charAt(i++) - '0');
+            }
+            if (i == start || i - start > 2 || i >= len || line.charAt(i) != ',') {
+                return -1;
+            }
+            int col = 0;
+            start = ++i;
+            while (i < len && isDigit(line.charAt(i))) {
+                col = col * 10 + (line.charAt(i++) - '0');
+            }
+            if (i == start || i - start > 2 || row >= size || col >= size || count == cells.length) {
+                return -1;
+            }
+            cells[count++] = row * size + col;
+        }
+    }
+
+    /**
+     * 把着法写成一行棋谱，不含换行符
+     */
+    public static String format(int[] cells, int count, int size) {
+        StringBuilder line = new StringBuilder(count * 6);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                line.append(' ');
+            }
+            line.append(cells[i] / size).append(',').append(cells[i] % size);
+        }
+        return line.toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
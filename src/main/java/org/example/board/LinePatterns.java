@@ -0,0 +1,169 @@
+package org.example.board;
+
+/**
+ * 线型查找表
+ * 以某格为中心，取同一条线上前后各4格共9格，编码成两个9位平面：
+ * 低9位是一方的棋子，高9位是另一方的棋子，棋盘外的格子在两个平面上都置1。
+ * 2^18个编码对应的线型和分值在类加载时全部算好，之后判断胜负、识别活三冲四、
+ * 更新局面分都只需要一次数组访问。
+ */
+public final class LinePatterns {
+    // 线型，按威胁程度递增
+    public static final int NONE = 0;
+    // 再下一子能成三
+    public static final int TWO = 1;
+    // 再下一子能成冲四
+    public static final int THREE = 2;
+    // 再下一子能成活四
+    public static final int OPEN_THREE = 3;
+    // 只有一个点能成五
+    public static final int FOUR = 4;
+    // 有两个或更多点能成五，对方挡不住
+    public static final int OPEN_FOUR = 5;
+    public static final int FIVE = 6;
+
+    public static final int WINDOW = 9;
+    public static final int CENTER = 4;
+    public static final int INDEX_BITS = 2 * WINDOW;
+    private static final int PLANE_MASK = (1 << WINDOW) - 1;
+    private static final int CENTER_BIT = 1 << CENTER;
+
+    // 5格窗口内有0~5个同色棋子（且没有对方棋子、没有出界）时的分值
+    private static final int[] WINDOW_SCORE = {0, 1, 12, 150, 2_000, 100_000};
+
+    // SHAPE[编码]：假设中心是低位平面一方的棋子，这条线上能形成的最强线型
+    private static final byte[] SHAPE = new byte[1 << INDEX_BITS];
+    // SCORE[编码]：包含中心的5个5格窗口的分值之和，低位平面一方为正
+    private static final int[] SCORE = new int[1 << INDEX_BITS];
+
+    static {
+        for (int index = 0; index < SHAPE.length; index++) {
+            SHAPE[index] = -1;
+        }
+        for (int index = 0; index < SHAPE.length; index++) {
+            int own = index & PLANE_MASK;
+            int other = index >>> WINDOW;
+            SCORE[index] = windowScore(own, other);
+            if ((other & CENTER_BIT) == 0) {
+                classify(own | CENTER_BIT, other);
+            } else {
+                // 中心被对方占据或出界，谈不上线型
+                SHAPE[index] = NONE;
+            }
+        }
+    }
+
+    private LinePatterns() {
+    }
+
+    /**
+     * 由一条线上双方的棋子和出界掩码得到以pos为中心的编码
+     * @param own 求线型或分值的一方在这条线上的棋子
+     * @param other 另一方的棋子
+     * @param wall 这条线上不存在的格子
+     */
+    public static int index(long own, long other, long wall, int pos) {
+        long outside = window(wall, pos);
+        if (pos < CENTER) {
+            // 线的起点之前
+            outside |= (1L << (CENTER - pos)) - 1;
+        }
+        if (pos + CENTER > 63) {
+            // 超出long的位数，只有棋盘大于59时才会发生
+            outside |= -1L << (64 - pos + CENTER);
+        }
+        return (int) ((window(own, pos) | outside) & PLANE_MASK)
+                | (int) ((window(other, pos) | outside) & PLANE_MASK) << WINDOW;
+    }
+
+    /**
+     * 中心格换成低位平面一方的棋子后的线型，中心原来为空或已是己方棋子都适用
+     */
+    public static int shape(int index) {
+        return SHAPE[index | CENTER_BIT];
+    }
+
+    public static boolean isFive(int index) {
+        return SHAPE[index | CENTER_BIT] == FIVE;
+    }
+
+    /**
+     * 包含中心的所有5格窗口的分值之和，低位平面一方为正、另一方为负
+     * 落子前后的差就是整个局面分的变化量
+     */
+    public static int score(int index) {
+        return SCORE[index];
+    }
+
+    private static long window(long bits, int pos) {
+        return pos >= CENTER ? bits >>> (pos - CENTER) : bits << (CENTER - pos);
+    }
+
+    private static int windowScore(int own, int other) {
+        int wall = own & other;
+        int score = 0;
+        for (int start = 0; start + 5 <= WINDOW; start++) {
+            int mask = 0x1F << start;
+            if ((wall & mask) != 0) {
+                continue;
+            }
+            int m = Integer.bitCount(own & mask);
+            int t = Integer.bitCount(other & mask);
+            if (t == 0) {
+                score += WINDOW_SCORE[m];
+            } else if (m == 0) {
+                score -= WINDOW_SCORE[t];
+            }
+        }
+        return score;
+    }
+
+    /**
+     * 按"再下一子能变成什么"递归分类，结果记在SHAPE里
+     * 窗口内任意连续5格都包含中心，所以窗口内出现五连就说明中心参与了五连
+     */
+    private static int classify(int own, int other) {
+        int index = own | other << WINDOW;
+        if (SHAPE[index] >= 0) {
+            return SHAPE[index];
+        }
+        int stones = own & ~other;
+        int shape;
+        if (hasFive(stones)) {
+            shape = FIVE;
+        } else {
+            int empty = ~(own | other) & PLANE_MASK;
+            int fivePoints = 0;
+            int best = NONE;
+            for (int bit = 0; bit < WINDOW; bit++) {
+                if ((empty & 1 << bit) == 0) {
+                    continue;
+                }
+                if (hasFive(stones | 1 << bit)) {
+                    fivePoints++;
+                } else if (fivePoints == 0) {
+                    best = Math.max(best, classify(own | 1 << bit, other));
+                }
+            }
+            if (fivePoints >= 2) {
+                shape = OPEN_FOUR;
+            } else if (fivePoints == 1) {
+                shape = FOUR;
+            } else if (best == OPEN_FOUR) {
+                shape = OPEN_THREE;
+            } else if (best == FOUR) {
+                shape = THREE;
+            } else if (best >= THREE) {
+                shape = TWO;
+            } else {
+                shape = NONE;
+            }
+        }
+        SHAPE[index] = (byte) shape;
+        return shape;
+    }
+
+    private static boolean hasFive(int m) {
+        return (m & (m >>> 1) & (m >>> 2) & (m >>> 3) & (m >>> 4)) != 0;
+    }
+}
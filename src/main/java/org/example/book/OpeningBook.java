@@ -0,0 +1,134 @@
+package org.example.book;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 开局库：Zobrist局面哈希 -> 候选着法及权重
+ * 文件整体只读映射到内存，启动时只检查文件头，查询直接在映射区域上二分查找，不分配对象。
+ * 文件格式（大端序）：
+ *   文件头 魔数(4) + 版本(4) + 棋盘大小(4) + 条目数(4)
+ *   条目   局面哈希(8) + 格子编号(4) + 权重(4)，按哈希升序排列，同一局面内按权重降序
+ */
+public final class OpeningBook {
+    public static final int MAGIC = 0x47424B31;
+    public static final int VERSION = 1;
+    static final int HEADER_LENGTH = 16;
+    static final int ENTRY_LENGTH = 16;
+
+    private final ByteBuffer entries;
+    private final int size;
+    private final int count;
+
+    private OpeningBook(ByteBuffer entries, int size, int count) {
+        this.entries = entries;
+        this.size = size;
+        this.count = count;
+    }
+
+    /**
+     * 映射开局库文件，映射在通道关闭后仍然有效
+     * @throws IOException 文件不存在或格式不对
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_LENGTH || length > Integer.MAX_VALUE) {
+                throw new IOException("开局库文件长度不对: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("不是开局库文件: " + path);
+            }
+            int size = buffer.getInt(8);
+            int count = buffer.getInt(12);
+            if (count < 0 || HEADER_LENGTH + (long) count * ENTRY_LENGTH != length) {
+                throw new IOException("开局库条目数与文件长度不符: " + path);
+            }
+            ByteBuffer entries = buffer.position(HEADER_LENGTH).slice().asReadOnlyBuffer();
+            return new OpeningBook(entries, size, count);
+        }
+    }
+
+    /**
+     * 开局库对应的棋盘大小
+     */
+    public int size() {
+        return size;
+    }
+
+    public int entryCount() {
+        return count;
+    }
+
+    /**
+     * 局面的第一个条目
+     * @return 条目下标；开局库中没有这个局面时返回-1
+     */
+    public int find(long hash) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (hashAt(mid) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < count && hashAt(low) == hash ? low : -1;
+    }
+
+    public long hashAt(int index) {
+        return entries.getLong(index * ENTRY_LENGTH);
+    }
+
+    public int moveAt(int index) {
+        return entries.getInt(index * ENTRY_LENGTH + 8);
+    }
+
+    public int weightAt(int index) {
+        return entries.getInt(index * ENTRY_LENGTH + 12);
+    }
+
+    /**
+     * 权重最高的着法
+     * @return 格子编号；开局库中没有这个局面时返回-1
+     */
+    public int bestMove(long hash) {
+        int index = find(hash);
+        return index < 0 ? -1 : moveAt(index);
+    }
+
+    /**
+     * 按权重随机选一个着法，让电脑的开局有变化
+     * @param random 调用方提供的随机数
+     * @return 格子编号；开局库中没有这个局面时返回-1
+     */
+    public int pickMove(long hash, long random) {
+        int first = find(hash);
+        if (first < 0) {
+            return -1;
+        }
+        long total = 0;
+        int end = first;
+        while (end < count && hashAt(end) == hash) {
+            total += weightAt(end++);
+        }
+        if (total <= 0) {
+            return moveAt(first);
+        }
+        long target = Math.floorMod(random, total);
+        for (int i = first; i < end; i++) {
+            target -= weightAt(i);
+            if (target < 0) {
+                return moveAt(i);
+            }
+        }
+        return moveAt(first);
+    }
+}
@@ -0,0 +1,142 @@
+package org.example.book;
+
+import org.example.ai.Zobrist;
+import org.example.board.BitBoard;
+import org.example.board.GameText;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 从纯文本棋谱（格式见GameText）生成开局库
+ * 用法：java org.example.book.OpeningBookBuilder 棋谱文件 开局库文件 [最多步数] [最少出现次数]
+ * 每盘棋的前若干步计入开局库：一个着法每出现一次权重加1，走这步的一方最后获胜再加2。
+ */
+public class OpeningBookBuilder {
+    private static final int DEFAULT_MAX_PLIES = 12;
+    private static final int DEFAULT_MIN_COUNT = 1;
+
+    private final int size;
+    private final int maxPlies;
+    private final Zobrist zobrist;
+    // 局面哈希 -> (格子编号 -> [出现次数, 权重])
+    private final Map<Long, Map<Integer, int[]>> positions = new HashMap<>();
+    private final BitBoard board;
+    private final int[] cells;
+    private int games;
+    private int skipped;
+
+    public OpeningBookBuilder(int size, int maxPlies) {
+        this.size = size;
+        this.maxPlies = maxPlies;
+        this.zobrist = Zobrist.forSize(size);
+        this.board = new BitBoard(size);
+        this.cells = new int[size * size];
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("用法: OpeningBookBuilder 棋谱文件 开局库文件 [最多步数] [最少出现次数]");
+            return;
+        }
+        int maxPlies = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_PLIES;
+        int minCount = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MIN_COUNT;
+        OpeningBookBuilder builder = new OpeningBookBuilder(BitBoard.DEFAULT_SIZE, maxPlies);
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                builder.addGame(line);
+            }
+        }
+        int entries = builder.write(Paths.get(args[1]), minCount);
+        System.out.println("读入棋谱 " + builder.games + " 盘，跳过 " + builder.skipped + " 盘，写入条目 " + entries + " 个");
+    }
+
+    /**
+     * 加入一行棋谱，注释行忽略，格式错误或有非法着法的棋谱整盘跳过
+     */
+    public void addGame(CharSequence line) {
+        if (GameText.isComment(line)) {
+            return;
+        }
+        int count = GameText.parse(line, size, cells);
+        if (count < 0) {
+            skipped++;
+            return;
+        }
+        // 先完整走一遍确定胜方，同时检查着法是否合法
+        board.clear();
+        int winner = BitBoard.EMPTY;
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            if (winner != BitBoard.EMPTY || !board.isEmpty(cell / size, cell % size)) {
+                skipped++;
+                return;
+            }
+            if (board.place(cell / size, cell % size, i % 2)) {
+                winner = i % 2;
+            }
+        }
+        games++;
+
+        board.clear();
+        long hash = 0;
+        for (int i = 0; i < Math.min(count, maxPlies); i++) {
+            int cell = cells[i];
+            int color = i % 2;
+            int[] stats = positions.computeIfAbsent(hash, h -> new HashMap<>()).computeIfAbsent(cell, c -> new int[2]);
+            stats[0]++;
+            stats[1] += color == winner ? 3 : 1;
+            board.place(cell / size, cell % size, color);
+            hash ^= zobrist.key(color, cell);
+        }
+    }
+
+    /**
+     * 写出开局库，先写临时文件再改名，读者不会看到写了一半的文件
+     * @param minCount 出现次数少于这个值的着法不写入
+     * @return 写入的条目数
+     */
+    public int write(Path path, int minCount) throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        for (Map.Entry<Long, Map<Integer, int[]>> position : positions.entrySet()) {
+            for (Map.Entry<Integer, int[]> move : position.getValue().entrySet()) {
+                if (move.getValue()[0] >= minCount) {
+                    entries.add(new long[]{position.getKey(), move.getKey(), move.getValue()[1]});
+                }
+            }
+        }
+        // 哈希升序，同一局面内权重降序
+        entries.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[2], a[2]));
+
+        ByteBuffer buffer = ByteBuffer.allocate(OpeningBook.HEADER_LENGTH + entries.size() * OpeningBook.ENTRY_LENGTH);
+        buffer.putInt(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putInt(size).putInt(entries.size());
+        for (long[] entry : entries) {
+            buffer.putLong(entry[0]).putInt((int) entry[1]).putInt((int) entry[2]);
+        }
+        buffer.flip();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return entries.size();
+    }
+}
@@ -0,0 +1,437 @@
+package org.example.journal;
+
+import org.example.log.AsyncLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * 只追加的走棋日志（预写日志）
+ * 日志由若干固定大小的段文件组成，每条记录固定64字节：
+ *   类型(1) + 颜色(1) + 格子编号(2) + 序号(4) + 棋局编号(8) + 附加数据(44) + CRC32C(4)
+ * OPEN记录开始一盘棋并带上房间名（过长时后面跟NAME记录），MOVE记录一步棋，END记录棋局结束。
+ * 房间线程调用move时只把记录复制进内存缓冲区；单独的写线程把积攒的一批记录一次写入并fsync（组提交），
+ * 所以落子不等待磁盘。进程崩溃最多丢失最后一批还没fsync的记录。
+ * 启动时按顺序重放所有段，没有END的棋局就是需要恢复的棋局；最后一段末尾写了一半的记录被截掉。
+ * 一个段之前开始的棋局都已结束时，这个段会被删除。
+ */
+public class MoveJournal implements AutoCloseable {
+    public static final int RECORD_LENGTH = 64;
+    // 每段最多的记录数，64K条即4MB
+    public static final int SEGMENT_RECORDS = 1 << 16;
+    // 内存缓冲区可容纳的记录数，写线程跟不上时append会等待
+    private static final int BUFFER_RECORDS = 1 << 14;
+
+    private static final byte TYPE_OPEN = 1;
+    private static final byte TYPE_NAME = 2;
+    private static final byte TYPE_MOVE = 3;
+    private static final byte TYPE_END = 4;
+    private static final int PAYLOAD_OFFSET = 16;
+    private static final int PAYLOAD_LENGTH = 44;
+    private static final int CRC_OFFSET = 60;
+
+    private final Path directory;
+    private final List<RecoveredGame> recovered;
+    // 房间线程写入pending，写线程把它和writing交换后写盘
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_LENGTH);
+    private ByteBuffer writing = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_LENGTH);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private long nextGameId;
+    private boolean closed;
+
+    // 以下字段只由写线程访问
+    private final CRC32C crc = new CRC32C();
+    private FileChannel segment;
+    private int segmentIndex;
+    private int segmentRecords;
+    // 未结束的棋局 -> 它的OPEN记录所在的段
+    private final Map<Long, Integer> liveGames;
+    private final Thread writer;
+
+    private MoveJournal(Path directory, List<RecoveredGame> recovered, Map<Long, Integer> liveGames,
+                        long nextGameId, int segmentIndex, int segmentRecords) throws IOException {
+        this.directory = directory;
+        this.recovered = recovered;
+        this.liveGames = liveGames;
+        this.nextGameId = nextGameId;
+        this.segmentIndex = segmentIndex;
+        this.segmentRecords = segmentRecords;
+        this.segment = openSegment(segmentIndex);
+        this.segment.position((long) segmentRecords * RECORD_LENGTH);
+        this.writer = new Thread(this::writeLoop, "move-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * 打开日志目录（不存在时创建），重放已有的段
+     */
+    public static MoveJournal open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        List<Integer> segments = listSegments(directory);
+        Map<Long, RecoveredGame> games = new LinkedHashMap<>();
+        Map<Long, Integer> liveGames = new HashMap<>();
+        long maxGameId = -1;
+        int lastIndex = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        int lastRecords = 0;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_LENGTH);
+        CRC32C crc = new CRC32C();
+
+        for (int index : segments) {
+            try (FileChannel channel = FileChannel.open(segmentPath(directory, index),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                int records = 0;
+                while (true) {
+                    record.clear();
+                    while (record.hasRemaining() && channel.read(record) > 0) {
+                        // 读满一条记录
+                    }
+                    if (record.hasRemaining() || !checksumValid(record, crc)) {
+                        break;
+                    }
+                    long gameId = record.getLong(8);
+                    maxGameId = Math.max(maxGameId, gameId);
+                    replay(record, games, liveGames, index);
+                    records++;
+                }
+                if ((long) records * RECORD_LENGTH != channel.size()) {
+                    // 崩溃时写了一半的记录，截掉后从这里继续写
+                    System.out.println("日志段 " + index + " 在第 " + records + " 条记录处损坏，已截断");
+                    channel.truncate((long) records * RECORD_LENGTH);
+                }
+                if (index == lastIndex) {
+                    lastRecords = records;
+                }
+            }
+        }
+        if (lastRecords >= SEGMENT_RECORDS) {
+            lastIndex++;
+            lastRecords = 0;
+        }
+        List<RecoveredGame> recovered = new ArrayList<>();
+        for (RecoveredGame game : games.values()) {
+            if (game.room != null) {
+                recovered.add(game);
+            }
+        }
+        return new MoveJournal(directory, Collections.unmodifiableList(recovered), liveGames,
+                maxGameId + 1, lastIndex, lastRecords);
+    }
+
+    /**
+     * 上次运行时没有结束的棋局，按开始顺序排列
+     */
+    public List<RecoveredGame> recoveredGames() {
+        return recovered;
+    }
+
+    /**
+     * 开始一盘新棋局
+     * @return 棋局编号，之后的move和end都用它
+     */
+    public long newGame(String room) {
+        byte[] name = room.getBytes(StandardCharsets.UTF_8);
+        lock.lock();
+        try {
+            long gameId = nextGameId++;
+            append(TYPE_OPEN, 0, 0, name.length, gameId, name, 0);
+            for (int offset = PAYLOAD_LENGTH; offset < name.length; offset += PAYLOAD_LENGTH) {
+                append(TYPE_NAME, 0, 0, offset, gameId, name, offset);
+            }
+            return gameId;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录一步棋，只复制到内存缓冲区，不等待写盘
+     */
+    public void move(long gameId, int seq, int cell, int color) {
+        lock.lock();
+        try {
+            append(TYPE_MOVE, color, cell, seq, gameId, null, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 棋局结束（分出胜负或房间关闭），重启后不再恢复
+     */
+    public void end(long gameId) {
+        lock.lock();
+        try {
+            append(TYPE_END, 0, 0, 0, gameId, null, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写完缓冲区中的所有记录后停止写线程
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void append(byte type, int color, int cell, int value, long gameId, byte[] payload, int payloadOffset) {
+        while (pending.remaining() < RECORD_LENGTH && !closed) {
+            notFull.awaitUninterruptibly();
+        }
+        if (closed) {
+            return;
+        }
+        int start = pending.position();
+        pending.put(type).put((byte) color).putShort((short) cell).putInt(value).putLong(gameId);
+        int length = payload == null ? 0 : Math.min(PAYLOAD_LENGTH, payload.length - payloadOffset);
+        if (length > 0) {
+            pending.put(payload, payloadOffset, length);
+        }
+        pending.position(start + CRC_OFFSET);
+        // CRC由写线程计算，这里先留空，尽量缩短持锁时间
+        pending.putInt(0);
+        notEmpty.signal();
+    }
+
+    private void writeLoop() {
+        while (true) {
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (pending.position() == 0) {
+                    break;
+                }
+                ByteBuffer batch = pending;
+                pending = writing;
+                writing = batch;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                writeBatch(writing);
+            } catch (IOException e) {
+                // 写盘失败不影响棋局进行，只是失去了崩溃恢复能力
+                AsyncLog.info("走棋日志写入失败: " + e.getMessage());
+            }
+            // 清零后复用，记录中没用到的附加数据始终为0
+            Arrays.fill(writing.array(), 0, writing.limit(), (byte) 0);
+            writing.clear();
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            System.out.println("走棋日志关闭失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 补上CRC，按段边界切开写入，最后对写过的段各fsync一次
+     */
+    private void writeBatch(ByteBuffer batch) throws IOException {
+        batch.flip();
+        for (int pos = 0; pos < batch.limit(); pos += RECORD_LENGTH) {
+            ByteBuffer record = batch.duplicate();
+            record.position(pos).limit(pos + CRC_OFFSET);
+            crc.reset();
+            crc.update(record);
+            batch.putInt(pos + CRC_OFFSET, (int) crc.getValue());
+            track(batch, pos);
+        }
+        int written = 0;
+        while (written < batch.limit()) {
+            if (segmentRecords == SEGMENT_RECORDS) {
+                segment.force(false);
+                segment.close();
+                segmentIndex++;
+                segmentRecords = 0;
+                segment = openSegment(segmentIndex);
+                deleteFinishedSegments();
+            }
+            int records = Math.min(SEGMENT_RECORDS - segmentRecords, (batch.limit() - written) / RECORD_LENGTH);
+            ByteBuffer chunk = batch.duplicate();
+            chunk.position(written).limit(written + records * RECORD_LENGTH);
+            while (chunk.hasRemaining()) {
+                segment.write(chunk);
+            }
+            written += records * RECORD_LENGTH;
+            segmentRecords += records;
+        }
+        segment.force(false);
+    }
+
+    private void track(ByteBuffer batch, int pos) {
+        byte type = batch.get(pos);
+        long gameId = batch.getLong(pos + 8);
+        if (type == TYPE_OPEN) {
+            liveGames.put(gameId, segmentIndex + (segmentRecords + pos / RECORD_LENGTH) / SEGMENT_RECORDS);
+        } else if (type == TYPE_END) {
+            liveGames.remove(gameId);
+        }
+    }
+
+    /**
+     * 删除当前段之前、比所有未结束棋局的OPEN记录都早的段
+     */
+    private void deleteFinishedSegments() throws IOException {
+        int keep = segmentIndex;
+        for (int index : liveGames.values()) {
+            keep = Math.min(keep, index);
+        }
+        for (int index : listSegments(directory)) {
+            if (index < keep) {
+                Files.deleteIfExists(segmentPath(directory, index));
+            }
+        }
+    }
+
+    private FileChannel openSegment(int index) throws IOException {
+        return FileChannel.open(segmentPath(directory, index), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private static void replay(ByteBuffer record, Map<Long, RecoveredGame> games, Map<Long, Integer> liveGames, int segment) {
+        byte type = record.get(0);
+        long gameId = record.getLong(8);
+        int value = record.getInt(4);
+        if (type == TYPE_OPEN) {
+            RecoveredGame game = new RecoveredGame(gameId, new byte[value]);
+            copyName(record, game, 0);
+            games.put(gameId, game);
+            liveGames.put(gameId, segment);
+            return;
+        }
+        RecoveredGame game = games.get(gameId);
+        if (game == null) {
+            return;
+        }
+        if (type == TYPE_NAME) {
+            copyName(record, game, value);
+        } else if (type == TYPE_MOVE) {
+            game.add(value, record.getShort(2) & 0xFFFF, record.get(1));
+        } else if (type == TYPE_END) {
+            games.remove(gameId);
+            liveGames.remove(gameId);
+        }
+    }
+
+    /**
+     * 把记录中的一段房间名复制到棋局里，收齐后得到房间名
+     */
+    private static void copyName(ByteBuffer record, RecoveredGame game, int offset) {
+        byte[] name = game.nameBytes;
+        int length = Math.min(PAYLOAD_LENGTH, name.length - offset);
+        if (offset >= 0 && length > 0) {
+            record.get(PAYLOAD_OFFSET, name, offset, length);
+            game.nameReceived += length;
+        }
+        if (game.room == null && game.nameReceived >= name.length) {
+            game.room = new String(name, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static boolean checksumValid(ByteBuffer record, CRC32C crc) {
+        ByteBuffer body = record.duplicate();
+        body.position(0).limit(CRC_OFFSET);
+        crc.reset();
+        crc.update(body);
+        return record.get(0) != 0 && record.getInt(CRC_OFFSET) == (int) crc.getValue();
+    }
+
+    private static List<Integer> listSegments(Path directory) throws IOException {
+        List<Integer> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Integer.parseInt(name.substring(8, name.length() - 4)));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static Path segmentPath(Path directory, int index) {
+        return directory.resolve(String.format("journal-%08d.log", index));
+    }
+
+    /**
+     * 重放得到的一盘未结束的棋局
+     */
+    public static final class RecoveredGame {
+        private final long gameId;
+        private final byte[] nameBytes;
+        private int nameReceived;
+        private String room;
+        private int[] cells = new int[32];
+        private int count;
+
+        RecoveredGame(long gameId, byte[] nameBytes) {
+            this.gameId = gameId;
+            this.nameBytes = nameBytes;
+        }
+
+        public long gameId() {
+            return gameId;
+        }
+
+        public String room() {
+            return room;
+        }
+
+        public int moveCount() {
+            return count;
+        }
+
+        /**
+         * 第seq步的格子编号
+         */
+        public int cell(int seq) {
+            return cells[seq];
+        }
+
+        private void add(int seq, int cell, int color) {
+            // 序号必须连续，重复或跳号的记录忽略
+            if (seq != count || color != count % 2) {
+                return;
+            }
+            if (count == cells.length) {
+                int[] grown = new int[cells.length * 2];
+                System.arraycopy(cells, 0, grown, 0, count);
+                cells = grown;
+            }
+            cells[count++] = cell;
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package org.example.load;
+
+import org.example.board.BitBoard;
+import org.example.board.GameText;
+import org.example.metrics.LatencyHistogram;
+import org.example.protocol.ErrorCode;
+import org.example.protocol.MessageSink;
+import org.example.protocol.TextCodec;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无界面的压力测试客户端，模拟大量同时对弈的玩家
+ * 用法：java org.example.load.LoadGenerator [连接数] [每盘每秒步数] [秒数] [事件循环数] [棋谱文件]
+ * 连接两两一盘，各自进入单独的房间，按给定的速度轮流落子；没有棋谱文件时随机走合法的空格，
+ * 有棋谱文件（格式见GameText）时依次重放其中的棋局。一盘分出胜负、下满或出错后换一个新房间重开。
+ * 每步的延迟是从发出落子到自己收到服务器广播的这一步，记入LatencyHistogram；
+ * 每REPORT_MILLIS毫秒输出一次吞吐量、延迟百分位和错误数，结束时输出汇总。
+ * 所有连接由少量非阻塞事件循环驱动，一台机器就能开出数千个连接。
+ * 服务器地址由系统属性 gomoku.host / gomoku.port 指定，默认本机8080端口，使用文本协议。
+ */
+public class LoadGenerator {
+    private static final String HOST = System.getProperty("gomoku.host", "localhost");
+    private static final int PORT = Integer.getInteger("gomoku.port", 8080);
+    private static final long SEED = 20240601L;
+    private static final int SIZE = BitBoard.DEFAULT_SIZE;
+    // 落子这么久没收到广播算超时，这盘作废重开
+    private static final long MOVE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long REPORT_MILLIS = 5000;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong moves = new AtomicLong();
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final AtomicInteger connected = new AtomicInteger();
+    // 按错误码统计服务器拒绝的落子
+    private final AtomicLongArray errors = new AtomicLongArray(16);
+    private final long moveIntervalNanos;
+    // 重放的棋局，没有棋谱文件时为空
+    private final List<int[]> scripts;
+    // 房间名前缀，每次运行不同，不会进入上次运行或日志恢复的房间
+    private final String roomPrefix = "load-" + Long.toString(System.currentTimeMillis(), 36) + "-";
+    private volatile boolean running = true;
+
+    private LoadGenerator(double movesPerSecond, List<int[]> scripts) {
+        this.moveIntervalNanos = (long) (1e9 / movesPerSecond);
+        this.scripts = scripts;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        double movesPerSecond = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int loopCount = args.length > 3 ? Integer.parseInt(args[3]) : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        List<int[]> scripts = args.length > 4 ? loadScripts(args[4]) : new ArrayList<>();
+
+        LoadGenerator generator = new LoadGenerator(movesPerSecond, scripts);
+        int gameCount = connections / 2;
+        System.out.println("连接 " + HOST + ":" + PORT + "，" + gameCount * 2 + " 个连接，" + gameCount + " 盘棋，每盘每秒 "
+                + movesPerSecond + " 步，" + (scripts.isEmpty() ? "随机走子" : "重放 " + scripts.size() + " 盘棋谱")
+                + "，" + loopCount + " 个事件循环，持续 " + seconds + " 秒");
+        Thread[] threads = new Thread[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            int first = gameCount * i / loopCount;
+            int last = gameCount * (i + 1) / loopCount;
+            Loop loop = generator.new Loop(i, first, last);
+            threads[i] = new Thread(loop, "load-loop-" + i);
+            threads[i].start();
+        }
+        generator.report(seconds);
+        generator.running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static List<int[]> loadScripts(String file) throws IOException {
+        List<int[]> scripts = new ArrayList<>();
+        int[] cells = new int[SIZE * SIZE];
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (GameText.isComment(line)) {
+                    continue;
+                }
+                int count = GameText.parse(line, SIZE, cells);
+                if (count > 0) {
+                    int[] script = new int[count];
+                    System.arraycopy(cells, 0, script, 0, count);
+                    scripts.add(script);
+                }
+            }
+        }
+        return scripts;
+    }
+
+    /**
+     * 定期输出本段时间的吞吐量和累计的延迟分布，结束时输出汇总
+     */
+    private void report(int seconds) throws InterruptedException {
+        System.out.println("   秒   连接    步/秒   p50(ms)   p90(ms)   p99(ms) p99.9(ms)   max(ms)   错误   超时   断开");
+        long start = System.nanoTime();
+        long lastMoves = 0;
+        long lastNanos = start;
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < end) {
+            Thread.sleep(Math.min(REPORT_MILLIS, Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()))));
+            long now = System.nanoTime();
+            long total = moves.get();
+            double rate = (total - lastMoves) * 1e9 / (now - lastNanos);
+            lastMoves = total;
+            lastNanos = now;
+            System.out.printf("%5d  %5d  %7.0f  %s  %5d  %5d  %5d%n", TimeUnit.NANOSECONDS.toSeconds(now - start),
+                    connected.get(), rate, percentiles(), errorCount(), timeouts.get(), disconnects.get());
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.println("---- 汇总 ----");
+        System.out.printf("落子 %d 步，平均 %.0f 步/秒，完成 %d 盘%n", moves.get(), moves.get() / elapsed, games.get());
+        System.out.println("延迟(ms) p50/p90/p99/p99.9/max: " + percentiles().trim().replaceAll(" +", " / "));
+        System.out.println("连接失败 " + connectFailures.get() + "，断开 " + disconnects.get() + "，超时 " + timeouts.get());
+        for (int code = 1; code < errors.length(); code++) {
+            if (errors.get(code) > 0) {
+                System.out.println("错误 " + code + "（" + ErrorCode.describe(code) + "）: " + errors.get(code));
+            }
+        }
+    }
+
+    private String percentiles() {
+        return String.format("%8.2f  %8.2f  %8.2f  %8.2f  %8.2f", latency.percentile(50) / 1e6, latency.percentile(90) / 1e6,
+                latency.percentile(99) / 1e6, latency.percentile(99.9) / 1e6, latency.max() / 1e6);
+    }
+
+    private long errorCount() {
+        long total = 0;
+        for (int i = 0; i < errors.length(); i++) {
+            total += errors.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * 一个事件循环，负责一部分棋局的两个连接；棋局状态只在这个线程上读写
+     */
+    private class Loop implements Runnable {
+        private final int index;
+        private final int firstGame;
+        private final int lastGame;
+        private final List<Game> loopGames = new ArrayList<>();
+        private final SplittableRandom random;
+        private final byte[] lineBuffer = new byte[READ_BUFFER_SIZE];
+        private Selector selector;
+
+        Loop(int index, int firstGame, int lastGame) {
+            this.index = index;
+            this.firstGame = firstGame;
+            this.lastGame = lastGame;
+            this.random = new SplittableRandom(SEED + index);
+        }
+
+        @Override
+        public void run() {
+            try {
+                selector = Selector.open();
+                for (int id = firstGame; id < lastGame && running; id++) {
+                    Connection black = connect();
+                    Connection white = black == null ? null : connect();
+                    if (white == null) {
+                        if (black != null) {
+                            black.close();
+                        }
+                        continue;
+                    }
+                    Game game = new Game(id, black, white);
+                    loopGames.add(game);
+                    game.start(System.nanoTime());
+                }
+                while (running) {
+                    selector.select(1);
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.read();
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                    long now = System.nanoTime();
+                    for (Game game : loopGames) {
+                        game.tick(now);
+                    }
+                }
+                for (Game game : loopGames) {
+                    game.black.close();
+                    game.white.close();
+                }
+                selector.close();
+            } catch (IOException e) {
+                System.out.println("事件循环 " + index + " 出错: " + e);
+            }
+        }
+
+        private Connection connect() {
+            try {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress(HOST, PORT));
+                channel.socket().setTcpNoDelay(true);
+                channel.configureBlocking(false);
+                Connection connection = new Connection(channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                // 要靠落子的序号把广播和自己发出的步对上
+                connection.send("hello\n");
+                connected.incrementAndGet();
+                return connection;
+            } catch (IOException e) {
+                connectFailures.incrementAndGet();
+                return null;
+            }
+        }
+
+        /**
+         * 一盘棋：黑白两个连接轮流落子，同一时间最多一步在等服务器的广播
+         */
+        private class Game {
+            private final int id;
+            private final Connection black;
+            private final Connection white;
+            private final BitBoard board = new BitBoard(SIZE);
+            private int round;
+            private int[] script;
+            // 下一步的发出时间；等广播期间为发出的时间和这一步的格子
+            private long due;
+            private boolean awaiting;
+            private long sentAt;
+            private int sentCell;
+            private boolean dead;
+
+            Game(int id, Connection black, Connection white) {
+                this.id = id;
+                this.black = black;
+                this.white = white;
+                black.game = this;
+                white.game = this;
+            }
+
+            /**
+             * 换一个新房间开始下一盘
+             */
+            void start(long now) {
+                board.clear();
+                awaiting = false;
+                script = scripts.isEmpty() ? null : scripts.get((id + round) % scripts.size());
+                String room = "join," + roomPrefix + id + "-" + round++ + "\n";
+                black.send(room);
+                white.send(room);
+                due = now + moveIntervalNanos;
+            }
+
+            void tick(long now) {
+                if (dead) {
+                    return;
+                }
+                if (awaiting) {
+                    if (now - sentAt > MOVE_TIMEOUT_NANOS) {
+                        timeouts.incrementAndGet();
+                        start(now);
+                    }
+                    return;
+                }
+                if (now >= due) {
+                    int cell = nextCell();
+                    if (cell < 0) {
+                        games.incrementAndGet();
+                        start(now);
+                        return;
+                    }
+                    Connection mover = board.moveCount() % 2 == 0 ? black : white;
+                    awaiting = true;
+                    sentAt = now;
+                    sentCell = cell;
+                    mover.send("move," + cell / SIZE + "," + cell % SIZE + "\n");
+                }
+            }
+
+            /**
+             * @return 下一步的格子，棋谱走完或棋盘下满时返回-1
+             */
+            private int nextCell() {
+                int count = board.moveCount();
+                if (script != null) {
+                    return count < script.length ? script[count] : -1;
+                }
+                if (count == SIZE * SIZE) {
+                    return -1;
+                }
+                for (int attempt = 0; attempt < 32; attempt++) {
+                    int cell = random.nextInt(SIZE * SIZE);
+                    if (board.isEmpty(cell / SIZE, cell % SIZE)) {
+                        return cell;
+                    }
+                }
+                for (int cell = 0; cell < SIZE * SIZE; cell++) {
+                    if (board.isEmpty(cell / SIZE, cell % SIZE)) {
+                        return cell;
+                    }
+                }
+                return -1;
+            }
+
+            /**
+             * 落子的一方收到了自己这一步的广播
+             */
+            void acknowledged(Connection from, int seq, int row, int col) {
+                Connection mover = board.moveCount() % 2 == 0 ? black : white;
+                if (!awaiting || from != mover || seq != board.moveCount() || row * SIZE + col != sentCell) {
+                    return;
+                }
+                long now = System.nanoTime();
+                latency.record(now - sentAt);
+                moves.incrementAndGet();
+                awaiting = false;
+                boolean win = board.place(row, col, seq % 2 == 0 ? BitBoard.BLACK : BitBoard.WHITE);
+                if (win) {
+                    games.incrementAndGet();
+                    start(now);
+                } else {
+                    due = sentAt + moveIntervalNanos;
+                }
+            }
+
+            void rejected(Connection from, int code) {
+                errors.incrementAndGet(Math.min(code, errors.length() - 1));
+                if (awaiting && from == (board.moveCount() % 2 == 0 ? black : white)) {
+                    start(System.nanoTime());
+                }
+            }
+
+            void disconnected() {
+                if (!dead) {
+                    dead = true;
+                    black.close();
+                    white.close();
+                }
+            }
+        }
+
+        /**
+         * 一个非阻塞连接，按行解码服务器消息
+         */
+        private class Connection implements MessageSink {
+            private final SocketChannel channel;
+            private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            private ByteBuffer pending;
+            private SelectionKey key;
+            private Game game;
+            private boolean closed;
+
+            Connection(SocketChannel channel) {
+                this.channel = channel;
+            }
+
+            void send(String line) {
+                if (closed) {
+                    return;
+                }
+                ByteBuffer data = ByteBuffer.wrap(line.getBytes(StandardCharsets.US_ASCII));
+                if (pending != null) {
+                    ByteBuffer merged = ByteBuffer.allocate(pending.remaining() + data.remaining());
+                    merged.put(pending).put(data).flip();
+                    pending = merged;
+                    return;
+                }
+                pending = data;
+                flush();
+            }
+
+            void flush() {
+                try {
+                    channel.write(pending);
+                } catch (IOException e) {
+                    lost();
+                    return;
+                }
+                if (pending.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                } else {
+                    pending = null;
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            }
+
+            void read() {
+                int n;
+                try {
+                    n = channel.read(readBuffer);
+                } catch (IOException e) {
+                    n = -1;
+                }
+                if (n < 0) {
+                    lost();
+                    return;
+                }
+                readBuffer.flip();
+                int length = readBuffer.remaining();
+                readBuffer.get(lineBuffer, 0, length);
+                int start = 0;
+                for (int i = 0; i < length; i++) {
+                    if (lineBuffer[i] == '\n') {
+                        TextCodec.decode(lineBuffer, start, i - start, this);
+                        start = i + 1;
+                    }
+                }
+                readBuffer.clear();
+                readBuffer.put(lineBuffer, start, length - start);
+            }
+
+            private void lost() {
+                if (!closed) {
+                    disconnects.incrementAndGet();
+                    game.disconnected();
+                }
+            }
+
+            void close() {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                connected.decrementAndGet();
+                key.cancel();
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // 已经断开
+                }
+            }
+
+            @Override
+            public void onMove(int seq, int row, int col) {
+                game.acknowledged(this, seq, row, col);
+            }
+
+            @Override
+            public void onError(int code) {
+                game.rejected(this, code);
+            }
+
+            @Override
+            public void onPing() {
+                send("pong\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.log;
+
+import java.io.PrintStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步、限速的服务器日志，代替房间线程和网络线程上直接调用的System.out.println
+ * println在PrintStream上加锁并同步写终端，终端慢时所有打日志的线程都排队等它；
+ * 这里调用者只把一行放进无锁队列就返回，由单独的"log-writer"线程批量写出。
+ * 每秒最多接受MAX_PER_SECOND行（系统属性 gomoku.logPerSecond），队列最多积压MAX_PENDING行，
+ * 超出的直接丢弃并计数，写线程定期报告丢弃了多少行，日志再多也不会拖慢走棋或占满内存。
+ */
+public final class AsyncLog {
+    private static final int MAX_PER_SECOND = Integer.getInteger("gomoku.logPerSecond", 1000);
+    private static final int MAX_PENDING = 8192;
+    // 队列为空时写线程的等待时间
+    private static final long IDLE_MILLIS = 20;
+
+    private static final Queue<String> lines = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pending = new AtomicInteger();
+    // 当前这一秒（System.nanoTime / 1秒）和这一秒里已经接受的行数
+    private static final AtomicLong window = new AtomicLong();
+    private static final AtomicInteger used = new AtomicInteger();
+    private static final LongAdder dropped = new LongAdder();
+    private static final PrintStream out = System.out;
+    private static final Thread writer;
+    private static volatile boolean running = true;
+
+    static {
+        writer = new Thread(AsyncLog::run, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private AsyncLog() {
+    }
+
+    /**
+     * 记录一行，超出限速或积压过多时丢弃
+     */
+    public static void info(String line) {
+        if (!acquire()) {
+            dropped.increment();
+            return;
+        }
+        if (pending.incrementAndGet() > MAX_PENDING) {
+            pending.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        lines.offer(line);
+    }
+
+    /**
+     * 固定窗口限速：进入新的一秒时由第一个调用者重置计数
+     * 重置和计数之间有竞争时这一秒可能多放过几行，不影响限速的效果
+     */
+    private static boolean acquire() {
+        long second = System.nanoTime() / TimeUnit.SECONDS.toNanos(1);
+        long current = window.get();
+        if (second != current && window.compareAndSet(current, second)) {
+            used.set(0);
+        }
+        return used.incrementAndGet() <= MAX_PER_SECOND;
+    }
+
+    /**
+     * 因限速或积压被丢弃的总行数
+     */
+    public static long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * 写完队列中剩下的行后停止写线程，用于正常退出
+     */
+    public static void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void run() {
+        StringBuilder batch = new StringBuilder();
+        long reported = 0;
+        long reportedAt = System.nanoTime();
+        while (true) {
+            String line;
+            while ((line = lines.poll()) != null) {
+                pending.decrementAndGet();
+                batch.append(line).append(System.lineSeparator());
+            }
+            // 丢弃的行数每秒最多报告一次
+            long total = dropped.sum();
+            long now = System.nanoTime();
+            if (total != reported && (now - reportedAt >= TimeUnit.SECONDS.toNanos(1) || !running)) {
+                batch.append("日志过多，丢弃了 ").append(total - reported).append(" 行").append(System.lineSeparator());
+                reported = total;
+                reportedAt = now;
+            }
+            if (batch.length() > 0) {
+                out.print(batch);
+                out.flush();
+                batch.setLength(0);
+            }
+            if (!running && lines.isEmpty()) {
+                return;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(IDLE_MILLIS));
+        }
+    }
+}
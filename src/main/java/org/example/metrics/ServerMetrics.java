@@ -0,0 +1,210 @@
+package org.example.metrics;
+
+import org.example.log.AsyncLog;
+import org.example.net.Peer;
+import org.example.net.TimerWheel;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * 服务器运行指标
+ * 计数用LongAdder，延迟用LatencyHistogram，记录一次都只是几个原子自增，房间线程之间不争锁；
+ * 在线人数、房间数和发送队列积压是读取时现算的，不在走棋路径上维护。
+ * 每秒采样一次算出每秒步数，每METRICS_SECONDS秒（系统属性 gomoku.metricsSeconds，0为不输出）把dump()写入日志，
+ * 同时注册为JMX MBean，见ServerMetricsMBean。
+ */
+public class ServerMetrics implements ServerMetricsMBean {
+    public static final String OBJECT_NAME = "org.example:type=ServerMetrics";
+    private static final long METRICS_SECONDS = Long.getLong("gomoku.metricsSeconds", 60);
+    private static final long SAMPLE_MILLIS = 1000;
+
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder rejectedMoves = new LongAdder();
+    private final LongAdder rejectedFrames = new LongAdder();
+    // 从收到落子到广播完成，包括在房间邮箱里排队的时间，纳秒
+    private final LatencyHistogram moveLatency = new LatencyHistogram();
+    // 一次广播放进所有接收者发送队列的时间，纳秒
+    private final LatencyHistogram broadcastLatency = new LatencyHistogram();
+    private volatile Collection<? extends Peer> clients = Collections.emptyList();
+    private volatile IntSupplier rooms = () -> 0;
+    // 最近一个采样周期的每秒步数，只在时间轮线程上计算
+    private volatile double movesPerSecond;
+    private long lastMoves;
+    private long lastSample;
+    private long samples;
+
+    /**
+     * 一步棋处理完毕
+     * @param received 收到这步棋时的System.nanoTime
+     */
+    public void moved(long received) {
+        moves.increment();
+        moveLatency.record(System.nanoTime() - received);
+    }
+
+    public void rejected() {
+        rejectedMoves.increment();
+    }
+
+    /**
+     * @param started 开始广播时的System.nanoTime
+     * @param rejected 因发送队列积压被拒绝的接收者数
+     */
+    public void broadcast(long started, int rejected) {
+        broadcastLatency.record(System.nanoTime() - started);
+        if (rejected > 0) {
+            rejectedFrames.add(rejected);
+        }
+    }
+
+    /**
+     * 开始每秒采样和定期输出，并注册到JMX
+     * @param clients 在线的连接，读取发送队列积压时遍历
+     * @param rooms 当前房间数
+     */
+    public void start(TimerWheel timers, Collection<? extends Peer> clients, IntSupplier rooms) {
+        this.clients = clients;
+        this.rooms = rooms;
+        lastSample = System.nanoTime();
+        schedule(timers);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.out.println("运行指标注册到JMX失败: " + e.getMessage());
+        }
+    }
+
+    private void schedule(TimerWheel timers) {
+        timers.schedule(() -> {
+            sample();
+            schedule(timers);
+        }, SAMPLE_MILLIS);
+    }
+
+    private void sample() {
+        long now = System.nanoTime();
+        long total = moves.sum();
+        movesPerSecond = (total - lastMoves) * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(1, now - lastSample);
+        lastMoves = total;
+        lastSample = now;
+        samples++;
+        if (METRICS_SECONDS > 0 && samples % (METRICS_SECONDS * 1000 / SAMPLE_MILLIS) == 0) {
+            AsyncLog.info(dump());
+        }
+    }
+
+    @Override
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    @Override
+    public double getMovesPerSecond() {
+        return movesPerSecond;
+    }
+
+    @Override
+    public long getRejectedMoves() {
+        return rejectedMoves.sum();
+    }
+
+    @Override
+    public long getMoveLatencyP50Micros() {
+        return micros(moveLatency.percentile(50));
+    }
+
+    @Override
+    public long getMoveLatencyP99Micros() {
+        return micros(moveLatency.percentile(99));
+    }
+
+    @Override
+    public long getMoveLatencyMaxMicros() {
+        return micros(moveLatency.max());
+    }
+
+    @Override
+    public long getBroadcastLatencyP50Micros() {
+        return micros(broadcastLatency.percentile(50));
+    }
+
+    @Override
+    public long getBroadcastLatencyP99Micros() {
+        return micros(broadcastLatency.percentile(99));
+    }
+
+    @Override
+    public long getBroadcastLatencyMaxMicros() {
+        return micros(broadcastLatency.max());
+    }
+
+    @Override
+    public long getRejectedFrames() {
+        return rejectedFrames.sum();
+    }
+
+    @Override
+    public int getConnectedClients() {
+        return clients.size();
+    }
+
+    @Override
+    public int getRooms() {
+        return rooms.getAsInt();
+    }
+
+    @Override
+    public long getOutboundQueueBytes() {
+        long total = 0;
+        for (Peer peer : clients) {
+            total += peer.pendingBytes();
+        }
+        return total;
+    }
+
+    @Override
+    public long getMaxOutboundQueueBytes() {
+        long max = 0;
+        for (Peer peer : clients) {
+            max = Math.max(max, peer.pendingBytes());
+        }
+        return max;
+    }
+
+    @Override
+    public long getDroppedLogLines() {
+        return AsyncLog.dropped();
+    }
+
+    /**
+     * 每行一项，"名称 值"，延迟为微秒
+     */
+    @Override
+    public String dump() {
+        String lineSeparator = System.lineSeparator();
+        return "metrics" + lineSeparator
+                + "moves " + getMoves() + lineSeparator
+                + "moves_per_second " + String.format("%.1f", getMovesPerSecond()) + lineSeparator
+                + "rejected_moves " + getRejectedMoves() + lineSeparator
+                + "move_latency_us p50=" + getMoveLatencyP50Micros() + " p99=" + getMoveLatencyP99Micros()
+                + " max=" + getMoveLatencyMaxMicros() + lineSeparator
+                + "broadcast_latency_us p50=" + getBroadcastLatencyP50Micros() + " p99=" + getBroadcastLatencyP99Micros()
+                + " max=" + getBroadcastLatencyMaxMicros() + lineSeparator
+                + "rejected_frames " + getRejectedFrames() + lineSeparator
+                + "connected_clients " + getConnectedClients() + lineSeparator
+                + "rooms " + getRooms() + lineSeparator
+                + "outbound_queue_bytes total=" + getOutboundQueueBytes() + " max=" + getMaxOutboundQueueBytes() + lineSeparator
+                + "dropped_log_lines " + getDroppedLogLines();
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
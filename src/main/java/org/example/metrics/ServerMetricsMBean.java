@@ -0,0 +1,42 @@
+package org.example.metrics;
+
+/**
+ * ServerMetrics在JMX中的视图，注册名为 org.example:type=ServerMetrics
+ * 用jconsole或jmxterm连上服务器进程即可查看，时间单位都是微秒
+ */
+public interface ServerMetricsMBean {
+    long getMoves();
+
+    double getMovesPerSecond();
+
+    long getRejectedMoves();
+
+    long getMoveLatencyP50Micros();
+
+    long getMoveLatencyP99Micros();
+
+    long getMoveLatencyMaxMicros();
+
+    long getBroadcastLatencyP50Micros();
+
+    long getBroadcastLatencyP99Micros();
+
+    long getBroadcastLatencyMaxMicros();
+
+    long getRejectedFrames();
+
+    int getConnectedClients();
+
+    int getRooms();
+
+    long getOutboundQueueBytes();
+
+    long getMaxOutboundQueueBytes();
+
+    long getDroppedLogLines();
+
+    /**
+     * 和定期写入日志的内容相同的纯文本
+     */
+    String dump();
+}
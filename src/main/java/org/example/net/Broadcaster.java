@@ -0,0 +1,27 @@
+package org.example.net;
+
+import org.example.protocol.Frame;
+
+import java.util.Collection;
+
+/**
+ * 广播：帧只编码一次，然后放进每个接收者的发送队列
+ * 放入队列不做网络I/O，某个客户端读得慢只会让它自己的队列被拒绝，不会拖慢其他接收者
+ */
+public final class Broadcaster {
+    private Broadcaster() {
+    }
+
+    /**
+     * @return 因发送队列积压过多而被拒绝的接收者数量
+     */
+    public static int broadcast(Collection<? extends Peer> recipients, Frame frame) {
+        int rejected = 0;
+        for (Peer recipient : recipients) {
+            if (!recipient.send(frame)) {
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.net;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 为阻塞模式的连接处理器创建执行器
+ * "virtual" 表示每个连接一个虚拟线程，"platform" 表示平台线程池
+ * 每个连接的读任务和写任务都占用一个线程直到连接断开，两者必须放在不同的执行器上：
+ * 共用一个固定大小的线程池时，N个线程只够N/2个连接，只有一个线程时写任务永远排不上，什么也发不出去
+ */
+public final class HandlerExecutors {
+    public static final String VIRTUAL = "virtual";
+    public static final String PLATFORM = "platform";
+
+    private HandlerExecutors() {
+    }
+
+    /**
+     * @param mode VIRTUAL或PLATFORM
+     * @param threads 平台线程池大小，小于等于0时按需创建线程
+     */
+    public static ExecutorService create(String mode, int threads) {
+        if (VIRTUAL.equals(mode)) {
+            // 通过反射调用，这样在不支持虚拟线程的JDK上也能编译和运行
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("当前JDK不支持虚拟线程，改用平台线程池");
+            }
+        }
+        return threads > 0 ? Executors.newFixedThreadPool(threads) : Executors.newCachedThreadPool();
+    }
+
+    /**
+     * 写任务的执行器，按需创建线程，不受读线程池大小的限制
+     * @param mode VIRTUAL或PLATFORM
+     */
+    public static ExecutorService createWriters(String mode) {
+        if (VIRTUAL.equals(mode)) {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // 和读任务一样退回平台线程
+            }
+        }
+        AtomicInteger next = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "client-writer-" + next.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
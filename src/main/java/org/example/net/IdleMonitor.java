@@ -0,0 +1,83 @@
+package org.example.net;
+
+import org.example.protocol.Frame;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接的心跳和空闲超时
+ * 每个连接只有一个挂在时间轮上的定时器，收到数据时只更新时间戳，不重新挂定时器；
+ * 定时器到期时再看距上次收到数据有多久：超过HEARTBEAT_MILLIS就发一个ping，超过IDLE_TIMEOUT_MILLIS
+ * 认为对端已死，关闭连接，否则按剩下的时间重新挂上。
+ * 只有表明会回应心跳的连接（回过pong、发过hello或使用二进制协议）才会因空闲被关闭；
+ * 旧的文本客户端等对手落子时可以很久不发任何数据，对它们只发ping，不判空闲，
+ * 死连接靠TCP发现：ping写不出去或读到连接关闭时照常断开。
+ */
+public final class IdleMonitor implements Runnable {
+    // 连续这么久没收到数据就发心跳
+    public static final long HEARTBEAT_MILLIS = 15_000;
+    // 连续这么久没收到数据（包括心跳的回应）就断开
+    public static final long IDLE_TIMEOUT_MILLIS = 45_000;
+
+    private final TimerWheel wheel;
+    private final Peer peer;
+    // 断开连接的方式由连接自己决定，比如NIO连接要回到事件循环线程上关闭
+    private final Runnable onIdle;
+    private volatile long lastActivity = System.nanoTime();
+    // 对端会回应心跳，空闲过久时可以断开
+    private volatile boolean heartbeat;
+    private volatile TimerWheel.Timeout timeout;
+    private volatile boolean stopped;
+
+    public IdleMonitor(TimerWheel wheel, Peer peer, Runnable onIdle) {
+        this.wheel = wheel;
+        this.peer = peer;
+        this.onIdle = onIdle;
+    }
+
+    public void start() {
+        timeout = wheel.schedule(this, HEARTBEAT_MILLIS);
+    }
+
+    /**
+     * 收到数据时调用
+     */
+    public void touch() {
+        lastActivity = System.nanoTime();
+    }
+
+    /**
+     * 对端表明了会回应ping，之后空闲过久就断开
+     */
+    public void heartbeatSupported() {
+        heartbeat = true;
+    }
+
+    public void stop() {
+        stopped = true;
+        TimerWheel.Timeout current = timeout;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    @Override
+    public void run() {
+        if (stopped) {
+            return;
+        }
+        long idle = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastActivity);
+        if (heartbeat && idle >= IDLE_TIMEOUT_MILLIS) {
+            onIdle.run();
+            return;
+        }
+        long next;
+        if (idle >= HEARTBEAT_MILLIS) {
+            peer.send(Frame.PING);
+            next = heartbeat ? Math.min(HEARTBEAT_MILLIS, IDLE_TIMEOUT_MILLIS - idle) : HEARTBEAT_MILLIS;
+        } else {
+            next = HEARTBEAT_MILLIS - idle;
+        }
+        timeout = wheel.schedule(this, next);
+    }
+}
@@ -0,0 +1,455 @@
+package org.example.net;
+
+import org.example.protocol.BinaryCodec;
+import org.example.protocol.Frame;
+import org.example.protocol.MessageSink;
+import org.example.protocol.TextCodec;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于Selector的非阻塞服务器
+ * 一个接收线程负责accept，若干个事件循环线程各自持有一个Selector，
+ * 新连接按轮询分配给事件循环，之后该连接的读写都只在这个线程上进行。
+ * 空闲连接只占用一个SelectionKey和一个小的读缓冲区，不占用线程。
+ * 每个连接在共用的时间轮上有一个空闲检测定时器，对端长时间没有数据就发心跳，仍无回应就断开。
+ */
+public class NioServer {
+    // 一行消息的最大长度，超过则认为客户端异常并断开
+    private static final int READ_BUFFER_SIZE = 512;
+    // 事件循环共用的发送缓冲区大小，待发送的帧在这里合并后一次写出
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    // 单个连接积压的待发送字节上限
+    private static final int MAX_PENDING_BYTES = 64 * 1024;
+
+    private static final int PROTOCOL_UNKNOWN = 0;
+    private static final int PROTOCOL_TEXT = 1;
+    private static final int PROTOCOL_BINARY = 2;
+
+    private final int port;
+    private final PeerListener listener;
+    private final TimerWheel timers;
+    private final EventLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile boolean running = true;
+    private ServerSocketChannel serverChannel;
+
+    public NioServer(int port, int loopCount, PeerListener listener, TimerWheel timers) {
+        this.port = port;
+        this.listener = listener;
+        this.timers = timers;
+        this.loops = new EventLoop[loopCount];
+    }
+
+    /**
+     * 启动事件循环，并在当前线程上接收连接，直到stop被调用
+     */
+    public void serve() throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(Selector.open());
+            Thread thread = new Thread(loops[i], "nio-loop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        while (running) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                if (!running) {
+                    break;
+                }
+                throw e;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            EventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+            loop.register(new NioConnection("client" + nextId.getAndIncrement(), channel, loop));
+        }
+    }
+
+    public void stop() throws IOException {
+        running = false;
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+        for (EventLoop loop : loops) {
+            if (loop != null) {
+                loop.stop();
+            }
+        }
+    }
+
+    /**
+     * 事件循环，一个线程一个Selector
+     */
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        // 其他线程提交的新连接
+        private final Queue<NioConnection> registrations = new ConcurrentLinkedQueue<>();
+        // 其他线程写入数据后，等待本线程发送的连接
+        private final Queue<NioConnection> flushes = new ConcurrentLinkedQueue<>();
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        // 本线程上所有连接共用，只在本线程上使用
+        private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        private volatile boolean running = true;
+        private volatile Thread thread;
+
+        EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void register(NioConnection connection) {
+            registrations.add(connection);
+            selector.wakeup();
+        }
+
+        void scheduleFlush(NioConnection connection) {
+            if (Thread.currentThread() == thread) {
+                connection.flush();
+            } else {
+                flushes.add(connection);
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * 在事件循环线程上执行任务
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void stop() {
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            while (running) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    break;
+                }
+
+                NioConnection connection;
+                while ((connection = registrations.poll()) != null) {
+                    connection.register(selector);
+                }
+                while ((connection = flushes.poll()) != null) {
+                    connection.flush();
+                }
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection conn = (NioConnection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            conn.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            conn.flush();
+                        }
+                    } catch (CancelledKeyException e) {
+                        conn.close();
+                    }
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                ((NioConnection) key.attachment()).close();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 一个非阻塞连接
+     * 读：第一个字节决定协议，文本协议按行切分，二进制协议按帧切分，都直接在读缓冲区上解码；
+     * 写：广播的共享帧进入发送队列，事件循环把排队的帧合并到共用缓冲区后一次write，
+     * 发不完的部分留在连接自己的缓冲区，等待可写事件
+     */
+    private class NioConnection implements Peer, MessageSink {
+        private final String id;
+        private final SocketChannel channel;
+        private final EventLoop loop;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final OutboundQueue outbound = new OutboundQueue(MAX_PENDING_BYTES);
+        // 上次没有写完的数据，只在事件循环线程上访问
+        private ByteBuffer leftover;
+        // 已经在事件循环的待发送队列中，避免同一连接重复排队
+        private final AtomicBoolean flushPending = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // 空闲超时在事件循环线程上关闭连接
+        private final IdleMonitor idle;
+        // 第一个字节到达后确定
+        private volatile int protocol = PROTOCOL_UNKNOWN;
+        // 文本客户端发过hello、resume或watch，落子带序号和棋钟
+        private volatile boolean extendedText;
+        private SelectionKey key;
+
+        NioConnection(String id, SocketChannel channel, EventLoop loop) {
+            this.id = id;
+            this.channel = channel;
+            this.loop = loop;
+            this.idle = new IdleMonitor(timers, this, () -> loop.execute(this::close));
+        }
+
+        @Override
+        public String id() {
+            return id;
+        }
+
+        @Override
+        public boolean send(Frame frame) {
+            if (outbound.offer(frame.encoded(format()))) {
+                requestFlush();
+                return true;
+            }
+            if (!closed.get()) {
+                // 积压超过上限说明客户端读得太慢，断开它
+                loop.execute(this::close);
+            }
+            return false;
+        }
+
+        @Override
+        public int pendingBytes() {
+            return outbound.pendingBytes();
+        }
+
+        private int format() {
+            return protocol == PROTOCOL_BINARY ? Frame.BINARY : extendedText ? Frame.TEXT : Frame.LEGACY_TEXT;
+        }
+
+        @Override
+        public boolean replacePending(Frame frame) {
+            if (outbound.replace(frame.encoded(format()))) {
+                requestFlush();
+                return true;
+            }
+            return false;
+        }
+
+        private void requestFlush() {
+            if (flushPending.compareAndSet(false, true)) {
+                loop.scheduleFlush(this);
+            }
+        }
+
+        @Override
+        public void onMove(int seq, int row, int col) {
+            listener.onMove(this, row, col);
+        }
+
+        @Override
+        public void onJoin(String room) {
+            listener.onJoin(this, room);
+        }
+
+        @Override
+        public void onWatch(String room) {
+            extendedText = true;
+            listener.onWatch(this, room);
+        }
+
+        @Override
+        public void onHello() {
+            extendedText = true;
+            idle.heartbeatSupported();
+        }
+
+        @Override
+        public void onPong() {
+            idle.heartbeatSupported();
+        }
+
+        @Override
+        public void onPing() {
+            send(Frame.PONG);
+        }
+
+        @Override
+        public void onQueue(int rating) {
+            listener.onQueue(this, rating);
+        }
+
+        @Override
+        public void onUnqueue() {
+            listener.onUnqueue(this);
+        }
+
+        @Override
+        public void onResume(long token, int lastSeq) {
+            extendedText = true;
+            listener.onResume(this, token, lastSeq);
+        }
+
+        @Override
+        public void onAi(int threads) {
+            listener.onAi(this, threads);
+        }
+
+        void register(Selector selector) {
+            try {
+                key = channel.register(selector, SelectionKey.OP_READ, this);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            listener.onConnect(this);
+            idle.start();
+            // 注册前可能已经有广播消息排队
+            flush();
+        }
+
+        void read() {
+            int n;
+            try {
+                n = channel.read(readBuffer);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (n < 0) {
+                close();
+                return;
+            }
+            idle.touch();
+
+            byte[] data = readBuffer.array();
+            int start = 0;
+            if (protocol == PROTOCOL_UNKNOWN && readBuffer.position() > 0) {
+                if (data[0] == BinaryCodec.MAGIC) {
+                    // 丢弃还没发出的文本消息，并回送MAGIC，客户端丢弃它之前收到的所有字节
+                    protocol = PROTOCOL_BINARY;
+                    outbound.clear();
+                    leftover = null;
+                    outbound.offer(BinaryCodec.MAGIC_FRAME);
+                    requestFlush();
+                    idle.heartbeatSupported();
+                    listener.onBinary(this);
+                    start = 1;
+                } else {
+                    protocol = PROTOCOL_TEXT;
+                }
+            }
+
+            if (protocol == PROTOCOL_BINARY) {
+                readBuffer.flip();
+                readBuffer.position(start);
+                if (BinaryCodec.decode(readBuffer, this) < 0) {
+                    close();
+                    return;
+                }
+                readBuffer.compact();
+                return;
+            }
+
+            // 按\n切分出完整的行，剩下的半行留在缓冲区开头
+            int end = readBuffer.position();
+            for (int i = start; i < end; i++) {
+                if (data[i] == '\n') {
+                    int len = i - start;
+                    if (len > 0 && data[i - 1] == '\r') {
+                        len--;
+                    }
+                    TextCodec.decode(data, start, len, this);
+                    start = i + 1;
+                }
+            }
+            if (start == 0 && end == data.length) {
+                // 缓冲区满了仍然没有换行符
+                close();
+                return;
+            }
+            System.arraycopy(data, start, data, 0, end - start);
+            readBuffer.position(end - start);
+        }
+
+        void flush() {
+            flushPending.set(false);
+            if (key == null || !key.isValid()) {
+                return;
+            }
+            try {
+                if (leftover != null) {
+                    channel.write(leftover);
+                    if (leftover.hasRemaining()) {
+                        return;
+                    }
+                    leftover = null;
+                }
+                ByteBuffer buffer = loop.writeBuffer;
+                while (true) {
+                    buffer.clear();
+                    if (outbound.drainTo(buffer) == 0) {
+                        break;
+                    }
+                    buffer.flip();
+                    channel.write(buffer);
+                    if (buffer.hasRemaining()) {
+                        // 内核发送缓冲区满，剩余部分复制出来，等待可写事件
+                        leftover = ByteBuffer.allocate(buffer.remaining());
+                        leftover.put(buffer).flip();
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            if (key != null) {
+                key.cancel();
+            }
+            idle.stop();
+            outbound.close();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (key != null) {
+                listener.onClose(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.example.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 单个连接的发送队列
+ * 队列里存放的是广播共享的只读帧，入队时不复制；发送线程取出时把多帧合并复制到自己的缓冲区，
+ * 一次write发出。积压字节数超过上限时拒绝入队，由调用方决定如何处理慢客户端，
+ * 这样一个读得慢的客户端不会拖住广播线程。
+ */
+public class OutboundQueue {
+    private final int maxPendingBytes;
+    private final ArrayDeque<ByteBuffer> frames = new ArrayDeque<>();
+    // 用ReentrantLock而不是synchronized，虚拟线程在这里等待时不会钉住载体线程
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private int pendingBytes;
+    // 队首帧已经取走的字节数
+    private int headOffset;
+    private boolean closed;
+
+    public OutboundQueue(int maxPendingBytes) {
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * 放入一帧，帧的内容为 [0, limit)
+     * @return 队列已关闭或积压超过上限时返回false
+     */
+    public boolean offer(ByteBuffer frame) {
+        lock.lock();
+        try {
+            if (closed || pendingBytes + frame.limit() > maxPendingBytes) {
+                return false;
+            }
+            frames.addLast(frame);
+            pendingBytes += frame.limit();
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把尽可能多的待发送字节复制到dst，不改变共享帧的position
+     * @return 复制的字节数
+     */
+    public int drainTo(ByteBuffer dst) {
+        lock.lock();
+        try {
+            return drainLocked(dst);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 阻塞等待数据，然后同drainTo，供阻塞模式的发送线程使用
+     * @return 复制的字节数；队列关闭时返回-1
+     */
+    public int take(ByteBuffer dst) throws InterruptedException {
+        lock.lock();
+        try {
+            while (frames.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            if (frames.isEmpty()) {
+                return -1;
+            }
+            return drainLocked(dst);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int pendingBytes() {
+        lock.lock();
+        try {
+            return pendingBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return pendingBytes() == 0;
+    }
+
+    /**
+     * 丢弃所有未发送的帧
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            frames.clear();
+            pendingBytes = 0;
+            headOffset = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 丢弃还没开始发送的帧，换成这一帧；已经发出一部分的队首帧保留，保证对端收到的帧是完整的
+     * @return 队列已关闭时返回false
+     */
+    public boolean replace(ByteBuffer frame) {
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            ByteBuffer head = headOffset > 0 ? frames.peekFirst() : null;
+            frames.clear();
+            pendingBytes = 0;
+            if (head != null) {
+                frames.addLast(head);
+                pendingBytes = head.limit() - headOffset;
+            }
+            frames.addLast(frame);
+            pendingBytes += frame.limit();
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            frames.clear();
+            pendingBytes = 0;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int drainLocked(ByteBuffer dst) {
+        int copied = 0;
+        ByteBuffer frame;
+        while (dst.hasRemaining() && (frame = frames.peekFirst()) != null) {
+            int n = Math.min(frame.limit() - headOffset, dst.remaining());
+            dst.put(dst.position(), frame, headOffset, n);
+            dst.position(dst.position() + n);
+            copied += n;
+            headOffset += n;
+            if (headOffset == frame.limit()) {
+                frames.pollFirst();
+                headOffset = 0;
+            }
+        }
+        pendingBytes -= copied;
+        return copied;
+    }
+}
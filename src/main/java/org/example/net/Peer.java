@@ -0,0 +1,35 @@
+package org.example.net;
+
+import org.example.protocol.Frame;
+
+/**
+ * 一个已连接的客户端，屏蔽阻塞Socket和NIO两种连接方式以及文本和二进制两种协议的差别
+ */
+public interface Peer {
+    /**
+     * 连接的唯一标识
+     */
+    String id();
+
+    /**
+     * 把已编码的帧放入发送队列，按连接协商好的协议选择编码，不在调用线程上做网络I/O
+     * @return 发送队列积压过多而被拒绝时返回false，此时连接会被断开
+     */
+    boolean send(Frame frame);
+
+    /**
+     * 发送队列中积压的字节数
+     */
+    int pendingBytes();
+
+    /**
+     * 丢弃发送队列中还没开始发送的帧，换成这一帧，用于给跟不上的观众重发快照
+     * @return 连接已关闭时返回false
+     */
+    boolean replacePending(Frame frame);
+
+    /**
+     * 主动关闭连接
+     */
+    void close();
+}
@@ -0,0 +1,53 @@
+package org.example.net;
+
+/**
+ * 连接事件回调，由游戏逻辑实现
+ * 回调在网络线程上执行，实现中不能做阻塞操作
+ */
+public interface PeerListener {
+    void onConnect(Peer peer);
+
+    /**
+     * 连接协商为二进制协议，之前排队还没发出的文本消息已被丢弃，需要的话重发
+     */
+    void onBinary(Peer peer);
+
+    /**
+     * 客户端请求落子
+     */
+    void onMove(Peer peer, int row, int col);
+
+    /**
+     * 客户端请求加入房间
+     */
+    void onJoin(Peer peer, String room);
+
+    /**
+     * 客户端请求以观众身份进入房间
+     */
+    void onWatch(Peer peer, String room);
+
+    /**
+     * 客户端按等级分排队匹配对手
+     */
+    void onQueue(Peer peer, int rating);
+
+    /**
+     * 客户端退出匹配队列
+     */
+    void onUnqueue(Peer peer);
+
+    /**
+     * 重连的客户端凭令牌恢复原来的会话
+     * @param lastSeq 断线前最后收到的落子序号
+     */
+    void onResume(Peer peer, long token, int lastSeq);
+
+    /**
+     * 客户端请求电脑玩家加入它所在的房间
+     * @param threads 电脑玩家的搜索线程数
+     */
+    void onAi(Peer peer, int threads);
+
+    void onClose(Peer peer);
+}
@@ -0,0 +1,210 @@
+package org.example.net;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 哈希时间轮
+ * 所有连接的心跳、空闲超时和棋局的走棋时限共用一个线程：时间按tick切分，轮上有wheelSize个槽，
+ * 到期时间落在哪个tick就挂到对应槽的双向链表上，超过一圈的记下还要转几圈。
+ * 添加和取消都是O(1)，几十万个定时器只占几十万个小对象，不需要一个定时器一个任务或线程。
+ * 其他线程添加和取消定时器只是放进无锁队列，链表只在时间轮线程上修改；
+ * 到期任务在时间轮线程上执行，必须很短，通常只是把事件投递给房间或事件循环。
+ * 精度为一个tick。
+ */
+public final class TimerWheel implements AutoCloseable {
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+    // 每个tick最多从队列中转移的新定时器数，避免突发的大量添加拖住到期处理
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+    private final long tickNanos;
+    private final Timeout[] heads;
+    private final Timeout[] tails;
+    private final int mask;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread thread;
+    private final long startNanos;
+    private volatile boolean running = true;
+    // 已经处理到的tick，只在时间轮线程上访问
+    private long tick;
+
+    /**
+     * @param wheelSize 槽数，向上取整为2的幂
+     */
+    public TimerWheel(String name, long tickMillis, int wheelSize) {
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.heads = new Timeout[size];
+        this.tails = new Timeout[size];
+        this.mask = size - 1;
+        this.startNanos = System.nanoTime();
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 在delayMillis毫秒后在时间轮线程上执行task
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 还没到期也没取消的定时器数
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < deadline && running) {
+                LockSupport.parkNanos(deadline - now);
+            }
+            transferAdded();
+            removeCancelled();
+            expire((int) (tick & mask));
+            tick++;
+        }
+    }
+
+    private void transferAdded() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Timeout timeout = added.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state != STATE_PENDING) {
+                continue;
+            }
+            long ticks = Math.max(tick, (timeout.deadline - startNanos + tickNanos - 1) / tickNanos);
+            timeout.rounds = (ticks - tick) / heads.length;
+            timeout.bucket = (int) (ticks & mask);
+            link(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket >= 0) {
+                unlink(timeout);
+            }
+        }
+    }
+
+    private void expire(int bucket) {
+        Timeout timeout = heads[bucket];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+            } else {
+                unlink(timeout);
+                if (timeout.expire()) {
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    private void link(Timeout timeout) {
+        int bucket = timeout.bucket;
+        timeout.prev = tails[bucket];
+        if (tails[bucket] == null) {
+            heads[bucket] = timeout;
+        } else {
+            tails[bucket].next = timeout;
+        }
+        tails[bucket] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        int bucket = timeout.bucket;
+        if (timeout.prev == null) {
+            heads[bucket] = timeout.next;
+        } else {
+            timeout.prev.next = timeout.next;
+        }
+        if (timeout.next == null) {
+            tails[bucket] = timeout.prev;
+        } else {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+    }
+
+    /**
+     * 一个定时器，可以在任意线程上取消
+     */
+    public final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = STATE_PENDING;
+        // 以下字段只在时间轮线程上访问
+        private long rounds;
+        private int bucket = -1;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return 还没到期并且是第一次取消时返回true
+         */
+        public boolean cancel() {
+            if (!transition(STATE_CANCELLED)) {
+                return false;
+            }
+            cancelled.add(this);
+            return true;
+        }
+
+        private boolean expire() {
+            return transition(STATE_EXPIRED);
+        }
+
+        /**
+         * 状态只会从PENDING变出去一次，取消和到期谁先CAS成功算谁的
+         */
+        private boolean transition(int to) {
+            if (!STATE.compareAndSet(this, STATE_PENDING, to)) {
+                return false;
+            }
+            pending.decrementAndGet();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package org.example.protocol;
+
+import org.example.board.BitBoard;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 紧凑的二进制协议
+ * 客户端连接后发送的第一个字节为MAGIC时使用二进制协议，否则按文本协议处理。
+ * 服务器确认后回送一个MAGIC，客户端丢弃在它之前收到的文本消息。
+ * 每帧以类型字节开头：
+ *   MOVE  类型(1) + 格子编号(2) + 序号(4)，共7字节
+ *   CLOCKED_MOVE 同MOVE，后接黑方时间(毫秒，4) + 黑方读秒次数(1) + 白方时间(4) + 白方读秒次数(1)，共17字节，
+ *         服务器在启用棋钟时发出
+ *   WIN   类型(1) + 颜色(1) + 序号(4)，共6字节
+ *   JOIN  类型(1) + 长度(1) + 房间名(ASCII)
+ *   AI    类型(1) + 搜索线程数(1)
+ *   DECIDED 类型(1) + 必胜方颜色(1) + 序号(4)，共6字节
+ *   SNAPSHOT 类型(1) + 最后一步的序号(4) + 步数(1) + 依次每步的格子编号(1)，空棋盘序号为-1
+ *   WATCH 类型(1) + 长度(1) + 房间名(ASCII)
+ *   SESSION 类型(1) + 会话令牌(8)，共9字节，服务器在连接建立后发出
+ *   RESUME 类型(1) + 会话令牌(8) + 最后收到的序号(4)，共13字节，客户端重连后发出
+ *   PING / PONG 类型(1)，心跳和它的回应，双方都可以发出
+ *   ERROR 类型(1) + 错误码(1)，服务器拒绝请求时发出
+ *   QUEUE 类型(1) + 等级分(2)，共3字节；UNQUEUE 类型(1)，客户端加入、退出匹配队列
+ *   MATCHED 类型(1) + 颜色(1) + 长度(1) + 房间名(ASCII)，匹配成功时服务器发出
+ * 格子编号为 行 * 15 + 列，多字节字段为大端序。
+ * 编解码都直接读写ByteBuffer，除房间名和快照的着法数组外不创建对象。
+ */
+public final class BinaryCodec {
+    // 不是合法的ASCII字符，不会与文本协议的第一个字节混淆
+    public static final byte MAGIC = (byte) 0xB1;
+
+    // 服务器确认二进制协议时回送的帧，只读共享
+    public static final ByteBuffer MAGIC_FRAME = ByteBuffer.wrap(new byte[]{MAGIC}).asReadOnlyBuffer();
+
+    public static final byte TYPE_MOVE = 1;
+    public static final byte TYPE_WIN = 2;
+    public static final byte TYPE_JOIN = 3;
+    public static final byte TYPE_AI = 4;
+    public static final byte TYPE_DECIDED = 5;
+    public static final byte TYPE_SNAPSHOT = 6;
+    public static final byte TYPE_WATCH = 7;
+    public static final byte TYPE_SESSION = 8;
+    public static final byte TYPE_RESUME = 9;
+    public static final byte TYPE_PING = 10;
+    public static final byte TYPE_PONG = 11;
+    public static final byte TYPE_CLOCKED_MOVE = 12;
+    public static final byte TYPE_ERROR = 13;
+    public static final byte TYPE_QUEUE = 14;
+    public static final byte TYPE_UNQUEUE = 15;
+    public static final byte TYPE_MATCHED = 16;
+
+    public static final int MOVE_LENGTH = 7;
+    public static final int CLOCKED_MOVE_LENGTH = 17;
+    public static final int WIN_LENGTH = 6;
+    public static final int DECIDED_LENGTH = 6;
+    public static final int SNAPSHOT_HEADER_LENGTH = 6;
+    public static final int SESSION_LENGTH = 9;
+    public static final int RESUME_LENGTH = 13;
+    public static final int ERROR_LENGTH = 2;
+    public static final int QUEUE_LENGTH = 3;
+    // 可变长度帧（JOIN、WATCH、SNAPSHOT、MATCHED）的最大长度
+    public static final int MAX_FRAME_LENGTH = 3 + 255;
+
+    private static final int BOARD_SIZE = BitBoard.DEFAULT_SIZE;
+
+    private BinaryCodec() {
+    }
+
+    public static int cell(int row, int col) {
+        return row * BOARD_SIZE + col;
+    }
+
+    /**
+     * 解码缓冲区中所有完整的帧，不完整的帧留在缓冲区中
+     * 调用前缓冲区处于读模式（已flip），返回后position停在第一个未解码的字节
+     * @return 解码的帧数；遇到未知类型返回-1
+     */
+    public static int decode(ByteBuffer in, MessageSink sink) {
+        int frames = 0;
+        while (in.hasRemaining()) {
+            int start = in.position();
+            int length = frameLength(in, start);
+            if (length < 0) {
+                return -1;
+            }
+            if (length == 0 || in.remaining() < length) {
+                break;
+            }
+            byte type = in.get(start);
+            if (type == TYPE_MOVE || type == TYPE_CLOCKED_MOVE) {
+                int cell = in.getShort(start + 1) & 0xFFFF;
+                sink.onMove(in.getInt(start + 3), cell / BOARD_SIZE, cell % BOARD_SIZE);
+                if (type == TYPE_CLOCKED_MOVE) {
+                    sink.onClock(in.getInt(start + 7), in.get(start + 11) & 0xFF,
+                            in.getInt(start + 12), in.get(start + 16) & 0xFF);
+                }
+            } else if (type == TYPE_WIN) {
+                sink.onWin(in.getInt(start + 2), in.get(start + 1));
+            } else if (type == TYPE_DECIDED) {
+                sink.onDecided(in.getInt(start + 2), in.get(start + 1));
+            } else if (type == TYPE_AI) {
+                sink.onAi(in.get(start + 1) & 0xFF);
+            } else if (type == TYPE_ERROR) {
+                sink.onError(in.get(start + 1) & 0xFF);
+            } else if (type == TYPE_QUEUE) {
+                sink.onQueue(in.getShort(start + 1) & 0xFFFF);
+            } else if (type == TYPE_UNQUEUE) {
+                sink.onUnqueue();
+            } else if (type == TYPE_MATCHED) {
+                byte[] name = new byte[length - 3];
+                in.get(start + 3, name);
+                sink.onMatched(in.get(start + 1), new String(name, StandardCharsets.US_ASCII));
+            } else if (type == TYPE_PING) {
+                sink.onPing();
+            } else if (type == TYPE_PONG) {
+                sink.onPong();
+            } else if (type == TYPE_SESSION) {
+                sink.onSession(in.getLong(start + 1));
+            } else if (type == TYPE_RESUME) {
+                sink.onResume(in.getLong(start + 1), in.getInt(start + 9));
+            } else if (type == TYPE_SNAPSHOT) {
+                int count = length - SNAPSHOT_HEADER_LENGTH;
+                int[] cells = new int[count];
+                for (int i = 0; i < count; i++) {
+                    cells[i] = in.get(start + SNAPSHOT_HEADER_LENGTH + i) & 0xFF;
+                }
+                sink.onSnapshot(in.getInt(start + 1), cells, count);
+            } else {
+                byte[] name = new byte[length - 2];
+                in.get(start + 2, name);
+                String room = new String(name, StandardCharsets.US_ASCII);
+                if (type == TYPE_WATCH) {
+                    sink.onWatch(room);
+                } else {
+                    sink.onJoin(room);
+                }
+            }
+            in.position(start + length);
+            frames++;
+        }
+        return frames;
+    }
+
+    /**
+     * 计算从pos开始的一帧的总长度
+     * @return 帧长度；长度字节还没收到时返回0；未知类型返回-1
+     */
+    public static int frameLength(ByteBuffer in, int pos) {
+        switch (in.get(pos)) {
+            case TYPE_MOVE:
+                return MOVE_LENGTH;
+            case TYPE_CLOCKED_MOVE:
+                return CLOCKED_MOVE_LENGTH;
+            case TYPE_WIN:
+                return WIN_LENGTH;
+            case TYPE_JOIN:
+            case TYPE_WATCH:
+                return pos + 1 < in.limit() ? 2 + (in.get(pos + 1) & 0xFF) : 0;
+            case TYPE_SNAPSHOT:
+                return pos + 5 < in.limit() ? SNAPSHOT_HEADER_LENGTH + (in.get(pos + 5) & 0xFF) : 0;
+            case TYPE_AI:
+                return 2;
+            case TYPE_ERROR:
+                return ERROR_LENGTH;
+            case TYPE_QUEUE:
+                return QUEUE_LENGTH;
+            case TYPE_UNQUEUE:
+                return 1;
+            case TYPE_MATCHED:
+                return pos + 2 < in.limit() ? 3 + (in.get(pos + 2) & 0xFF) : 0;
+            case TYPE_DECIDED:
+                return DECIDED_LENGTH;
+            case TYPE_PING:
+            case TYPE_PONG:
+                return 1;
+            case TYPE_SESSION:
+                return SESSION_LENGTH;
+            case TYPE_RESUME:
+                return RESUME_LENGTH;
+            default:
+                return -1;
+        }
+    }
+
+    public static void encodeMove(ByteBuffer out, int seq, int row, int col) {
+        out.put(TYPE_MOVE);
+        out.putShort((short) cell(row, col));
+        out.putInt(seq);
+    }
+
+    public static void encodeMove(ByteBuffer out, int seq, int row, int col,
+                                  int blackMillis, int blackPeriods, int whiteMillis, int whitePeriods) {
+        out.put(TYPE_CLOCKED_MOVE);
+        out.putShort((short) cell(row, col));
+        out.putInt(seq);
+        out.putInt(blackMillis);
+        out.put((byte) blackPeriods);
+        out.putInt(whiteMillis);
+        out.put((byte) whitePeriods);
+    }
+
+    public static void encodeWin(ByteBuffer out, int seq, int color) {
+        out.put(TYPE_WIN);
+        out.put((byte) color);
+        out.putInt(seq);
+    }
+
+    public static void encodeDecided(ByteBuffer out, int seq, int color) {
+        out.put(TYPE_DECIDED);
+        out.put((byte) color);
+        out.putInt(seq);
+    }
+
+    /**
+     * @param type TYPE_PING或TYPE_PONG
+     */
+    public static void encodeHeartbeat(ByteBuffer out, byte type) {
+        out.put(type);
+    }
+
+    public static void encodeError(ByteBuffer out, int code) {
+        out.put(TYPE_ERROR);
+        out.put((byte) code);
+    }
+
+    public static void encodeQueue(ByteBuffer out, int rating) {
+        out.put(TYPE_QUEUE);
+        out.putShort((short) rating);
+    }
+
+    public static void encodeUnqueue(ByteBuffer out) {
+        out.put(TYPE_UNQUEUE);
+    }
+
+    public static void encodeMatched(ByteBuffer out, int color, String room) {
+        byte[] name = room.getBytes(StandardCharsets.US_ASCII);
+        out.put(TYPE_MATCHED);
+        out.put((byte) color);
+        out.put((byte) name.length);
+        out.put(name);
+    }
+
+    public static void encodeSession(ByteBuffer out, long token) {
+        out.put(TYPE_SESSION);
+        out.putLong(token);
+    }
+
+    public static void encodeResume(ByteBuffer out, long token, int lastSeq) {
+        out.put(TYPE_RESUME);
+        out.putLong(token);
+        out.putInt(lastSeq);
+    }
+
+    public static void encodeAi(ByteBuffer out, int threads) {
+        out.put(TYPE_AI);
+        out.put((byte) threads);
+    }
+
+    /**
+     * @param cells 依次每步的格子编号
+     */
+    public static void encodeSnapshot(ByteBuffer out, int seq, byte[] cells, int count) {
+        out.put(TYPE_SNAPSHOT);
+        out.putInt(seq);
+        out.put((byte) count);
+        out.put(cells, 0, count);
+    }
+
+    public static void encodeJoin(ByteBuffer out, String room) {
+        encodeRoom(out, TYPE_JOIN, room);
+    }
+
+    public static void encodeWatch(ByteBuffer out, String room) {
+        encodeRoom(out, TYPE_WATCH, room);
+    }
+
+    private static void encodeRoom(ByteBuffer out, byte type, String room) {
+        byte[] name = room.getBytes(StandardCharsets.US_ASCII);
+        if (name.length > 255) {
+            throw new IllegalArgumentException("房间名过长: " + room);
+        }
+        out.put(type);
+        out.put((byte) name.length);
+        out.put(name);
+    }
+}
@@ -0,0 +1,34 @@
+package org.example.protocol;
+
+/**
+ * 服务器拒绝请求时回给发送者的错误码，文本协议为 "error,错误码"
+ */
+public final class ErrorCode {
+    // 没有座位：观众，或者两个座位都已有人
+    public static final int NOT_SEATED = 1;
+    // 还没轮到自己
+    public static final int NOT_YOUR_TURN = 2;
+    // 这一格已经有棋子
+    public static final int OCCUPIED = 3;
+    // 落子位置在棋盘外
+    public static final int OUT_OF_BOARD = 4;
+    // 棋局已经结束
+    public static final int GAME_OVER = 5;
+    // 房间里已经有电脑玩家
+    public static final int AI_PRESENT = 6;
+    // 电脑玩家要坐的座位已经有人
+    public static final int SEAT_TAKEN = 7;
+
+    private static final String[] DESCRIPTIONS = {"未知错误", "你不是这盘棋的玩家", "还没轮到你", "这里已经有棋子", "落子位置不在棋盘上", "棋局已经结束",
+            "房间里已经有电脑玩家", "电脑玩家的座位已经有人"};
+
+    // 错误码的个数加1，错误码从1开始
+    static final int COUNT = DESCRIPTIONS.length;
+
+    private ErrorCode() {
+    }
+
+    public static String describe(int code) {
+        return code > 0 && code < COUNT ? DESCRIPTIONS[code] : DESCRIPTIONS[0];
+    }
+}
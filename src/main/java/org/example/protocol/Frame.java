@@ -0,0 +1,161 @@
+package org.example.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 一条已编码的服务器消息
+ * 广播时只编码一次，每种格式一份只读缓冲区，由所有接收者共享：
+ * 二进制；扩展文本，落子带序号和棋钟；旧文本，落子只有 "move,行,列"，给没有声明支持扩展字段的文本客户端。
+ * 除落子外两种文本格式相同，共用一个缓冲区。
+ * 共享缓冲区的position和limit不能被修改，接收者只能按绝对位置读取 [0, limit)
+ */
+public final class Frame {
+    // 连接使用的格式，见encoded
+    public static final int LEGACY_TEXT = 0;
+    public static final int TEXT = 1;
+    public static final int BINARY = 2;
+
+    // 心跳帧内容固定，所有连接共用
+    public static final Frame PING = heartbeat(true);
+    public static final Frame PONG = heartbeat(false);
+    // 错误帧按错误码预先编码，被拒绝的请求不再分配
+    private static final Frame[] ERRORS = new Frame[ErrorCode.COUNT];
+
+    static {
+        for (int code = 0; code < ErrorCode.COUNT; code++) {
+            ERRORS[code] = encodeError(code);
+        }
+    }
+
+    private final ByteBuffer legacyText;
+    private final ByteBuffer text;
+    private final ByteBuffer binary;
+
+    private Frame(ByteBuffer legacyText, ByteBuffer text, ByteBuffer binary) {
+        this.legacyText = legacyText;
+        this.text = text;
+        this.binary = binary;
+    }
+
+    public static Frame move(int seq, int row, int col) {
+        ByteBuffer text = ByteBuffer.allocate(TextCodec.MAX_FRAME_LENGTH);
+        TextCodec.encodeMove(text, seq, row, col);
+        ByteBuffer binary = ByteBuffer.allocate(BinaryCodec.MOVE_LENGTH);
+        BinaryCodec.encodeMove(binary, seq, row, col);
+        return of(legacyMove(row, col), text, binary);
+    }
+
+    /**
+     * 带棋钟的落子，双方的时间随落子一起发出，不另发消息
+     * @param blackMillis 黑方下一步开始时的时间：还有基本用时就是基本用时，否则是一次读秒
+     * @param blackPeriods 黑方剩余的读秒次数
+     */
+    public static Frame move(int seq, int row, int col, int blackMillis, int blackPeriods, int whiteMillis, int whitePeriods) {
+        ByteBuffer text = ByteBuffer.allocate(TextCodec.MAX_FRAME_LENGTH);
+        TextCodec.encodeMove(text, seq, row, col, blackMillis, blackPeriods, whiteMillis, whitePeriods);
+        ByteBuffer binary = ByteBuffer.allocate(BinaryCodec.CLOCKED_MOVE_LENGTH);
+        BinaryCodec.encodeMove(binary, seq, row, col, blackMillis, blackPeriods, whiteMillis, whitePeriods);
+        return of(legacyMove(row, col), text, binary);
+    }
+
+    /**
+     * 旧客户端只认 "move,行,列"，多一个字段就整行丢弃
+     */
+    private static ByteBuffer legacyMove(int row, int col) {
+        ByteBuffer legacy = ByteBuffer.allocate(TextCodec.MAX_FRAME_LENGTH);
+        TextCodec.encodeMove(legacy, -1, row, col);
+        return legacy;
+    }
+
+    public static Frame win(int seq, int color) {
+        ByteBuffer text = ByteBuffer.allocate(TextCodec.MAX_FRAME_LENGTH);
+        TextCodec.encodeWin(text, color);
+        ByteBuffer binary = ByteBuffer.allocate(BinaryCodec.WIN_LENGTH);
+        BinaryCodec.encodeWin(binary, seq, color);
+        return of(text, binary);
+    }
+
+    public static Frame decided(int seq, int color) {
+        ByteBuffer text = ByteBuffer.allocate(TextCodec.MAX_FRAME_LENGTH);
+        TextCodec.encodeDecided(text, color);
+        ByteBuffer binary = ByteBuffer.allocate(BinaryCodec.DECIDED_LENGTH);
+        BinaryCodec.encodeDecided(binary, seq, color);
+        return of(text, binary);
+    }
+
+    /**
+     * 整盘棋的快照
+     * @param cells 依次每步的格子编号
+     */
+    public static Frame snapshot(byte[] cells, int count) {
+        ByteBuffer text = ByteBuffer.allocate(TextCodec.MAX_SNAPSHOT_LENGTH);
+        TextCodec.encodeSnapshot(text, cells, count);
+        ByteBuffer binary = ByteBuffer.allocate(BinaryCodec.SNAPSHOT_HEADER_LENGTH + count);
+        BinaryCodec.encodeSnapshot(binary, count - 1, cells, count);
+        return of(text, binary);
+    }
+
+    /**
+     * 匹配成功的通知，房间名由服务器生成，不超过255个ASCII字符
+     */
+    public static Frame matched(int color, String room) {
+        ByteBuffer text = ByteBuffer.allocate(TextCodec.MAX_FRAME_LENGTH + room.length());
+        TextCodec.encodeMatched(text, color, room);
+        ByteBuffer binary = ByteBuffer.allocate(3 + room.length());
+        BinaryCodec.encodeMatched(binary, color, room);
+        return of(text, binary);
+    }
+
+    /**
+     * @param code ErrorCode中的错误码
+     */
+    public static Frame error(int code) {
+        return ERRORS[code > 0 && code < ErrorCode.COUNT ? code : 0];
+    }
+
+    private static Frame encodeError(int code) {
+        ByteBuffer text = ByteBuffer.allocate(TextCodec.MAX_FRAME_LENGTH);
+        TextCodec.encodeError(text, code);
+        ByteBuffer binary = ByteBuffer.allocate(BinaryCodec.ERROR_LENGTH);
+        BinaryCodec.encodeError(binary, code);
+        return of(text, binary);
+    }
+
+    private static Frame heartbeat(boolean ping) {
+        ByteBuffer text = ByteBuffer.allocate(TextCodec.MAX_FRAME_LENGTH);
+        TextCodec.encodeHeartbeat(text, ping);
+        ByteBuffer binary = ByteBuffer.allocate(1);
+        BinaryCodec.encodeHeartbeat(binary, ping ? BinaryCodec.TYPE_PING : BinaryCodec.TYPE_PONG);
+        return of(text, binary);
+    }
+
+    public static Frame session(long token) {
+        ByteBuffer text = ByteBuffer.allocate(TextCodec.MAX_FRAME_LENGTH);
+        TextCodec.encodeSession(text, token);
+        ByteBuffer binary = ByteBuffer.allocate(BinaryCodec.SESSION_LENGTH);
+        BinaryCodec.encodeSession(binary, token);
+        return of(text, binary);
+    }
+
+    private static Frame of(ByteBuffer text, ByteBuffer binary) {
+        text.flip();
+        binary.flip();
+        ByteBuffer shared = text.asReadOnlyBuffer();
+        return new Frame(shared, shared, binary.asReadOnlyBuffer());
+    }
+
+    private static Frame of(ByteBuffer legacyText, ByteBuffer text, ByteBuffer binary) {
+        legacyText.flip();
+        text.flip();
+        binary.flip();
+        return new Frame(legacyText.asReadOnlyBuffer(), text.asReadOnlyBuffer(), binary.asReadOnlyBuffer());
+    }
+
+    /**
+     * 按连接协商的格式取出编码结果
+     * @param format LEGACY_TEXT、TEXT或BINARY
+     */
+    public ByteBuffer encoded(int format) {
+        return format == BINARY ? binary : format == TEXT ? text : legacyText;
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.protocol;
+
+/**
+ * 解码后的消息回调
+ * 参数都是基本类型，文本和二进制解码器都直接调用这里，不创建消息对象
+ */
+public interface MessageSink {
+    /**
+     * 落子
+     * @param seq 这一步在棋局中的序号，从0开始；文本协议中没有序号，为-1
+     */
+    void onMove(int seq, int row, int col);
+
+    /**
+     * 落子带的棋钟，紧跟在这一步的onMove之后回调
+     * @param blackMillis 黑方轮到走时的时间：还有基本用时就是基本用时，否则是一次读秒的时间
+     * @param blackPeriods 黑方剩余的读秒次数
+     */
+    default void onClock(int blackMillis, int blackPeriods, int whiteMillis, int whitePeriods) {
+    }
+
+    /**
+     * 某一方获胜
+     * @param color BitBoard.BLACK或BitBoard.WHITE
+     */
+    default void onWin(int seq, int color) {
+    }
+
+    /**
+     * 服务器证明了某一方有连续冲四或活三的必胜，棋局实际上已经分出胜负
+     * @param seq 做出判断时最后一步的序号
+     * @param color 必胜的一方
+     */
+    default void onDecided(int seq, int color) {
+    }
+
+    /**
+     * 服务器拒绝了上一个请求，比如不是自己的回合落子
+     * @param code ErrorCode中的错误码
+     */
+    default void onError(int code) {
+    }
+
+    /**
+     * 请求加入房间
+     */
+    default void onJoin(String room) {
+    }
+
+    /**
+     * 请求以观众身份进入房间，只接收棋局，不能落子
+     */
+    default void onWatch(String room) {
+    }
+
+    /**
+     * 请求排队匹配对手
+     * @param rating 自己的等级分
+     */
+    default void onQueue(int rating) {
+    }
+
+    /**
+     * 退出匹配队列
+     */
+    default void onUnqueue() {
+    }
+
+    /**
+     * 匹配成功，服务器已经把连接加入为这盘棋新建的房间
+     * @param color 分到的颜色，BitBoard.BLACK先走
+     */
+    default void onMatched(int color, String room) {
+    }
+
+    /**
+     * 完整的棋局快照，收到后丢弃本地棋盘，按顺序重放着法
+     * @param seq 最后一步的序号，空棋盘为-1；之后的落子从seq + 1开始
+     * @param cells 依次每步的格子编号（行 * 15 + 列），黑方先走
+     */
+    default void onSnapshot(int seq, int[] cells, int count) {
+    }
+
+    /**
+     * 文本客户端声明能处理落子中的序号和棋钟字段，之后服务器发给它的落子带上这些字段
+     */
+    default void onHello() {
+    }
+
+    /**
+     * 对方发来的心跳，应当回一个pong
+     */
+    default void onPing() {
+    }
+
+    /**
+     * 心跳的回应
+     */
+    default void onPong() {
+    }
+
+    /**
+     * 服务器分配的会话令牌，断线重连时凭它恢复原来的座位
+     */
+    default void onSession(long token) {
+    }
+
+    /**
+     * 断线重连后恢复会话
+     * @param lastSeq 断线前最后收到的落子序号，一步都没收到为-1
+     */
+    default void onResume(long token, int lastSeq) {
+    }
+
+    /**
+     * 请求电脑玩家加入当前房间
+     * @param threads 电脑玩家的搜索线程数
+     */
+    default void onAi(int threads) {
+    }
+}
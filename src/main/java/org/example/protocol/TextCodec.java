@@ -0,0 +1,369 @@
+package org.example.protocol;
+
+import org.example.board.BitBoard;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 文本协议编解码，兼容旧客户端的 "move,行,列" / "win,X"，另有 "decided,X" / "join,房间名" / "ai[,线程数]" /
+ * "watch,房间名" / "snapshot[,格子编号...]" / "session,令牌" / "resume,令牌,最后收到的序号" / "ping" / "pong" / "error,错误码" /
+ * "queue,等级分" / "unqueue" / "matched,O或X,房间名" / "hello"；
+ * 令牌为16位十六进制数。旧客户端只接受恰好三个字段的 "move,行,列"，多出字段的整行都会丢弃，
+ * 所以服务器默认只发三个字段；客户端发送 "hello"（或 "resume" / "watch"）表明能处理扩展字段之后，
+ * 落子才带序号 "move,行,列,序号"，启用棋钟时再带上双方的时间
+ * "move,行,列,序号,黑方毫秒,黑方读秒次数,白方毫秒,白方读秒次数"
+ * 解析直接逐字符扫描，不使用split和parseInt，除房间名和快照的着法数组外不创建对象
+ */
+public final class TextCodec {
+    // 一条编码后的服务器消息最多占用的字节数（快照除外）
+    public static final int MAX_FRAME_LENGTH = 64;
+    // 会话令牌的十六进制位数
+    public static final int TOKEN_DIGITS = 16;
+    // 快照消息最多占用的字节数："snapshot" + 每步最多4个字符 + 换行
+    public static final int MAX_SNAPSHOT_LENGTH = 8 + 4 * 225 + 1;
+    // 每个线程一个字节数组的字符视图，解码字节数组时复用，不为每一行创建对象
+    private static final ThreadLocal<AsciiLine> BYTE_LINES = ThreadLocal.withInitial(AsciiLine::new);
+
+    private TextCodec() {
+    }
+
+    /**
+     * 解码一行文本消息（不含换行符）
+     * @return 格式正确并已回调返回true，否则返回false
+     */
+    public static boolean decode(CharSequence line, MessageSink sink) {
+        int len = line.length();
+        if (startsWith(line, "move,")) {
+            // 依次为行、列、序号和四个棋钟字段，后面的字段可以省略；回调之前先把字段都解析出来
+            int row = field(line, 5, len, 0);
+            int col = field(line, 5, len, 1);
+            if (row < 0 || col < 0) {
+                return false;
+            }
+            int seq = field(line, 5, len, 2);
+            int blackMillis = field(line, 5, len, 3);
+            int blackPeriods = field(line, 5, len, 4);
+            int whiteMillis = field(line, 5, len, 5);
+            int whitePeriods = field(line, 5, len, 6);
+            sink.onMove(seq, row, col);
+            if (whitePeriods >= 0) {
+                sink.onClock(blackMillis, blackPeriods, whiteMillis, whitePeriods);
+            }
+            return true;
+        } else if (startsWith(line, "win,") && len == 5) {
+            sink.onWin(-1, line.charAt(4) == 'O' ? BitBoard.BLACK : BitBoard.WHITE);
+            return true;
+        } else if (startsWith(line, "decided,") && len == 9) {
+            sink.onDecided(-1, line.charAt(8) == 'O' ? BitBoard.BLACK : BitBoard.WHITE);
+            return true;
+        } else if (startsWith(line, "join,") && len > 5) {
+            sink.onJoin(line.subSequence(5, len).toString());
+            return true;
+        } else if (startsWith(line, "error,")) {
+            int code = parseNumber(line, 6, len);
+            if (code < 0) {
+                return false;
+            }
+            sink.onError(code);
+            return true;
+        } else if (startsWith(line, "queue,")) {
+            int rating = parseNumber(line, 6, len);
+            if (rating < 0) {
+                return false;
+            }
+            sink.onQueue(rating);
+            return true;
+        } else if (len == 7 && startsWith(line, "unqueue")) {
+            sink.onUnqueue();
+            return true;
+        } else if (startsWith(line, "matched,") && len > 10 && line.charAt(9) == ',') {
+            sink.onMatched(line.charAt(8) == 'O' ? BitBoard.BLACK : BitBoard.WHITE, line.subSequence(10, len).toString());
+            return true;
+        } else if (len == 5 && startsWith(line, "hello")) {
+            sink.onHello();
+            return true;
+        } else if (len == 4 && startsWith(line, "ping")) {
+            sink.onPing();
+            return true;
+        } else if (len == 4 && startsWith(line, "pong")) {
+            sink.onPong();
+            return true;
+        } else if (startsWith(line, "watch,") && len > 6) {
+            sink.onWatch(line.subSequence(6, len).toString());
+            return true;
+        } else if (startsWith(line, "session,") && len == 8 + TOKEN_DIGITS) {
+            sink.onSession(parseToken(line, 8));
+            return true;
+        } else if (startsWith(line, "resume,") && len > 8 + TOKEN_DIGITS && line.charAt(7 + TOKEN_DIGITS) == ',') {
+            int from = 8 + TOKEN_DIGITS;
+            boolean none = len - from == 2 && line.charAt(from) == '-' && line.charAt(from + 1) == '1';
+            int lastSeq = none ? -1 : parseNumber(line, from, len);
+            if (!none && lastSeq < 0) {
+                return false;
+            }
+            sink.onResume(parseToken(line, 7), lastSeq);
+            return true;
+        } else if (startsWith(line, "snapshot") && (len == 8 || line.charAt(8) == ',')) {
+            int count = 0;
+            for (int i = 8; i < len; i++) {
+                if (line.charAt(i) == ',') {
+                    count++;
+                }
+            }
+            int[] cells = new int[count];
+            int start = 9;
+            for (int i = 0; i < count; i++) {
+                int end = indexOf(line, ',', start, len);
+                cells[i] = parseNumber(line, start, end < 0 ? len : end);
+                if (cells[i] < 0) {
+                    return false;
+                }
+                start = end + 1;
+            }
+            sink.onSnapshot(count - 1, cells, count);
+            return true;
+        } else if (len == 2 && line.charAt(0) == 'a' && line.charAt(1) == 'i') {
+            sink.onAi(1);
+            return true;
+        } else if (startsWith(line, "ai,")) {
+            int threads = parseNumber(line, 3, len);
+            if (threads <= 0) {
+                return false;
+            }
+            sink.onAi(threads);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 解码字节数组中的一行文本消息，供NIO读缓冲区直接使用
+     * 和字符串走同一个解析过程，字节通过当前线程复用的AsciiLine按下标读取
+     */
+    public static boolean decode(byte[] data, int off, int len, MessageSink sink) {
+        AsciiLine line = BYTE_LINES.get();
+        line.wrap(data, off, len);
+        try {
+            return decode(line, sink);
+        } finally {
+            line.wrap(null, 0, 0);
+        }
+    }
+
+    /**
+     * 写入 "move,行,列,序号\n"，序号为负时省略
+     */
+    public static void encodeMove(ByteBuffer out, int seq, int row, int col) {
+        out.put((byte) 'm').put((byte) 'o').put((byte) 'v').put((byte) 'e').put((byte) ',');
+        putNumber(out, row);
+        out.put((byte) ',');
+        putNumber(out, col);
+        if (seq >= 0) {
+            out.put((byte) ',');
+            putNumber(out, seq);
+        }
+        out.put((byte) '\n');
+    }
+
+    /**
+     * 写入 "move,行,列,序号,黑方毫秒,黑方读秒次数,白方毫秒,白方读秒次数\n"
+     */
+    public static void encodeMove(ByteBuffer out, int seq, int row, int col,
+                                  int blackMillis, int blackPeriods, int whiteMillis, int whitePeriods) {
+        out.put((byte) 'm').put((byte) 'o').put((byte) 'v').put((byte) 'e').put((byte) ',');
+        putNumber(out, row);
+        out.put((byte) ',');
+        putNumber(out, col);
+        out.put((byte) ',');
+        putNumber(out, seq);
+        out.put((byte) ',');
+        putNumber(out, blackMillis);
+        out.put((byte) ',');
+        putNumber(out, blackPeriods);
+        out.put((byte) ',');
+        putNumber(out, whiteMillis);
+        out.put((byte) ',');
+        putNumber(out, whitePeriods);
+        out.put((byte) '\n');
+    }
+
+    /**
+     * 写入 "snapshot,格子编号,格子编号...\n"，空棋盘为 "snapshot\n"
+     */
+    public static void encodeSnapshot(ByteBuffer out, byte[] cells, int count) {
+        out.put((byte) 's').put((byte) 'n').put((byte) 'a').put((byte) 'p').put((byte) 's').put((byte) 'h').put((byte) 'o').put((byte) 't');
+        for (int i = 0; i < count; i++) {
+            out.put((byte) ',');
+            putNumber(out, cells[i] & 0xFF);
+        }
+        out.put((byte) '\n');
+    }
+
+    /**
+     * 写入 "win,O\n" 或 "win,X\n"
+     */
+    public static void encodeWin(ByteBuffer out, int color) {
+        out.put((byte) 'w').put((byte) 'i').put((byte) 'n').put((byte) ',');
+        out.put((byte) BitBoard.symbol(color));
+        out.put((byte) '\n');
+    }
+
+    /**
+     * 写入 "decided,O\n" 或 "decided,X\n"
+     */
+    public static void encodeDecided(ByteBuffer out, int color) {
+        out.put((byte) 'd').put((byte) 'e').put((byte) 'c').put((byte) 'i').put((byte) 'd').put((byte) 'e').put((byte) 'd');
+        out.put((byte) ',');
+        out.put((byte) BitBoard.symbol(color));
+        out.put((byte) '\n');
+    }
+
+    /**
+     * 写入 "ping\n" 或 "pong\n"
+     */
+    public static void encodeHeartbeat(ByteBuffer out, boolean ping) {
+        out.put((byte) 'p').put((byte) (ping ? 'i' : 'o')).put((byte) 'n').put((byte) 'g');
+        out.put((byte) '\n');
+    }
+
+    /**
+     * 写入 "matched,O,房间名\n"
+     */
+    public static void encodeMatched(ByteBuffer out, int color, String room) {
+        out.put((byte) 'm').put((byte) 'a').put((byte) 't').put((byte) 'c').put((byte) 'h').put((byte) 'e').put((byte) 'd');
+        out.put((byte) ',');
+        out.put((byte) BitBoard.symbol(color));
+        out.put((byte) ',');
+        out.put(room.getBytes(StandardCharsets.US_ASCII));
+        out.put((byte) '\n');
+    }
+
+    /**
+     * 写入 "error,错误码\n"
+     */
+    public static void encodeError(ByteBuffer out, int code) {
+        out.put((byte) 'e').put((byte) 'r').put((byte) 'r').put((byte) 'o').put((byte) 'r').put((byte) ',');
+        putNumber(out, code);
+        out.put((byte) '\n');
+    }
+
+    /**
+     * 写入 "session,令牌\n"
+     */
+    public static void encodeSession(ByteBuffer out, long token) {
+        out.put((byte) 's').put((byte) 'e').put((byte) 's').put((byte) 's').put((byte) 'i').put((byte) 'o').put((byte) 'n');
+        out.put((byte) ',');
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            out.put((byte) Character.forDigit((int) (token >>> shift) & 0xF, 16));
+        }
+        out.put((byte) '\n');
+    }
+
+    private static void putNumber(ByteBuffer out, int value) {
+        if (value >= 10) {
+            putNumber(out, value / 10);
+        }
+        out.put((byte) ('0' + value % 10));
+    }
+
+    private static boolean startsWith(CharSequence s, String prefix) {
+        if (s.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (s.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence s, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 解析从from开始的16位十六进制令牌，非法字符按0处理，令牌对不上时服务器会当作新会话
+     */
+    private static long parseToken(CharSequence s, int from) {
+        long token = 0;
+        for (int i = from; i < from + TOKEN_DIGITS; i++) {
+            token = token << 4 | Math.max(0, Character.digit(s.charAt(i), 16));
+        }
+        return token;
+    }
+
+    /**
+     * 解析从from开始、逗号分隔的第index个字段，字段不存在或格式错误时返回-1
+     */
+    private static int field(CharSequence s, int from, int to, int index) {
+        for (int i = 0; i < index; i++) {
+            from = indexOf(s, ',', from, to) + 1;
+            if (from == 0) {
+                return -1;
+            }
+        }
+        int end = indexOf(s, ',', from, to);
+        return parseNumber(s, from, end < 0 ? to : end);
+    }
+
+    /**
+     * 解析非负整数，格式错误或过长时返回-1
+     */
+    private static int parseNumber(CharSequence s, int from, int to) {
+        if (from >= to || to - from > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * 字节数组中一段ASCII文本的字符视图，按下标直接读字节
+     * subSequence返回新的String，只在取房间名时用到
+     */
+    private static final class AsciiLine implements CharSequence {
+        private byte[] data;
+        private int off;
+        private int len;
+
+        void wrap(byte[] data, int off, int len) {
+            this.data = data;
+            this.off = off;
+            this.len = len;
+        }
+
+        @Override
+        public int length() {
+            return len;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (data[off + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(data, off + start, end - start, StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public String toString() {
+            return new String(data, off, len, StandardCharsets.US_ASCII);
+        }
+    }
+}
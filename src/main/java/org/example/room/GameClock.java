@@ -0,0 +1,134 @@
+package org.example.room;
+
+import org.example.board.BitBoard;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一盘棋的棋钟，支持费舍尔加秒和日式读秒
+ * 每方有基本用时，每走一步加INCREMENT；基本用时用完后进入读秒，一步没在一次读秒内走完就用掉一次，
+ * 读秒次数用完判负。用时从服务器收到落子时算起，全部用System.nanoTime，不受系统时钟调整影响。
+ * 状态都是基本类型字段，只在房间线程上读写。
+ */
+final class GameClock {
+    private final long mainNanos;
+    private final long incrementNanos;
+    private final long byoyomiNanos;
+    private final int periods;
+
+    // 黑白双方剩余的基本用时和读秒次数
+    private long blackNanos;
+    private long whiteNanos;
+    private int blackPeriods;
+    private int whitePeriods;
+    // 正在走的一方和它开始计时的时刻，棋钟停着时为EMPTY
+    private int running = BitBoard.EMPTY;
+    private long turnStart;
+
+    /**
+     * 没有配置任何时限时棋钟不走，落子也不带棋钟
+     */
+    static boolean enabled() {
+        return RoomManager.MAIN_TIME_MILLIS > 0 || RoomManager.BYOYOMI_MILLIS > 0;
+    }
+
+    /**
+     * 按服务器配置的时限
+     */
+    GameClock() {
+        this(RoomManager.MAIN_TIME_MILLIS, RoomManager.INCREMENT_MILLIS, RoomManager.BYOYOMI_MILLIS,
+                RoomManager.BYOYOMI_PERIODS);
+    }
+
+    /**
+     * @param byoyomiMillis 每次读秒的时长，0表示没有读秒
+     * @param periods 读秒次数，有读秒时至少一次
+     */
+    GameClock(long mainMillis, long incrementMillis, long byoyomiMillis, int periods) {
+        this.mainNanos = TimeUnit.MILLISECONDS.toNanos(mainMillis);
+        this.incrementNanos = TimeUnit.MILLISECONDS.toNanos(incrementMillis);
+        this.byoyomiNanos = TimeUnit.MILLISECONDS.toNanos(byoyomiMillis);
+        this.periods = byoyomiNanos > 0 ? Math.max(1, periods) : 0;
+    }
+
+    /**
+     * 开始新的一盘，双方恢复全部用时
+     */
+    void reset() {
+        blackNanos = mainNanos;
+        whiteNanos = mainNanos;
+        blackPeriods = periods;
+        whitePeriods = periods;
+        running = BitBoard.EMPTY;
+    }
+
+    void stop() {
+        running = BitBoard.EMPTY;
+    }
+
+    /**
+     * 结算刚走完一步的color的用时，并开始给对方计时
+     * 黑方第一步之前棋钟没有走，这一步不计时
+     * @param now 收到这步棋时的System.nanoTime
+     * @return 这一步已经超时返回false，棋钟停住
+     */
+    boolean moved(int color, long now) {
+        if (running == color) {
+            long elapsed = now - turnStart;
+            long main = color == BitBoard.BLACK ? blackNanos : whiteNanos;
+            int left = color == BitBoard.BLACK ? blackPeriods : whitePeriods;
+            if (elapsed > main) {
+                long over = elapsed - main;
+                main = 0;
+                // 读秒内走完不扣次数，每超过一次读秒扣一次
+                long used = byoyomiNanos > 0 ? over / byoyomiNanos : Long.MAX_VALUE;
+                if (used >= left) {
+                    running = BitBoard.EMPTY;
+                    return false;
+                }
+                left -= (int) used;
+            } else {
+                main -= elapsed;
+            }
+            main += incrementNanos;
+            if (color == BitBoard.BLACK) {
+                blackNanos = main;
+                blackPeriods = left;
+            } else {
+                whiteNanos = main;
+                whitePeriods = left;
+            }
+        }
+        running = BitBoard.opponent(color);
+        turnStart = now;
+        return true;
+    }
+
+    /**
+     * 正在走的一方从now起还剩多少时间，棋钟停着时返回Long.MAX_VALUE
+     */
+    long remainingNanos(long now) {
+        if (running == BitBoard.EMPTY) {
+            return Long.MAX_VALUE;
+        }
+        long main = running == BitBoard.BLACK ? blackNanos : whiteNanos;
+        int left = running == BitBoard.BLACK ? blackPeriods : whitePeriods;
+        return main + left * byoyomiNanos - (now - turnStart);
+    }
+
+    int running() {
+        return running;
+    }
+
+    /**
+     * 下一步开始时color显示的时间：还有基本用时就是基本用时，否则是一次完整的读秒
+     */
+    int displayMillis(int color) {
+        long main = color == BitBoard.BLACK ? blackNanos : whiteNanos;
+        return (int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMillis(main > 0 ? main : byoyomiNanos));
+    }
+
+    int periods(int color) {
+        return color == BitBoard.BLACK ? blackPeriods : whitePeriods;
+    }
+}
@@ -0,0 +1,316 @@
+package org.example.room;
+
+import org.example.board.BitBoard;
+import org.example.log.AsyncLog;
+import org.example.net.Peer;
+import org.example.protocol.Frame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按等级分匹配对手
+ * 排队的玩家按等级分分桶，每桶RATING_BUCKET分，桶内是按排队先后串起来的双向链表，每个桶一把锁；
+ * 加入和退出只锁一个桶，都是O(1)，不同分段的玩家互不阻塞，没有全局锁。
+ * 匹配线程每PASS_MILLIS毫秒从低分到高分扫一遍所有桶：桶内按先后两两配对，剩下的一个带到后面的桶，
+ * 和分数更高的人配对。能接受的分差随排队时间从BASE_BAND放宽到MAX_BAND，两人的分差要在双方各自的范围内。
+ * 扫描时最多同时持有两个桶的锁，并且总是按桶的顺序加锁，不会和加入、退出死锁。
+ * 配好的两人进入新建的房间，先排队的执黑。
+ */
+public class Matchmaker {
+    // 每个桶覆盖的分数段，不超过BASE_BAND，同一个桶里的人总能直接配对
+    static final int RATING_BUCKET = 50;
+    // 等级分的范围 [0, MAX_RATING)，超出的按边界算
+    static final int MAX_RATING = 4000;
+    // 刚排队时能接受的分差，每排队一秒放宽WIDEN_PER_SECOND，最多MAX_BAND
+    static final int BASE_BAND = 100;
+    static final int WIDEN_PER_SECOND = 20;
+    static final int MAX_BAND = 800;
+    // 两遍匹配之间的间隔
+    static final long PASS_MILLIS = 200;
+
+    private final RoomManager rooms;
+    private final SessionRegistry sessions;
+    private final Bucket[] buckets = new Bucket[MAX_RATING / RATING_BUCKET];
+    // 连接id -> 排队记录，用于退出和重新排队
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    // 一遍扫描中配好的人，依次每两个一对；在锁外建房间，只在匹配线程上访问
+    private final List<Ticket> pairs = new ArrayList<>();
+    private final AtomicLong nextRoom = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public Matchmaker(RoomManager rooms, SessionRegistry sessions) {
+        this.rooms = rooms;
+        this.sessions = sessions;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket(i * RATING_BUCKET);
+        }
+        thread = new Thread(this::run, "matchmaker");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 加入匹配队列，已经在排队的按新的等级分重新排队
+     */
+    public void enqueue(Peer peer, int rating) {
+        int clamped = Math.max(0, Math.min(MAX_RATING - 1, rating));
+        Ticket ticket = new Ticket(peer, clamped, buckets[clamped / RATING_BUCKET], System.nanoTime());
+        Ticket old = tickets.put(peer.id(), ticket);
+        if (old != null) {
+            old.bucket.remove(old);
+        }
+        ticket.bucket.add(ticket);
+    }
+
+    /**
+     * 退出匹配队列，不在队列中时什么也不做
+     */
+    public void leave(Peer peer) {
+        Ticket ticket = tickets.remove(peer.id());
+        if (ticket != null) {
+            ticket.bucket.remove(ticket);
+        }
+    }
+
+    /**
+     * 正在排队的人数
+     */
+    public int size() {
+        return tickets.size();
+    }
+
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(PASS_MILLIS));
+            if (!running) {
+                return;
+            }
+            try {
+                pass(System.nanoTime());
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            startGames();
+        }
+    }
+
+    /**
+     * 扫一遍所有桶，配好的人从桶里摘下放进pairs
+     */
+    void pass(long now) {
+        // 从前面的桶带过来的人，它所在的桶的锁还持有着
+        Ticket carry = null;
+        try {
+            for (Bucket bucket : buckets) {
+                if (bucket.size == 0) {
+                    // 后面的桶分数只会更高，超出带着的人能接受的范围就不再带
+                    if (carry != null && bucket.low - carry.rating > band(carry, now)) {
+                        carry.bucket.lock.unlock();
+                        carry = null;
+                    }
+                    continue;
+                }
+                bucket.lock.lock();
+                Ticket first = bucket.head;
+                if (carry != null) {
+                    if (first != null && acceptable(carry, first, now)) {
+                        carry.bucket.unlink(carry);
+                        bucket.unlink(first);
+                        pair(carry, first);
+                    }
+                    // 配不上这个桶里最早排队的人，留给下一遍
+                    carry.bucket.lock.unlock();
+                    carry = null;
+                }
+                while (bucket.head != null && bucket.head.next != null) {
+                    Ticket a = bucket.head;
+                    Ticket b = a.next;
+                    bucket.unlink(a);
+                    bucket.unlink(b);
+                    pair(a, b);
+                }
+                if (bucket.head != null) {
+                    carry = bucket.head;
+                } else {
+                    bucket.lock.unlock();
+                }
+            }
+        } finally {
+            if (carry != null) {
+                carry.bucket.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 为上一遍配好的人建房间，在锁外进行
+     */
+    void startGames() {
+        for (int i = 0; i + 1 < pairs.size(); i += 2) {
+            startGame(pairs.get(i), pairs.get(i + 1));
+        }
+        pairs.clear();
+    }
+
+    /**
+     * 等级分相差不超过双方各自能接受的范围
+     */
+    private static boolean acceptable(Ticket a, Ticket b, long now) {
+        int diff = Math.abs(a.rating - b.rating);
+        return diff <= band(a, now) && diff <= band(b, now);
+    }
+
+    private static int band(Ticket ticket, long now) {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(now - ticket.since);
+        return (int) Math.min(MAX_BAND, BASE_BAND + seconds * WIDEN_PER_SECOND);
+    }
+
+    private void pair(Ticket a, Ticket b) {
+        if (a.since <= b.since) {
+            pairs.add(a);
+            pairs.add(b);
+        } else {
+            pairs.add(b);
+            pairs.add(a);
+        }
+    }
+
+    /**
+     * 为配好的两人新建房间，分好座位后通知双方
+     */
+    private void startGame(Ticket black, Ticket white) {
+        boolean blackQueued = tickets.remove(black.peer.id(), black);
+        boolean whiteQueued = tickets.remove(white.peer.id(), white);
+        if (!blackQueued || !whiteQueued) {
+            // 配对之后有一方退出或重新排了队，另一方按原来的排队时间回到队列
+            if (blackQueued) {
+                requeue(black);
+            }
+            if (whiteQueued) {
+                requeue(white);
+            }
+            return;
+        }
+        String name = "match-" + nextRoom.incrementAndGet();
+        seat(black.peer, name, BitBoard.BLACK);
+        seat(white.peer, name, BitBoard.WHITE);
+        AsyncLog.info("匹配成功 " + black.peer.id() + "(" + black.rating + ") vs "
+                + white.peer.id() + "(" + white.rating + ")，房间 " + name);
+    }
+
+    private void requeue(Ticket ticket) {
+        if (tickets.putIfAbsent(ticket.peer.id(), ticket) == null) {
+            ticket.bucket.add(ticket);
+        }
+    }
+
+    private void seat(Peer peer, String name, int color) {
+        Session session = sessions.sessionOf(peer);
+        if (session == null) {
+            // 配对之后连接已经断开，对手坐下后等它的座位超时
+            return;
+        }
+        sessions.moved(peer, name, false);
+        Room room = rooms.join(name, peer);
+        room.seat(session.name(), color);
+        peer.send(Frame.matched(color, name));
+    }
+
+    /**
+     * 一个等级分段的排队者，按排队先后串成双向链表
+     */
+    private static final class Bucket {
+        private final int low;
+        private final ReentrantLock lock = new ReentrantLock();
+        private Ticket head;
+        private Ticket tail;
+        // 在锁内修改，扫描时不加锁读它来跳过空桶
+        private volatile int size;
+
+        Bucket(int low) {
+            this.low = low;
+        }
+
+        void add(Ticket ticket) {
+            lock.lock();
+            try {
+                ticket.prev = tail;
+                if (tail == null) {
+                    head = ticket;
+                } else {
+                    tail.next = ticket;
+                }
+                tail = ticket;
+                ticket.linked = true;
+                size++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(Ticket ticket) {
+            lock.lock();
+            try {
+                // 已经被配对摘下的不再处理
+                if (ticket.linked) {
+                    unlink(ticket);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 调用者持有锁
+         */
+        void unlink(Ticket ticket) {
+            if (ticket.prev == null) {
+                head = ticket.next;
+            } else {
+                ticket.prev.next = ticket.next;
+            }
+            if (ticket.next == null) {
+                tail = ticket.prev;
+            } else {
+                ticket.next.prev = ticket.prev;
+            }
+            ticket.prev = null;
+            ticket.next = null;
+            ticket.linked = false;
+            size--;
+        }
+    }
+
+    /**
+     * 一次排队，链表字段在所在桶的锁内读写
+     */
+    private static final class Ticket {
+        private final Peer peer;
+        private final int rating;
+        private final Bucket bucket;
+        private final long since;
+        private Ticket prev;
+        private Ticket next;
+        private boolean linked;
+
+        Ticket(Peer peer, int rating, Bucket bucket, long since) {
+            this.peer = peer;
+            this.rating = rating;
+            this.bucket = bucket;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,671 @@
+package org.example.room;
+
+import org.example.ai.AiPlayer;
+import org.example.ai.ThreatSolver;
+import org.example.archive.ArchiveExporter;
+import org.example.archive.GameRecord;
+import org.example.board.BitBoard;
+import org.example.journal.MoveJournal;
+import org.example.log.AsyncLog;
+import org.example.net.Broadcaster;
+import org.example.net.Peer;
+import org.example.net.TimerWheel;
+import org.example.protocol.ErrorCode;
+import org.example.protocol.Frame;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一个房间就是一盘独立的棋局
+ * 房间的所有状态只在它所属的工作线程上读写（单写者），外部线程通过execute投递任务，
+ * 因此房间内部不需要任何锁，广播也只发给本房间的成员
+ * 观众不在members中，由SpectatorFeed在分发线程上转发，房间线程对每条消息只投递一次
+ * 棋局结束后，玩家再次加入本房间或者玩家都离开时开始新的一局，默认房间因此可以一直使用
+ */
+public class Room {
+    // 电脑玩家在棋谱中的名字
+    private static final String AI_NAME = "ai";
+    // 电脑玩家每步的思考时间
+    private static final long AI_THINK_MILLIS = 100;
+    // 每步之后判定胜负时证明数搜索最多展开的节点数
+    private static final int SOLVER_BUDGET = 5_000;
+    // 为重连保留的最近落子帧数，断线期间错过更多步时改发快照
+    static final int RESUME_RING = 64;
+
+    private final String name;
+    private final RoomManager manager;
+    // 房间的邮箱：所属工作线程的任务队列，按投递顺序串行执行
+    private final Executor mailbox;
+    // 按加入顺序广播；加入、离开和落子时的成员检查都是O(1)
+    private final Set<Peer> members = new LinkedHashSet<>();
+    // 观众只读，落子请求被忽略
+    private final Set<Peer> spectators = new HashSet<>();
+    private final SpectatorFeed feed;
+    // 当前局面的快照，落子后作废，需要时再编码
+    private Frame snapshot;
+    // 最近RESUME_RING步的落子帧，按序号取模存放；序号小于ringStart的步（从日志恢复的）不在其中
+    private final Frame[] recent = new Frame[RESUME_RING];
+    private int ringStart;
+    // 已经发出的胜负和必胜判定，重连时补发
+    private Frame winFrame;
+    private Frame decidedFrame;
+    // 断线后座位还保留着的玩家（会话名）
+    private final Set<String> detached = new HashSet<>();
+    // 双方的棋钟，和轮到的一方用完时间的定时器；没有进行中的棋局时定时器为null
+    private final GameClock clock = new GameClock();
+    private TimerWheel.Timeout moveTimer;
+    private final BitBoard board = new BitBoard();
+    private char currentPlayer = 'O';
+    // 房间已从管理器中移除，之后投递进来的加入请求需要转交给新房间
+    private boolean closed;
+    // 已经分出胜负或下成和棋
+    private boolean finished;
+    // 第几局，开新局时加一；搜索线程的结果回到房间线程时据此丢弃上一局的
+    private int gameNumber;
+    // 电脑玩家及其执子颜色，没有电脑玩家时为null
+    private AiPlayer ai;
+    private int aiColor = BitBoard.EMPTY;
+    // 本局的着法和开始时间，用于导出棋谱
+    private final byte[] history = new byte[GameRecord.MAX_MOVES];
+    private long startMillis;
+    // 执黑、执白的座位（会话名），匹配时或第一次落子时绑定，只有座位的主人能下这个颜色；也记入棋谱
+    private final String[] players = new String[2];
+    // 这盘棋在走棋日志中的编号，还没有落子或没有日志时为-1
+    private long gameId = -1;
+    // 从日志恢复的棋局等玩家回来的期限，到期时房间还空着就结束这盘棋
+    private TimerWheel.Timeout restoreTimer;
+    // 已经宣布过必胜，之后不再判定
+    private boolean decided;
+    // 判定用的局面副本，判定在搜索线程上进行，同一时间只有一个
+    private final BitBoard analysisBoard = new BitBoard();
+    private final AtomicBoolean analyzing = new AtomicBoolean();
+
+    Room(String name, RoomManager manager, Executor mailbox, Executor fanout) {
+        this.name = name;
+        this.manager = manager;
+        this.mailbox = mailbox;
+        this.feed = new SpectatorFeed(fanout, () -> execute(this::resyncSpectators));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * 在房间线程上执行任务
+     */
+    public void execute(Runnable task) {
+        mailbox.execute(task);
+    }
+
+    public void join(Peer peer) {
+        execute(() -> {
+            if (closed) {
+                manager.rejoin(this, peer, false);
+                return;
+            }
+            // 同一房间里由观众转为玩家
+            if (spectators.remove(peer)) {
+                feed.remove(peer);
+            }
+            if (!members.add(peer)) {
+                // 棋局结束后再次加入同一房间表示再来一局
+                if (finished) {
+                    newGame();
+                }
+                return;
+            }
+            // 中途进来的玩家先拿到当前棋盘
+            if (board.moveCount() > 0) {
+                peer.send(snapshot());
+            }
+        });
+    }
+
+    /**
+     * 预先把座位分给匹配到的玩家，只在还没有落子时有效
+     * @param player 会话名
+     */
+    void seat(String player, int color) {
+        execute(() -> {
+            if (players[color] == null && board.moveCount() == 0) {
+                players[color] = player;
+            }
+        });
+    }
+
+    /**
+     * 给玩家补发当前局面的快照，用于连接切换协议之后
+     */
+    public void sync(Peer peer) {
+        execute(() -> {
+            if (members.contains(peer) && board.moveCount() > 0) {
+                peer.send(snapshot());
+            }
+        });
+    }
+
+    /**
+     * 以观众身份进入，先收到当前局面的快照
+     */
+    public void watch(Peer peer) {
+        execute(() -> {
+            if (closed) {
+                manager.rejoin(this, peer, true);
+                return;
+            }
+            if (spectators.add(peer)) {
+                feed.add(peer, snapshot());
+            }
+        });
+    }
+
+    public void leave(Peer peer) {
+        execute(() -> {
+            if (!members.remove(peer) && spectators.remove(peer)) {
+                feed.remove(peer);
+            }
+            closeIfEmpty();
+            resetIfAbandoned();
+        });
+    }
+
+    /**
+     * 玩家断线，座位保留到重连或超时
+     * @param player 会话名
+     */
+    void detach(String player, Peer peer) {
+        execute(() -> {
+            if (members.remove(peer)) {
+                // 结束的棋局没有什么可等的，不保留座位
+                if (!finished) {
+                    detached.add(player);
+                }
+            } else if (spectators.remove(peer)) {
+                feed.remove(peer);
+            }
+            closeIfEmpty();
+            resetIfAbandoned();
+        });
+    }
+
+    /**
+     * 断线超时，放弃保留的座位
+     */
+    void expire(String player) {
+        execute(() -> {
+            if (detached.remove(player)) {
+                closeIfEmpty();
+                resetIfAbandoned();
+            }
+        });
+    }
+
+    /**
+     * 重连：接上新连接，补发序号lastSeq之后的落子；错过的步数超出环形缓冲区时改发快照
+     */
+    void resume(String player, Peer peer, int lastSeq, boolean spectator) {
+        execute(() -> {
+            if (closed) {
+                manager.rejoin(this, peer, spectator);
+                return;
+            }
+            detached.remove(player);
+            int last = board.moveCount() - 1;
+            if (spectator) {
+                if (spectators.add(peer)) {
+                    feed.add(peer, snapshot());
+                }
+                return;
+            }
+            members.add(peer);
+            if (lastSeq < last) {
+                if (lastSeq + 1 >= ringStart && last - lastSeq <= RESUME_RING) {
+                    for (int seq = lastSeq + 1; seq <= last; seq++) {
+                        peer.send(recent[seq % RESUME_RING]);
+                    }
+                } else {
+                    peer.send(snapshot());
+                }
+            }
+            if (decidedFrame != null) {
+                peer.send(decidedFrame);
+            }
+            if (winFrame != null) {
+                peer.send(winFrame);
+            }
+        });
+    }
+
+    private void closeIfEmpty() {
+        if (members.isEmpty() && spectators.isEmpty() && detached.isEmpty() && manager.remove(this)) {
+            closed = true;
+            cancelMoveTimer();
+            cancelRestoreTimer();
+            // 房间没人了，这盘棋不会再继续
+            endGame();
+        }
+    }
+
+    /**
+     * 结束的棋局没有玩家了（包括断线保留的座位），房间又没被移除（默认房间）时开始新的一局
+     */
+    private void resetIfAbandoned() {
+        if (!closed && finished && members.isEmpty() && detached.isEmpty()) {
+            newGame();
+        }
+    }
+
+    /**
+     * 开始新的一局：清空棋盘、座位和补发用的帧，向房间里的人发一份空棋盘的快照
+     * 电脑玩家留在原来的颜色，执黑时由它先走
+     */
+    private void newGame() {
+        clock.stop();
+        cancelMoveTimer();
+        cancelRestoreTimer();
+        endGame();
+        gameNumber++;
+        board.clear();
+        currentPlayer = 'O';
+        finished = false;
+        decided = false;
+        winFrame = null;
+        decidedFrame = null;
+        Arrays.fill(recent, null);
+        ringStart = 0;
+        Arrays.fill(players, null);
+        if (ai != null) {
+            players[aiColor] = AI_NAME;
+        }
+        snapshot = null;
+        AsyncLog.info("房间 " + name + " 开始新的一局");
+        broadcast(snapshot());
+        if (ai != null && aiColor == BitBoard.BLACK) {
+            requestAiMove();
+        }
+    }
+
+    /**
+     * 落子请求，不合法时给发送者回一个错误帧，不广播
+     * @param player 会话名，记入棋谱，也是座位的归属
+     */
+    public void move(Peer peer, String player, int row, int col) {
+        // 用时从收到落子时算起，不包括在房间邮箱里排队的时间
+        long received = System.nanoTime();
+        execute(() -> {
+            int error = members.contains(peer) ? checkMove(player, row, col) : ErrorCode.NOT_SEATED;
+            if (error != 0) {
+                manager.metrics().rejected();
+                peer.send(Frame.error(error));
+                return;
+            }
+            play(player, row, col, received);
+        });
+    }
+
+    /**
+     * 让电脑玩家坐到下一步之后轮到的那一方，请求者先走；不能加入时给请求者回一个错误帧
+     * @param threads 搜索线程数，不超过CPU核数
+     */
+    public void addAi(Peer peer, int threads) {
+        execute(() -> {
+            int color = currentPlayer == 'O' ? BitBoard.WHITE : BitBoard.BLACK;
+            int error = members.contains(peer) ? checkAi(color) : ErrorCode.NOT_SEATED;
+            if (error != 0) {
+                peer.send(Frame.error(error));
+                return;
+            }
+            int limit = Math.max(1, Math.min(threads, Runtime.getRuntime().availableProcessors()));
+            ai = new AiPlayer(board.size(), limit, manager.aiExecutor(), AI_THINK_MILLIS, manager.openingBook());
+            aiColor = color;
+            players[color] = AI_NAME;
+        });
+    }
+
+    /**
+     * @param received 收到这步棋时的System.nanoTime
+     */
+    private void play(String player, int row, int col, long received) {
+        int color = currentPlayer == 'O' ? BitBoard.BLACK : BitBoard.WHITE;
+        if (board.moveCount() == 0) {
+            startMillis = System.currentTimeMillis();
+            clock.reset();
+        }
+        // 时间轮的精度是一个tick，定时器还没到期时超时的落子在这里判负
+        if (GameClock.enabled() && !clock.moved(color, received)) {
+            timeOut(color);
+            return;
+        }
+        // 第一次落子时坐下，之后这个颜色只属于这个会话，重连后不变
+        if (players[color] == null) {
+            players[color] = player;
+        }
+        history[board.moveCount()] = (byte) (row * board.size() + col);
+        boolean win = makeMove(row, col);
+        int seq = board.moveCount() - 1;
+        snapshot = null;
+        Frame move = GameClock.enabled()
+                ? Frame.move(seq, row, col, clock.displayMillis(BitBoard.BLACK), clock.periods(BitBoard.BLACK),
+                        clock.displayMillis(BitBoard.WHITE), clock.periods(BitBoard.WHITE))
+                : Frame.move(seq, row, col);
+        recent[seq % RESUME_RING] = move;
+        broadcast(move);
+        manager.metrics().moved(received);
+        if (win) {
+            finish(color, seq);
+            return;
+        }
+        if (board.isFull()) {
+            draw();
+            return;
+        }
+        startMoveTimer();
+        if (!decided) {
+            requestAnalysis(BitBoard.opponent(color));
+        }
+        if (ai != null && color != aiColor) {
+            requestAiMove();
+        }
+    }
+
+    /**
+     * 在搜索线程上判断轮到的一方是否有连续冲四或活三的必胜，有就提前告诉房间里的所有人
+     * 上一次判定还没结束时跳过这一步，结果回到房间线程时棋局已有变化也丢弃
+     */
+    private void requestAnalysis(int color) {
+        if (!analyzing.compareAndSet(false, true)) {
+            return;
+        }
+        int expected = board.moveCount();
+        int game = gameNumber;
+        analysisBoard.copyFrom(board);
+        manager.aiExecutor().execute(() -> {
+            boolean win;
+            try {
+                ThreatSolver solver = manager.solver();
+                win = solver.solve(analysisBoard, color, ThreatSolver.VCF, SOLVER_BUDGET) == ThreatSolver.WIN
+                        || solver.solve(analysisBoard, color, ThreatSolver.VCT, SOLVER_BUDGET) == ThreatSolver.WIN;
+            } finally {
+                analyzing.set(false);
+            }
+            if (win) {
+                execute(() -> {
+                    if (!decided && !finished && gameNumber == game && board.moveCount() == expected) {
+                        decided = true;
+                        decidedFrame = Frame.decided(expected - 1, color);
+                        broadcast(decidedFrame);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 分出胜负：结束日志和计时，导出棋谱并广播
+     */
+    private void finish(int winner, int seq) {
+        finished = true;
+        clock.stop();
+        cancelMoveTimer();
+        endGame();
+        exportGame(winner == BitBoard.BLACK ? GameRecord.BLACK_WINS : GameRecord.WHITE_WINS);
+        winFrame = Frame.win(seq, winner);
+        broadcast(winFrame);
+    }
+
+    /**
+     * 棋盘下满仍未分出胜负：按和棋结束日志和计时，导出棋谱；协议中没有和棋消息，不广播
+     */
+    private void draw() {
+        finished = true;
+        clock.stop();
+        cancelMoveTimer();
+        endGame();
+        exportGame(GameRecord.DRAW);
+        AsyncLog.info("房间 " + name + " 棋盘已满，和棋");
+    }
+
+    /**
+     * 在轮到的一方用完时间时判负；定时器在时间轮线程上到期，判负回到房间线程进行
+     */
+    private void startMoveTimer() {
+        cancelMoveTimer();
+        long remaining = clock.remainingNanos(System.nanoTime());
+        if (remaining == Long.MAX_VALUE) {
+            return;
+        }
+        int expected = board.moveCount();
+        int game = gameNumber;
+        long delayMillis = Math.max(0, TimeUnit.NANOSECONDS.toMillis(remaining + 999_999));
+        moveTimer = manager.timers().schedule(() -> execute(() -> {
+            if (finished || closed || gameNumber != game || board.moveCount() != expected) {
+                return;
+            }
+            if (clock.remainingNanos(System.nanoTime()) > 0) {
+                startMoveTimer();
+            } else {
+                timeOut(clock.running());
+            }
+        }), delayMillis);
+    }
+
+    private void timeOut(int loser) {
+        AsyncLog.info("房间 " + name + " 玩家 " + BitBoard.symbol(loser) + " 超时判负");
+        finish(BitBoard.opponent(loser), board.moveCount() - 1);
+    }
+
+    private void cancelMoveTimer() {
+        if (moveTimer != null) {
+            moveTimer.cancel();
+            moveTimer = null;
+        }
+    }
+
+    /**
+     * 发给玩家和观众；观众的快照等有人跟不上时再编码
+     */
+    private void broadcast(Frame frame) {
+        long started = System.nanoTime();
+        int rejected = Broadcaster.broadcast(members, frame);
+        if (!spectators.isEmpty()) {
+            feed.publish(frame);
+        }
+        manager.metrics().broadcast(started, rejected);
+    }
+
+    /**
+     * SpectatorFeed发现有观众跟不上时请求：编码当前快照，连同已经发出的判定和胜负交给它重发
+     */
+    private void resyncSpectators() {
+        feed.resync(snapshot(), decidedFrame, winFrame);
+    }
+
+    private Frame snapshot() {
+        if (snapshot == null) {
+            snapshot = Frame.snapshot(history, board.moveCount());
+        }
+        return snapshot;
+    }
+
+    /**
+     * 在搜索线程上计算，结果再投递回房间线程落子；期间如果棋局有变化就丢弃结果
+     */
+    private void requestAiMove() {
+        int expected = board.moveCount();
+        int game = gameNumber;
+        boolean accepted = ai.requestMove(board, aiColor, cell -> execute(() -> {
+            if (cell >= 0 && gameNumber == game && board.moveCount() == expected
+                    && checkMove(AI_NAME, cell / board.size(), cell % board.size()) == 0) {
+                play(AI_NAME, cell / board.size(), cell % board.size(), System.nanoTime());
+            }
+        }));
+        if (!accepted) {
+            // 上一次搜索还没算完（比如开新局之前发出的，结果会被丢弃），过一次思考时间再请求
+            manager.timers().schedule(() -> execute(() -> {
+                if (!finished && !closed && gameNumber == game && board.moveCount() == expected) {
+                    requestAiMove();
+                }
+            }), AI_THINK_MILLIS);
+        }
+    }
+
+    /**
+     * 启动时恢复走棋日志中未结束的棋局，只重放着法，不再写日志也不广播
+     * 每一步先检查落在棋盘内的空格上，遇到不合法的一步说明日志损坏，放弃这盘棋并结束它的日志记录；
+     * 重放到五连就停下，按已分出胜负恢复
+     */
+    void restore(MoveJournal.RecoveredGame game) {
+        execute(() -> {
+            gameId = game.gameId();
+            for (int seq = 0; seq < game.moveCount() && !finished; seq++) {
+                int cell = game.cell(seq);
+                int row = cell / board.size();
+                int col = cell % board.size();
+                if (cell < 0 || !board.isInside(row, col) || !board.isEmpty(row, col)) {
+                    AsyncLog.info("房间 " + name + " 日志中第 " + seq + " 步 " + cell + " 不合法，放弃恢复这盘棋");
+                    board.clear();
+                    endGame();
+                    return;
+                }
+                history[seq] = (byte) cell;
+                if (board.place(row, col, seq % 2)) {
+                    finished = true;
+                    winFrame = Frame.win(seq, seq % 2);
+                }
+            }
+            currentPlayer = board.moveCount() % 2 == 0 ? 'O' : 'X';
+            ringStart = board.moveCount();
+            startMillis = System.currentTimeMillis();
+            // 停机期间不计时，恢复的棋局双方重新开始计时
+            clock.reset();
+            if (finished) {
+                endGame();
+            }
+            // 停机前的连接都断了，和断线一样只保留RESUME_GRACE_MILLIS；没人回来就不再恢复，日志也不会一直留着它
+            restoreTimer = manager.timers().schedule(() -> execute(this::expireRestored),
+                    SessionRegistry.RESUME_GRACE_MILLIS);
+            AsyncLog.info("房间 " + name + " 已从日志恢复 " + board.moveCount() + " 步"
+                    + (finished ? "，已分出胜负" : ""));
+        });
+    }
+
+    /**
+     * 恢复的棋局到期时没有人回来：结束日志中的这盘棋并关闭房间
+     * 默认房间不会被移除，之后有人接着下时makeMove会把已有的着法重新写进一盘新的日志
+     * 停机前已经分出胜负的棋局只留给重连的玩家看结果，到期后不管有没有人都开始新的一局
+     */
+    private void expireRestored() {
+        restoreTimer = null;
+        if (closed) {
+            return;
+        }
+        if (finished) {
+            closeIfEmpty();
+            if (!closed) {
+                newGame();
+            }
+            return;
+        }
+        if (!members.isEmpty() || !spectators.isEmpty() || !detached.isEmpty()) {
+            return;
+        }
+        AsyncLog.info("房间 " + name + " 恢复的棋局无人继续，已结束");
+        endGame();
+        closeIfEmpty();
+    }
+
+    private void cancelRestoreTimer() {
+        if (restoreTimer != null) {
+            restoreTimer.cancel();
+            restoreTimer = null;
+        }
+    }
+
+    private void endGame() {
+        MoveJournal journal = manager.journal();
+        if (journal != null && gameId >= 0) {
+            journal.end(gameId);
+            gameId = -1;
+        }
+    }
+
+    private void exportGame(int result) {
+        ArchiveExporter archive = manager.archive();
+        if (archive != null) {
+            archive.export(new GameRecord(players[BitBoard.BLACK], players[BitBoard.WHITE], result,
+                    startMillis, System.currentTimeMillis(), history, board.moveCount()));
+        }
+    }
+
+    /**
+     * 检查落子是否合法：棋局没结束，轮到的颜色的座位空着或属于player，并且落在空格上
+     * 用的都是数组和字段，O(1)
+     * @return 合法返回0，否则返回ErrorCode中的错误码
+     */
+    private int checkMove(String player, int row, int col) {
+        if (finished) {
+            return ErrorCode.GAME_OVER;
+        }
+        int color = currentPlayer == 'O' ? BitBoard.BLACK : BitBoard.WHITE;
+        if (player.equals(players[BitBoard.opponent(color)])) {
+            return ErrorCode.NOT_YOUR_TURN;
+        }
+        if (players[color] != null && !players[color].equals(player)) {
+            return ErrorCode.NOT_SEATED;
+        }
+        if (!board.isInside(row, col)) {
+            return ErrorCode.OUT_OF_BOARD;
+        }
+        if (!board.isEmpty(row, col)) {
+            return ErrorCode.OCCUPIED;
+        }
+        return 0;
+    }
+
+    /**
+     * 检查电脑玩家能否坐到color：房间里还没有电脑玩家，棋局没结束，这个座位也还没人
+     * @return 可以返回0，否则返回ErrorCode中的错误码
+     */
+    private int checkAi(int color) {
+        if (ai != null) {
+            return ErrorCode.AI_PRESENT;
+        }
+        if (finished) {
+            return ErrorCode.GAME_OVER;
+        }
+        if (players[color] != null) {
+            return ErrorCode.SEAT_TAKEN;
+        }
+        return 0;
+    }
+
+    /**
+     * 落子并切换玩家
+     * @return 这一步是否形成五连
+     */
+    private boolean makeMove(int row, int col) {
+        AsyncLog.info("房间 " + name + " 玩家 " + currentPlayer + " 下棋 (" + row + ", " + col + ")");
+        int color = currentPlayer == 'O' ? BitBoard.BLACK : BitBoard.WHITE;
+        MoveJournal journal = manager.journal();
+        if (journal != null) {
+            if (gameId < 0) {
+                gameId = journal.newGame(name);
+                // 日志里的旧记录已经结束（恢复后到期的棋局），先补写已有的着法，让新记录能独立重放
+                for (int seq = 0; seq < board.moveCount(); seq++) {
+                    journal.move(gameId, seq, history[seq] & 0xFF, seq % 2);
+                }
+            }
+            journal.move(gameId, board.moveCount(), row * board.size() + col, color);
+        }
+        boolean win = board.place(row, col, color);
+        currentPlayer = (currentPlayer == 'O') ? 'X' : 'O';
+        return win;
+    }
+}
@@ -0,0 +1,255 @@
+package org.example.room;
+
+import org.example.ai.ThreatSolver;
+import org.example.archive.ArchiveExporter;
+import org.example.book.OpeningBook;
+import org.example.journal.MoveJournal;
+import org.example.metrics.ServerMetrics;
+import org.example.net.Peer;
+import org.example.net.TimerWheel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 房间管理器
+ * 房间按名字的哈希分布到固定数量的工作线程上，同一个房间永远由同一个线程处理
+ */
+public class RoomManager {
+    // 不指定房间的旧客户端都进入这个房间，保持原来"所有人一盘棋"的行为
+    public static final String DEFAULT_ROOM = "lobby";
+    // 胜负判定用的证明数求解器节点表大小，约1.3MB
+    private static final int SOLVER_CAPACITY = 1 << 16;
+    // 棋钟：每方的基本用时和每步的加秒（费舍尔制），系统属性 gomoku.mainSeconds / gomoku.incrementSeconds 指定
+    static final long MAIN_TIME_MILLIS = Long.getLong("gomoku.mainSeconds", 0) * 1000;
+    static final long INCREMENT_MILLIS = Long.getLong("gomoku.incrementSeconds", 0) * 1000;
+    // 基本用时用完后的读秒：每次的秒数和次数，gomoku.byoyomiSeconds / gomoku.byoyomiPeriods 指定；
+    // 读秒秒数默认取每步时限 gomoku.moveSeconds，不设基本用时时就是每步限时，全为0表示不限时
+    static final long BYOYOMI_MILLIS = Long.getLong("gomoku.byoyomiSeconds", Long.getLong("gomoku.moveSeconds", 120)) * 1000;
+    static final int BYOYOMI_PERIODS = Integer.getInteger("gomoku.byoyomiPeriods", 1);
+    // 时间轮每格100毫秒，一圈512格约51秒
+    private static final long TIMER_TICK_MILLIS = 100;
+    private static final int TIMER_WHEEL_SIZE = 512;
+
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    // 连接id -> 连接当前所在的房间
+    private final Map<String, Room> peerRooms = new ConcurrentHashMap<>();
+    private final ExecutorService[] workers;
+    // 向观众分发消息的线程，房间按名字的哈希分配，同一房间的消息保持顺序
+    private final ExecutorService[] fanouts;
+    // 电脑玩家的搜索线程，所有房间共用，每个核心一个线程
+    private final ExecutorService aiExecutor;
+    // 电脑玩家共用的开局库，可能为null
+    private final OpeningBook openingBook;
+    // 走棋日志，可能为null
+    private final MoveJournal journal;
+    // 结束的棋局导出到这里，可能为null
+    private final ArchiveExporter archive;
+    // 连接心跳、断线保留和走棋时限共用的时间轮
+    private final TimerWheel timers = new TimerWheel("timer-wheel", TIMER_TICK_MILLIS, TIMER_WHEEL_SIZE);
+    // 走棋和广播的计数与延迟，房间线程直接记录
+    private final ServerMetrics metrics = new ServerMetrics();
+    // 每个搜索线程一个求解器，节点表在各房间之间复用
+    private final ThreadLocal<ThreatSolver> solvers = ThreadLocal.withInitial(() -> new ThreatSolver(SOLVER_CAPACITY));
+
+    public RoomManager(int workerCount) {
+        this(workerCount, null, null, null);
+    }
+
+    /**
+     * @param openingBook 电脑玩家走棋前先查的开局库，没有时为null
+     * @param journal 走棋日志，没有时为null；其中未结束的棋局会恢复到同名房间
+     * @param archive 分出胜负的棋局导出到这里，没有时为null
+     */
+    public RoomManager(int workerCount, OpeningBook openingBook, MoveJournal journal, ArchiveExporter archive) {
+        this.openingBook = openingBook;
+        this.journal = journal;
+        this.archive = archive;
+        workers = new ExecutorService[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            String threadName = "room-worker-" + i;
+            workers[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        fanouts = new ExecutorService[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            String threadName = "spectator-fanout-" + i;
+            fanouts[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        aiExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread thread = new Thread(r, "ai-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (journal != null) {
+            for (MoveJournal.RecoveredGame game : journal.recoveredGames()) {
+                open(game.room()).restore(game);
+            }
+        }
+    }
+
+    /**
+     * 让连接加入指定房间（房间不存在时自动创建），并离开原来的房间
+     * @return 加入的房间
+     */
+    public Room join(String name, Peer peer) {
+        Room room = open(name);
+        Room old = peerRooms.put(peer.id(), room);
+        if (old != null && old != room) {
+            old.leave(peer);
+        }
+        room.join(peer);
+        return room;
+    }
+
+    /**
+     * 让连接以观众身份进入指定房间，并离开原来的房间
+     * @return 进入的房间
+     */
+    public Room watch(String name, Peer peer) {
+        Room room = open(name);
+        Room old = peerRooms.put(peer.id(), room);
+        if (old != null) {
+            // 同一房间里由玩家转为观众也要先离开
+            old.leave(peer);
+        }
+        room.watch(peer);
+        return room;
+    }
+
+    /**
+     * 重连的连接回到会话原来的房间，并离开连接建立时进入的默认房间
+     * @param lastSeq 客户端最后收到的落子序号
+     */
+    public Room resume(String name, String player, Peer peer, int lastSeq, boolean spectator) {
+        Room room = open(name);
+        Room old = peerRooms.put(peer.id(), room);
+        if (old != null && old != room) {
+            old.leave(peer);
+        }
+        room.resume(player, peer, lastSeq, spectator);
+        return room;
+    }
+
+    /**
+     * 玩家断线但会话还在，房间为它保留座位
+     * @return 断线时所在的房间，可能为null
+     */
+    Room detach(Peer peer, String player) {
+        Room room = peerRooms.remove(peer.id());
+        if (room != null) {
+            room.detach(player, peer);
+        }
+        return room;
+    }
+
+    /**
+     * 连接断开时调用
+     */
+    public void leave(Peer peer) {
+        Room room = peerRooms.remove(peer.id());
+        if (room != null) {
+            room.leave(peer);
+        }
+    }
+
+    /**
+     * 连接当前所在的房间，可能为null
+     */
+    public Room roomOf(Peer peer) {
+        return peerRooms.get(peer.id());
+    }
+
+    public TimerWheel timers() {
+        return timers;
+    }
+
+    public ServerMetrics metrics() {
+        return metrics;
+    }
+
+    Executor aiExecutor() {
+        return aiExecutor;
+    }
+
+    MoveJournal journal() {
+        return journal;
+    }
+
+    ArchiveExporter archive() {
+        return archive;
+    }
+
+    OpeningBook openingBook() {
+        return openingBook;
+    }
+
+    /**
+     * 当前线程的求解器，只能在aiExecutor的线程上调用
+     */
+    ThreatSolver solver() {
+        return solvers.get();
+    }
+
+    public int roomCount() {
+        return rooms.size();
+    }
+
+    /**
+     * 加入请求到达时房间已被移除，转到同名的新房间；连接已经换到别的房间时忽略
+     */
+    void rejoin(Room closed, Peer peer, boolean spectator) {
+        Room room = open(closed.name());
+        if (peerRooms.replace(peer.id(), closed, room)) {
+            if (spectator) {
+                room.watch(peer);
+            } else {
+                room.join(peer);
+            }
+        }
+    }
+
+    private Room open(String name) {
+        return rooms.computeIfAbsent(name, n -> {
+            int worker = Math.floorMod(n.hashCode(), workers.length);
+            return new Room(n, this, workers[worker], fanouts[worker]);
+        });
+    }
+
+    /**
+     * 房间变空时由房间线程调用；默认房间永不移除
+     */
+    boolean remove(Room room) {
+        if (room.name().equals(DEFAULT_ROOM)) {
+            return false;
+        }
+        return rooms.remove(room.name(), room);
+    }
+
+    public void shutdown() {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        for (ExecutorService fanout : fanouts) {
+            fanout.shutdown();
+        }
+        aiExecutor.shutdown();
+        timers.close();
+        if (journal != null) {
+            journal.close();
+        }
+        if (archive != null) {
+            archive.close();
+        }
+    }
+}
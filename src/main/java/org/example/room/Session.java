@@ -0,0 +1,36 @@
+package org.example.room;
+
+import org.example.net.Peer;
+import org.example.net.TimerWheel;
+
+/**
+ * 一个玩家的会话，比连接活得长
+ * 连接断开后会话保留一段时间，客户端凭令牌重连就回到原来的房间和座位；
+ * 棋谱里记录的玩家名也取自会话，重连前后不变。字段由SessionRegistry在锁内读写。
+ */
+public final class Session {
+    private final long token;
+    private final String name;
+    // 当前的连接，断线期间为null
+    Peer peer;
+    // 所在的房间名和是否是观众，加入或观战时更新
+    String roomName = RoomManager.DEFAULT_ROOM;
+    boolean spectator;
+    // 断线时所在的房间，以及时间轮上的保留期限
+    Room detachedRoom;
+    TimerWheel.Timeout expiry;
+
+    Session(long token, String name, Peer peer) {
+        this.token = token;
+        this.name = name;
+        this.peer = peer;
+    }
+
+    public long token() {
+        return token;
+    }
+
+    public String name() {
+        return name;
+    }
+}
@@ -0,0 +1,178 @@
+package org.example.room;
+
+import org.example.net.Peer;
+import org.example.net.TimerWheel;
+import org.example.protocol.Frame;
+
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 会话表：令牌 -> 会话，连接id -> 会话
+ * 每个新连接先得到一个会话和随机令牌；连接断开时玩家的座位保留RESUME_GRACE_MILLIS，
+ * 期间客户端用 "resume,令牌,最后收到的序号" 重连，只补发它错过的落子。保留期限挂在共用的时间轮上，重连时取消。
+ * 连接的建立和断开远比落子少，这里用一把锁保护两张表即可。
+ */
+public class SessionRegistry {
+    // 断线后保留座位的时间
+    static final long RESUME_GRACE_MILLIS = 60_000;
+
+    private final RoomManager rooms;
+    private final TimerWheel timers;
+    private final SecureRandom random = new SecureRandom();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Long, Session> byToken = new HashMap<>();
+    private final Map<String, Session> byPeer = new HashMap<>();
+    private long nextName;
+
+    public SessionRegistry(RoomManager rooms, TimerWheel timers) {
+        this.rooms = rooms;
+        this.timers = timers;
+    }
+
+    /**
+     * 为新连接创建会话并把令牌发给客户端
+     */
+    public Session open(Peer peer) {
+        Session session;
+        lock.lock();
+        try {
+            long token;
+            do {
+                token = random.nextLong();
+            } while (token == 0 || byToken.containsKey(token));
+            session = new Session(token, "player" + nextName++, peer);
+            byToken.put(token, session);
+            byPeer.put(peer.id(), session);
+        } finally {
+            lock.unlock();
+        }
+        peer.send(Frame.session(session.token()));
+        return session;
+    }
+
+    /**
+     * 连接当前的会话，可能为null
+     */
+    public Session sessionOf(Peer peer) {
+        lock.lock();
+        try {
+            return byPeer.get(peer.id());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录会话所在的房间，重连时回到这里
+     */
+    public void moved(Peer peer, String room, boolean spectator) {
+        lock.lock();
+        try {
+            Session session = byPeer.get(peer.id());
+            if (session != null) {
+                session.roomName = room;
+                session.spectator = spectator;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 新连接凭令牌接管原来的会话
+     * 令牌未知或已过期时保留新连接自己的会话，客户端收到的新令牌说明没能恢复。
+     * 旧连接如果还没发现断线，直接关掉。
+     * @return 恢复成功返回true
+     */
+    public boolean resume(Peer peer, long token, int lastSeq) {
+        Session session;
+        Peer old;
+        lock.lock();
+        try {
+            session = byToken.get(token);
+            Session current = byPeer.get(peer.id());
+            if (session == null || session == current) {
+                return false;
+            }
+            if (current != null) {
+                byToken.remove(current.token());
+            }
+            old = session.peer;
+            if (old != null) {
+                byPeer.remove(old.id());
+            }
+            byPeer.put(peer.id(), session);
+            session.peer = peer;
+            session.detachedRoom = null;
+            if (session.expiry != null) {
+                session.expiry.cancel();
+                session.expiry = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        // 告诉客户端恢复成功，之后以原来的令牌为准
+        peer.send(Frame.session(session.token()));
+        rooms.resume(session.roomName, session.name(), peer, lastSeq, session.spectator);
+        if (old != null) {
+            // 先在房间里接上新连接，旧连接离开时房间就不会因为没人而关闭
+            rooms.leave(old);
+            old.close();
+        }
+        return true;
+    }
+
+    /**
+     * 连接断开：玩家的座位保留一段时间，观众直接离开
+     */
+    public void close(Peer peer) {
+        lock.lock();
+        try {
+            Session session = byPeer.remove(peer.id());
+            if (session == null || session.peer != peer) {
+                rooms.leave(peer);
+                return;
+            }
+            session.peer = null;
+            if (session.spectator) {
+                byToken.remove(session.token());
+                rooms.leave(peer);
+            } else {
+                session.detachedRoom = rooms.detach(peer, session.name());
+                session.expiry = timers.schedule(() -> expire(session), RESUME_GRACE_MILLIS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return byToken.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 断线超时，放弃会话，保留的座位随之释放；期间已经重连的忽略
+     */
+    private void expire(Session session) {
+        lock.lock();
+        try {
+            if (session.peer != null || byToken.get(session.token()) != session) {
+                return;
+            }
+            byToken.remove(session.token());
+            if (session.detachedRoom != null) {
+                session.detachedRoom.expire(session.name());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
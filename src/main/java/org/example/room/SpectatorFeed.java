@@ -0,0 +1,103 @@
+package org.example.room;
+
+import org.example.net.Peer;
+import org.example.protocol.Frame;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * 一个房间的观众
+ * 房间线程只把编码好的帧投递过来，向成千上万个观众逐个入队在单独的分发线程上进行，
+ * 观众再多也不会拖慢房间里两位玩家的落子和广播。
+ * 观众进来时先收到一份快照，之后是带序号的增量；某个观众发送队列积压超过LAG_LIMIT_BYTES时，
+ * 不再给它发增量，请房间编码一份最新快照，到达后替换它还没发出的数据，
+ * 慢观众最多落后一份快照，也不会因为积压被断开。快照只在有观众跟不上时才编码。
+ * 所有状态只在分发线程上读写。
+ */
+class SpectatorFeed {
+    // 积压超过这个字节数就改发快照，远小于连接的积压上限
+    static final int LAG_LIMIT_BYTES = 16 * 1024;
+
+    private final Executor executor;
+    // 请房间在它自己的线程上编码快照并调用resync
+    private final Runnable resyncRequest;
+    private final List<Peer> spectators = new ArrayList<>();
+    // 跟不上、等待快照的观众
+    private final Set<Peer> lagging = new HashSet<>();
+
+    SpectatorFeed(Executor executor, Runnable resyncRequest) {
+        this.executor = executor;
+        this.resyncRequest = resyncRequest;
+    }
+
+    /**
+     * @param snapshot 观众进入时的棋局快照
+     */
+    void add(Peer peer, Frame snapshot) {
+        executor.execute(() -> {
+            spectators.add(peer);
+            peer.send(snapshot);
+        });
+    }
+
+    void remove(Peer peer) {
+        executor.execute(() -> {
+            lagging.remove(peer);
+            int index = spectators.indexOf(peer);
+            if (index >= 0) {
+                // 顺序无关，用最后一个填补空位
+                Peer last = spectators.remove(spectators.size() - 1);
+                if (index < spectators.size()) {
+                    spectators.set(index, last);
+                }
+            }
+        });
+    }
+
+    /**
+     * 发布一条增量；等待快照的观众跳过，快照和补发的判定、胜负会包含它
+     */
+    void publish(Frame delta) {
+        executor.execute(() -> {
+            for (int i = 0; i < spectators.size(); i++) {
+                Peer peer = spectators.get(i);
+                if (lagging.contains(peer)) {
+                    continue;
+                }
+                if (peer.pendingBytes() > LAG_LIMIT_BYTES) {
+                    // 这一轮第一个跟不上的观众才发出请求，之前的请求还没处理完时不重复发
+                    if (lagging.isEmpty()) {
+                        resyncRequest.run();
+                    }
+                    lagging.add(peer);
+                    continue;
+                }
+                peer.send(delta);
+            }
+        });
+    }
+
+    /**
+     * 房间线程编码好快照后调用：替换跟不上的观众还没发出的数据，再补发已经发出的判定和胜负
+     * @param decided 必胜判定帧，没有时为null
+     * @param win 胜负帧，没有时为null
+     */
+    void resync(Frame snapshot, Frame decided, Frame win) {
+        executor.execute(() -> {
+            for (Peer peer : lagging) {
+                peer.replacePending(snapshot);
+                if (decided != null) {
+                    peer.send(decided);
+                }
+                if (win != null) {
+                    peer.send(win);
+                }
+            }
+            lagging.clear();
+        });
+    }
+}
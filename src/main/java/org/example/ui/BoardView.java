@@ -0,0 +1,202 @@
+package org.example.ui;
+
+import org.example.board.BitBoard;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+
+/**
+ * 用Java2D自己绘制的棋盘，代替每格一个JButton的GridLayout
+ * 整个棋盘只有一个轻量组件，19路甚至64路也只是一个数组，创建和布局不随格数变慢；
+ * 点击位置用除法直接换算成格子，不需要在按钮数组里查找。
+ * 落子只重绘这一格（以及上一步的标记所在的格），paintComponent只画和裁剪区域相交的格子。
+ * 只能在事件分发线程上使用。
+ */
+public class BoardView extends JComponent {
+    // 默认每格的像素数，决定首选大小
+    private static final int DEFAULT_CELL = 36;
+    private static final Color BACKGROUND = new Color(0xE3B76B);
+    private static final Color[] STONES = {Color.BLACK, Color.RED};
+
+    /**
+     * 点击了棋盘上的一格
+     */
+    public interface CellListener {
+        void onCell(int row, int col);
+    }
+
+    private final int size;
+    // 每格的颜色，BitBoard.EMPTY为空
+    private final int[] cells;
+    // 最后一步的格子，画一个标记，没有时为-1
+    private int lastCell = -1;
+    private CellListener listener;
+
+    public BoardView(int size) {
+        this.size = size;
+        this.cells = new int[size * size];
+        Arrays.fill(cells, BitBoard.EMPTY);
+        setPreferredSize(new Dimension(size * DEFAULT_CELL, size * DEFAULT_CELL));
+        setOpaque(true);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                int cell = cellAt(e.getX(), e.getY());
+                if (cell >= 0 && listener != null && isEnabled()) {
+                    listener.onCell(cell / size, cell % size);
+                }
+            }
+        });
+    }
+
+    public int boardSize() {
+        return size;
+    }
+
+    public void setCellListener(CellListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 放一颗棋子并标为最后一步，只重绘受影响的两格
+     */
+    public void place(int row, int col, int color) {
+        setStone(row, col, color);
+        setLastMove(row, col);
+    }
+
+    /**
+     * 设置一格的颜色（BitBoard.EMPTY为空），没有变化时不重绘
+     */
+    public void setStone(int row, int col, int color) {
+        int cell = row * size + col;
+        if (cells[cell] != color) {
+            cells[cell] = color;
+            repaintCell(cell);
+        }
+    }
+
+    /**
+     * 把最后一步的标记移到这一格，row为-1时去掉标记
+     */
+    public void setLastMove(int row, int col) {
+        int cell = row < 0 ? -1 : row * size + col;
+        if (cell == lastCell) {
+            return;
+        }
+        int previous = lastCell;
+        lastCell = cell;
+        if (previous >= 0) {
+            repaintCell(previous);
+        }
+        if (cell >= 0) {
+            repaintCell(cell);
+        }
+    }
+
+    public int stoneAt(int row, int col) {
+        return cells[row * size + col];
+    }
+
+    /**
+     * 清空棋盘，整体重绘
+     */
+    public void clear() {
+        Arrays.fill(cells, BitBoard.EMPTY);
+        lastCell = -1;
+        repaint();
+    }
+
+    /**
+     * @return 坐标所在的格子（row * size + col），在棋盘外返回-1
+     */
+    public int cellAt(int x, int y) {
+        int cellSize = cellSize();
+        if (cellSize == 0) {
+            return -1;
+        }
+        int dx = x - originX(cellSize);
+        int dy = y - originY(cellSize);
+        if (dx < 0 || dy < 0) {
+            return -1;
+        }
+        int col = dx / cellSize;
+        int row = dy / cellSize;
+        return row < size && col < size ? row * size + col : -1;
+    }
+
+    private void repaintCell(int cell) {
+        int cellSize = cellSize();
+        repaint(originX(cellSize) + cell % size * cellSize, originY(cellSize) + cell / size * cellSize, cellSize, cellSize);
+    }
+
+    /**
+     * 棋盘保持正方形，放在组件中央
+     */
+    private int cellSize() {
+        return Math.min(getWidth(), getHeight()) / size;
+    }
+
+    private int originX(int cellSize) {
+        return (getWidth() - cellSize * size) / 2;
+    }
+
+    private int originY(int cellSize) {
+        return (getHeight() - cellSize * size) / 2;
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        Graphics2D g = (Graphics2D) graphics;
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        int cellSize = cellSize();
+        if (cellSize == 0) {
+            return;
+        }
+        int x0 = originX(cellSize);
+        int y0 = originY(cellSize);
+        // 只画和裁剪区域相交的格子
+        int firstCol = Math.max(0, (clip.x - x0) / cellSize);
+        int lastCol = Math.min(size - 1, (clip.x + clip.width - x0) / cellSize);
+        int firstRow = Math.max(0, (clip.y - y0) / cellSize);
+        int lastRow = Math.min(size - 1, (clip.y + clip.height - y0) / cellSize);
+        if (firstCol > lastCol || firstRow > lastRow) {
+            return;
+        }
+        g.setColor(BACKGROUND);
+        g.fillRect(x0 + firstCol * cellSize, y0 + firstRow * cellSize,
+                (lastCol - firstCol + 1) * cellSize, (lastRow - firstRow + 1) * cellSize);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        int half = cellSize / 2;
+        int stone = cellSize - Math.max(2, cellSize / 8);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                int x = x0 + col * cellSize;
+                int y = y0 + row * cellSize;
+                // 每格画经过中心的十字，边上的格子只画向内的一半，拼起来就是整张网格
+                g.setColor(Color.BLACK);
+                g.drawLine(col == 0 ? x + half : x, y + half, col == size - 1 ? x + half : x + cellSize, y + half);
+                g.drawLine(x + half, row == 0 ? y + half : y, x + half, row == size - 1 ? y + half : y + cellSize);
+                int color = cells[row * size + col];
+                if (color != BitBoard.EMPTY) {
+                    int offset = (cellSize - stone) / 2;
+                    g.setColor(STONES[color]);
+                    g.fillOval(x + offset, y + offset, stone, stone);
+                    if (row * size + col == lastCell) {
+                        g.setColor(Color.WHITE);
+                        int mark = Math.max(2, cellSize / 6);
+                        g.fillRect(x + half - mark / 2, y + half - mark / 2, mark, mark);
+                    }
+                }
+            }
+        }
+    }
+}
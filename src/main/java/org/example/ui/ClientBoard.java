@@ -0,0 +1,95 @@
+package org.example.ui;
+
+import org.example.board.BitBoard;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 客户端的棋盘模型，网络线程写、事件分发线程读，不加锁
+ * 网络线程解码后直接改这里的格子并在脏位图上记一笔；事件分发线程在刷新时按位图把变化的格子同步到BoardView。
+ * 同步时读的是格子的当前值，不是当时的变化，所以两边怎么交错最后都一致，连续到达的许多步只需同步一次。
+ */
+public class ClientBoard {
+    private final int size;
+    private final AtomicIntegerArray cells;
+    // 每格一位，置位表示这一格变过还没同步到界面
+    private final AtomicLongArray dirty;
+    // 整盘清空过（快照），界面要整体重画
+    private final AtomicBoolean cleared = new AtomicBoolean();
+    // 最后一步的格子，没有时为-1
+    private volatile int lastCell = -1;
+
+    public ClientBoard(int size) {
+        this.size = size;
+        cells = new AtomicIntegerArray(size * size);
+        dirty = new AtomicLongArray((size * size + 63) / 64);
+        for (int i = 0; i < cells.length(); i++) {
+            cells.set(i, BitBoard.EMPTY);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int stoneAt(int row, int col) {
+        return cells.get(row * size + col);
+    }
+
+    /**
+     * 网络线程调用
+     */
+    public void place(int row, int col, int color) {
+        int cell = row * size + col;
+        cells.set(cell, color);
+        lastCell = cell;
+        long bit = 1L << cell;
+        int word = cell >>> 6;
+        long current;
+        do {
+            current = dirty.get(word);
+        } while ((current & bit) == 0 && !dirty.compareAndSet(word, current, current | bit));
+    }
+
+    /**
+     * 清空棋盘，网络线程调用
+     */
+    public void clear() {
+        for (int i = 0; i < cells.length(); i++) {
+            cells.set(i, BitBoard.EMPTY);
+        }
+        lastCell = -1;
+        cleared.set(true);
+    }
+
+    /**
+     * 把变化同步到界面，只在事件分发线程上调用
+     */
+    public void drainTo(BoardView view) {
+        if (cleared.getAndSet(false)) {
+            for (int i = 0; i < dirty.length(); i++) {
+                dirty.set(i, 0);
+            }
+            view.clear();
+            for (int cell = 0; cell < cells.length(); cell++) {
+                int color = cells.get(cell);
+                if (color != BitBoard.EMPTY) {
+                    view.setStone(cell / size, cell % size, color);
+                }
+            }
+        } else {
+            for (int word = 0; word < dirty.length(); word++) {
+                long bits = dirty.get(word) == 0 ? 0 : dirty.getAndSet(word, 0);
+                while (bits != 0) {
+                    int cell = word * 64 + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    view.setStone(cell / size, cell % size, cells.get(cell));
+                }
+            }
+        }
+        int last = lastCell;
+        view.setLastMove(last < 0 ? -1 : last / size, last < 0 ? -1 : last % size);
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.ai;
+
+import org.example.board.BitBoard;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThreatSolverTest {
+    private static final int BUDGET = 10_000;
+
+    private static int cell(int row, int col) {
+        return row * BitBoard.DEFAULT_SIZE + col;
+    }
+
+    private static void place(BitBoard board, int color, int... cells) {
+        for (int i = 0; i < cells.length; i += 2) {
+            board.place(cells[i], cells[i + 1], color);
+        }
+    }
+
+    /**
+     * VCF的每一步进攻都必须冲四：下了cell之后至少有一个空格能让进攻方连五
+     */
+    private static boolean makesFour(BitBoard position, int color, int cell) {
+        BitBoard board = new BitBoard();
+        board.copyFrom(position);
+        int size = board.size();
+        if (!board.isEmpty(cell / size, cell % size) || board.place(cell / size, cell % size, color)) {
+            return false;
+        }
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (board.isEmpty(row, col)) {
+                    boolean five = board.place(row, col, color);
+                    board.remove(row, col);
+                    if (five) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void openThreeBecomesAnOpenFour() {
+        BitBoard board = new BitBoard();
+        place(board, BitBoard.BLACK, 7, 5, 7, 6, 7, 7);
+        place(board, BitBoard.WHITE, 0, 0, 14, 14);
+
+        ThreatSolver solver = new ThreatSolver(1 << 12);
+        assertEquals(ThreatSolver.WIN, solver.solve(board, BitBoard.BLACK, ThreatSolver.VCF, BUDGET));
+        assertTrue(Set.of(cell(7, 4), cell(7, 8)).contains(solver.winningMove()), "winning move " + solver.winningMove());
+    }
+
+    @Test
+    void forcingFourLeadsToADoubleFour() {
+        // 黑：第7行、第8行各有一个被白子堵住一头的三，第5列有两子；
+        // (8,5)冲四逼白挡(8,6)，再下(7,5)同时在第7行和第5列成四；局面里不止这一条冲四取胜的路线
+        BitBoard board = new BitBoard();
+        place(board, BitBoard.BLACK, 7, 2, 7, 3, 7, 4, 8, 2, 8, 3, 8, 4, 9, 5, 10, 5);
+        place(board, BitBoard.WHITE, 7, 1, 8, 1, 11, 5, 0, 0, 0, 14, 14, 0, 14, 14);
+
+        ThreatSolver solver = new ThreatSolver(1 << 14);
+        assertEquals(ThreatSolver.WIN, solver.solve(board, BitBoard.BLACK, ThreatSolver.VCF, BUDGET));
+        assertTrue(makesFour(board, BitBoard.BLACK, solver.winningMove()), "winning move " + solver.winningMove());
+    }
+
+    @Test
+    void threeBlockedOnBothEndsHasNoForcedWin() {
+        BitBoard board = new BitBoard();
+        place(board, BitBoard.BLACK, 7, 5, 7, 6, 7, 7);
+        place(board, BitBoard.WHITE, 7, 4, 7, 8);
+
+        ThreatSolver solver = new ThreatSolver(1 << 12);
+        assertEquals(ThreatSolver.NO_WIN, solver.solve(board, BitBoard.BLACK, ThreatSolver.VCF, BUDGET));
+        assertEquals(-1, solver.winningMove());
+    }
+
+    @Test
+    void defenderHasNoWinInTheSamePosition() {
+        BitBoard board = new BitBoard();
+        place(board, BitBoard.BLACK, 7, 5, 7, 6, 7, 7);
+        place(board, BitBoard.WHITE, 0, 0, 14, 14);
+
+        ThreatSolver solver = new ThreatSolver(1 << 12);
+        assertEquals(ThreatSolver.NO_WIN, solver.solve(board, BitBoard.WHITE, ThreatSolver.VCF, BUDGET));
+    }
+
+    @Test
+    void solverIsReusableAcrossPositions() {
+        ThreatSolver solver = new ThreatSolver(1 << 12);
+        BitBoard blocked = new BitBoard();
+        place(blocked, BitBoard.BLACK, 7, 5, 7, 6, 7, 7);
+        place(blocked, BitBoard.WHITE, 7, 4, 7, 8);
+        BitBoard open = new BitBoard();
+        place(open, BitBoard.BLACK, 7, 5, 7, 6, 7, 7);
+
+        for (int round = 0; round < 3; round++) {
+            assertEquals(ThreatSolver.NO_WIN, solver.solve(blocked, BitBoard.BLACK, ThreatSolver.VCF, BUDGET));
+            assertEquals(ThreatSolver.WIN, solver.solve(open, BitBoard.BLACK, ThreatSolver.VCF, BUDGET));
+        }
+    }
+}
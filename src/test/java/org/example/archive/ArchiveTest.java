@@ -0,0 +1,109 @@
+package org.example.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveTest {
+    @TempDir
+    Path dir;
+
+    /**
+     * 着法是打乱的格子编号的前若干个，不重复；长度从1到下满整盘
+     */
+    static List<GameRecord> randomGames(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<GameRecord> games = new ArrayList<>();
+        byte[] cells = new byte[GameRecord.MAX_MOVES];
+        for (int i = 0; i < count; i++) {
+            for (int cell = 0; cell < cells.length; cell++) {
+                cells[cell] = (byte) cell;
+            }
+            int moves = i == 0 ? GameRecord.MAX_MOVES : 1 + random.nextInt(GameRecord.MAX_MOVES);
+            for (int j = 0; j < moves; j++) {
+                int k = j + random.nextInt(cells.length - j);
+                byte swap = cells[j];
+                cells[j] = cells[k];
+                cells[k] = swap;
+            }
+            games.add(new GameRecord("black" + i, i % 3 == 0 ? "" : "white" + i, i % 4, 1_700_000_000_000L + i,
+                    1_700_000_060_000L + i, cells, moves));
+        }
+        return games;
+    }
+
+    private static String describe(GameRecord game) {
+        StringBuilder text = new StringBuilder(game.black() + "/" + game.white() + "/" + game.result() + "/"
+                + game.startMillis() + "/" + game.endMillis() + "/");
+        for (int i = 0; i < game.moveCount(); i++) {
+            text.append(game.cell(i)).append(',');
+        }
+        return text.toString();
+    }
+
+    private static List<String> describe(List<GameRecord> games) {
+        return games.stream().map(ArchiveTest::describe).collect(Collectors.toList());
+    }
+
+    private static List<GameRecord> readAll(Path path) throws IOException {
+        try (ArchiveReader reader = ArchiveReader.open(path)) {
+            return reader.stream().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void roundTripAcrossSeveralBlocks() throws IOException {
+        Path path = dir.resolve("games.arc");
+        List<GameRecord> games = randomGames(1500, 1);
+        try (ArchiveWriter writer = new ArchiveWriter(path)) {
+            for (GameRecord game : games) {
+                writer.write(game);
+            }
+        }
+        try (ArchiveReader reader = ArchiveReader.open(path)) {
+            assertTrue(reader.blockCount() > 1);
+            assertEquals(games.size(), reader.gameCount());
+            assertEquals(describe(games), describe(reader.stream().collect(Collectors.toList())));
+            // 并行读取得到同样的棋局，顺序不保证
+            List<String> parallel = describe(reader.parallelStream().collect(Collectors.toList()));
+            parallel.sort(null);
+            List<String> expected = describe(games);
+            expected.sort(null);
+            assertEquals(expected, parallel);
+        }
+    }
+
+    @Test
+    void appendsAfterATruncatedBlock() throws IOException {
+        Path path = dir.resolve("games.arc");
+        List<GameRecord> first = randomGames(50, 2);
+        List<GameRecord> second = randomGames(50, 3);
+        try (ArchiveWriter writer = new ArchiveWriter(path)) {
+            for (GameRecord game : first) {
+                writer.write(game);
+            }
+        }
+        // 崩溃时写了一半的块：块头说有很多数据，实际只有几个字节
+        Files.write(path, new byte[]{0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 0, 9, 1, 2, 3}, StandardOpenOption.APPEND);
+        assertEquals(describe(first), describe(readAll(path)));
+        try (ArchiveWriter writer = new ArchiveWriter(path)) {
+            for (GameRecord game : second) {
+                writer.write(game);
+            }
+        }
+        List<GameRecord> all = new ArrayList<>(first);
+        all.addAll(second);
+        assertEquals(describe(all), describe(readAll(path)));
+    }
+}
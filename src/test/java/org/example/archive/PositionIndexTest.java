@@ -0,0 +1,114 @@
+package org.example.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PositionIndexTest {
+    @TempDir
+    Path dir;
+
+    private static int[] cells(GameRecord game) {
+        int[] cells = new int[game.moveCount()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = game.cell(i);
+        }
+        return cells;
+    }
+
+    private static List<Long> hits(PositionIndex index, int[] cells, int count) {
+        List<Long> hits = new ArrayList<>();
+        index.query(cells, count, (gameId, ply) -> hits.add((long) gameId << 32 | ply));
+        return hits;
+    }
+
+    /**
+     * 每盘棋的每个局面都能查到，并且同一条目只出现一次
+     */
+    private static void assertIndexed(PositionIndex index, List<GameRecord> games) {
+        for (int gameId = 0; gameId < games.size(); gameId++) {
+            int[] cells = cells(games.get(gameId));
+            for (int ply = 1; ply <= cells.length; ply += 7) {
+                List<Long> hits = hits(index, cells, ply);
+                long expected = (long) gameId << 32 | ply;
+                assertEquals(1, hits.stream().filter(hit -> hit == expected).count(), "game " + gameId + " ply " + ply);
+            }
+        }
+    }
+
+    private static void awaitSegments(PositionIndex index, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (index.segmentCount() != count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, index.segmentCount());
+    }
+
+    /**
+     * 16个第0层的段合并成4个第1层，再合并成1个第2层；合并前后和重新打开后都能查到所有棋局
+     */
+    @Test
+    void mergesSegmentsWithoutLosingEntries() throws IOException, InterruptedException {
+        int segments = PositionIndex.FAN_IN * PositionIndex.FAN_IN;
+        List<GameRecord> games = ArchiveTest.randomGames(segments * 3, 4);
+        try (PositionIndex index = PositionIndex.open(dir)) {
+            for (int gameId = 0; gameId < games.size(); gameId++) {
+                index.add(gameId, games.get(gameId));
+                if (gameId % 3 == 2) {
+                    index.flush();
+                }
+            }
+            awaitSegments(index, 1);
+            assertEquals(games.size(), index.gameLimit());
+            assertIndexed(index, games);
+        }
+        try (PositionIndex index = PositionIndex.open(dir)) {
+            assertEquals(1, index.segmentCount());
+            assertEquals(games.size(), index.gameLimit());
+            assertIndexed(index, games);
+        }
+    }
+
+    @Test
+    void symmetricPositionsShareAnEntry() throws IOException {
+        // 天元开局后黑白各一步，和它旋转90度后的局面
+        int center = 7 * 15 + 7;
+        byte[] moves = {(byte) center, (byte) (6 * 15 + 8), (byte) (8 * 15 + 8)};
+        try (PositionIndex index = PositionIndex.open(dir)) {
+            index.add(0, new GameRecord("a", "b", GameRecord.UNFINISHED, 0, 0, moves, moves.length));
+            int[] rotated = {center, 8 * 15 + 8, 8 * 15 + 6};
+            assertEquals(List.of(3L), hits(index, rotated, 3));
+        }
+    }
+
+    @Test
+    void catchUpIndexesGamesMissingFromTheIndex() throws IOException {
+        Path archive = dir.resolve("games.arc");
+        List<GameRecord> games = ArchiveTest.randomGames(40, 5);
+        try (ArchiveWriter writer = new ArchiveWriter(archive)) {
+            for (GameRecord game : games) {
+                writer.write(game);
+            }
+        }
+        Path indexDir = dir.resolve("index");
+        try (PositionIndex index = PositionIndex.open(indexDir); ArchiveReader reader = ArchiveReader.open(archive)) {
+            for (int gameId = 0; gameId < 10; gameId++) {
+                index.add(gameId, games.get(gameId));
+            }
+            index.flush();
+            assertEquals(30, index.catchUp(reader));
+            assertIndexed(index, games);
+        }
+        try (PositionIndex index = PositionIndex.open(indexDir); ArchiveReader reader = ArchiveReader.open(archive)) {
+            assertTrue(index.gameLimit() >= games.size());
+            assertEquals(0, index.catchUp(reader));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.board;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BitBoardTest {
+    // 四个方向的步长：横、竖、主对角线、副对角线
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    @Test
+    void fiveInEachDirectionWins() {
+        for (int[] d : DIRECTIONS) {
+            BitBoard board = new BitBoard();
+            int row = 5;
+            int col = 5;
+            for (int i = 0; i < 4; i++) {
+                assertFalse(board.place(row + i * d[0], col + i * d[1], BitBoard.BLACK));
+            }
+            assertTrue(board.place(row + 4 * d[0], col + 4 * d[1], BitBoard.BLACK));
+        }
+    }
+
+    @Test
+    void fillingTheGapWins() {
+        BitBoard board = new BitBoard();
+        board.place(7, 3, BitBoard.WHITE);
+        board.place(7, 4, BitBoard.WHITE);
+        board.place(7, 6, BitBoard.WHITE);
+        board.place(7, 7, BitBoard.WHITE);
+        assertTrue(board.place(7, 5, BitBoard.WHITE));
+    }
+
+    @Test
+    void opponentStoneBreaksTheLine() {
+        BitBoard board = new BitBoard();
+        board.place(7, 3, BitBoard.BLACK);
+        board.place(7, 4, BitBoard.BLACK);
+        board.place(7, 5, BitBoard.WHITE);
+        board.place(7, 6, BitBoard.BLACK);
+        board.place(7, 7, BitBoard.BLACK);
+        assertFalse(board.place(7, 8, BitBoard.BLACK));
+        assertFalse(board.isFive(7, 4, BitBoard.BLACK));
+    }
+
+    @Test
+    void rowsDoNotWrapAround() {
+        BitBoard board = new BitBoard();
+        board.place(0, 12, BitBoard.BLACK);
+        board.place(0, 13, BitBoard.BLACK);
+        board.place(0, 14, BitBoard.BLACK);
+        board.place(1, 0, BitBoard.BLACK);
+        assertFalse(board.place(1, 1, BitBoard.BLACK));
+    }
+
+    @Test
+    void winsAlongTheEdgesOfLargeBoards() {
+        for (int size : new int[]{15, 19, BitBoard.MAX_SIZE}) {
+            int last = size - 1;
+            BitBoard board = new BitBoard(size);
+            for (int i = 0; i < 4; i++) {
+                board.place(last, last - i, BitBoard.BLACK);
+                board.place(i, last - i, BitBoard.WHITE);
+            }
+            assertTrue(board.place(last, last - 4, BitBoard.BLACK), "size " + size);
+            assertTrue(board.place(4, last - 4, BitBoard.WHITE), "size " + size);
+        }
+    }
+
+    @Test
+    void removeRestoresTheBoard() {
+        BitBoard board = new BitBoard();
+        int score = board.score(BitBoard.BLACK);
+        board.place(7, 7, BitBoard.BLACK);
+        board.place(7, 8, BitBoard.WHITE);
+        board.remove(7, 8);
+        board.remove(7, 7);
+        assertTrue(board.isEmpty(7, 7));
+        assertTrue(board.isEmpty(7, 8));
+        assertEquals(0, board.moveCount());
+        assertEquals(score, board.score(BitBoard.BLACK));
+    }
+
+    @Test
+    void placingOnAnOccupiedCellFails() {
+        BitBoard board = new BitBoard();
+        board.place(7, 7, BitBoard.BLACK);
+        assertThrows(IllegalStateException.class, () -> board.place(7, 7, BitBoard.WHITE));
+    }
+
+    /**
+     * 随机对局，每一步和逐格数连子的朴素判断比较
+     */
+    @Test
+    void matchesNaiveWinCheckInRandomGames() {
+        SplittableRandom random = new SplittableRandom(20240601L);
+        for (int game = 0; game < 200; game++) {
+            int size = game % 2 == 0 ? BitBoard.DEFAULT_SIZE : 19;
+            BitBoard board = new BitBoard(size);
+            int[][] cells = new int[size][size];
+            int color = BitBoard.BLACK;
+            while (!board.isFull()) {
+                int row = random.nextInt(size);
+                int col = random.nextInt(size);
+                if (!board.isEmpty(row, col)) {
+                    continue;
+                }
+                cells[row][col] = color + 1;
+                boolean expected = naiveFive(cells, row, col);
+                assertEquals(expected, board.place(row, col, color), "game " + game + " at " + row + "," + col);
+                if (expected) {
+                    break;
+                }
+                color = BitBoard.opponent(color);
+            }
+        }
+    }
+
+    private static boolean naiveFive(int[][] cells, int row, int col) {
+        int size = cells.length;
+        int stone = cells[row][col];
+        for (int[] d : DIRECTIONS) {
+            int count = 1;
+            for (int sign = -1; sign <= 1; sign += 2) {
+                int r = row + sign * d[0];
+                int c = col + sign * d[1];
+                while (r >= 0 && r < size && c >= 0 && c < size && cells[r][c] == stone) {
+                    count++;
+                    r += sign * d[0];
+                    c += sign * d[1];
+                }
+            }
+            if (count >= 5) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
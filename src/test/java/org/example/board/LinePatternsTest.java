@@ -0,0 +1,92 @@
+package org.example.board;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LinePatternsTest {
+
+    /**
+     * 由9个字符的窗口得到编码：x己方，o对方，#出界，.空格；第5个字符是中心
+     */
+    private static int index(String window) {
+        long own = 0;
+        long other = 0;
+        long wall = 0;
+        for (int i = 0; i < LinePatterns.WINDOW; i++) {
+            char c = window.charAt(i);
+            if (c == 'x') {
+                own |= 1L << i;
+            } else if (c == 'o') {
+                other |= 1L << i;
+            } else if (c == '#') {
+                wall |= 1L << i;
+            }
+        }
+        return LinePatterns.index(own, other, wall, LinePatterns.CENTER);
+    }
+
+    private static int shape(String window) {
+        return LinePatterns.shape(index(window));
+    }
+
+    @Test
+    void classifiesShapes() {
+        assertEquals(LinePatterns.FIVE, shape("..xxxxx.."));
+        assertEquals(LinePatterns.FIVE, shape("xxxxx...."));
+        assertEquals(LinePatterns.OPEN_FOUR, shape("...xxxx.."));
+        assertEquals(LinePatterns.FOUR, shape("..oxxxx.."));
+        assertEquals(LinePatterns.FOUR, shape("#xxxx...."));
+        assertEquals(LinePatterns.FOUR, shape("xx.xx...."));
+        assertEquals(LinePatterns.OPEN_THREE, shape("...xxx..."));
+        assertEquals(LinePatterns.OPEN_THREE, shape("..x.xx..."));
+        assertEquals(LinePatterns.THREE, shape("..oxxx..."));
+        assertEquals(LinePatterns.TWO, shape("...xx...."));
+        assertEquals(LinePatterns.NONE, shape("....x...."));
+        assertEquals(LinePatterns.NONE, shape("ooo.x.ooo"));
+    }
+
+    @Test
+    void emptyCenterIsTreatedAsOwnStone() {
+        assertEquals(LinePatterns.FIVE, shape("..xx.xx.."));
+        assertTrue(LinePatterns.isFive(index("xxxx.....")));
+        assertFalse(LinePatterns.isFive(index("xxx......")));
+    }
+
+    @Test
+    void wallsLimitTheLine() {
+        assertEquals(LinePatterns.NONE, shape("###xxx.##"));
+        assertEquals(LinePatterns.THREE, shape("##.xxx.##"));
+    }
+
+    @Test
+    void indexHandlesLineStartAndLongBoundary() {
+        // pos小于CENTER时线的起点之前算出界
+        long own = 0b1111;
+        assertEquals(LinePatterns.FIVE, LinePatterns.shape(LinePatterns.index(own, 0, 0, 4)));
+        assertEquals(LinePatterns.FOUR, LinePatterns.shape(LinePatterns.index(own, 0, 0, 0)));
+        // 超过long的位数也算出界
+        long high = 0b1111L << 60;
+        assertEquals(LinePatterns.FOUR, LinePatterns.shape(LinePatterns.index(high, 0, 0, 63)));
+    }
+
+    /**
+     * 双方对调后分值取反
+     */
+    @Test
+    void scoreIsAntisymmetric() {
+        int plane = (1 << LinePatterns.WINDOW) - 1;
+        for (int own = 0; own <= plane; own += 3) {
+            for (int other = 0; other <= plane; other += 7) {
+                if ((own & other) != 0) {
+                    continue;
+                }
+                int index = own | other << LinePatterns.WINDOW;
+                int swapped = other | own << LinePatterns.WINDOW;
+                assertEquals(-LinePatterns.score(index), LinePatterns.score(swapped));
+            }
+        }
+    }
+}
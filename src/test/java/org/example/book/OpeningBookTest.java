@@ -0,0 +1,82 @@
+package org.example.book;
+
+import org.example.ai.Zobrist;
+import org.example.board.BitBoard;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OpeningBookTest {
+    private static final int SIZE = BitBoard.DEFAULT_SIZE;
+    private static final Zobrist ZOBRIST = Zobrist.forSize(SIZE);
+
+    @TempDir
+    Path dir;
+
+    private static int cell(int row, int col) {
+        return row * SIZE + col;
+    }
+
+    private OpeningBook build(int minCount, String... games) throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(SIZE, 12);
+        for (String game : games) {
+            builder.addGame(game);
+        }
+        Path path = dir.resolve("book.bin");
+        builder.write(path, minCount);
+        return OpeningBook.open(path);
+    }
+
+    @Test
+    void mostFrequentReplyIsTheBestMove() throws IOException {
+        OpeningBook book = build(1, "7,7 7,8", "7,7 7,8", "# 注释", "7,7 6,6");
+        assertEquals(3, book.entryCount());
+        assertEquals(cell(7, 7), book.bestMove(0));
+
+        long afterCenter = ZOBRIST.key(BitBoard.BLACK, cell(7, 7));
+        assertEquals(cell(7, 8), book.bestMove(afterCenter));
+        assertEquals(-1, book.bestMove(afterCenter ^ ZOBRIST.key(BitBoard.WHITE, cell(0, 0))));
+    }
+
+    @Test
+    void winnersMovesWeighMore() throws IOException {
+        // 黑方在第7行连五获胜，中心这步权重3，另外两盘的(6,6)合计只有2
+        OpeningBook book = build(1, "7,7 0,0 7,8 0,1 7,9 0,2 7,10 0,3 7,11", "6,6 0,0", "6,6 0,1");
+        assertEquals(cell(7, 7), book.bestMove(0));
+        int first = book.find(0);
+        assertEquals(3, book.weightAt(first));
+        assertEquals(2, book.weightAt(first + 1));
+    }
+
+    @Test
+    void pickMoveFollowsTheWeights() throws IOException {
+        OpeningBook book = build(1, "7,7", "7,7", "6,6");
+        // 权重2和1：随机数对3取模为0、1时选(7,7)，为2时选(6,6)
+        assertEquals(cell(7, 7), book.pickMove(0, 0));
+        assertEquals(cell(7, 7), book.pickMove(0, 1));
+        assertEquals(cell(6, 6), book.pickMove(0, 2));
+        assertEquals(cell(7, 7), book.pickMove(0, -3));
+        assertEquals(-1, book.pickMove(12345, 0));
+    }
+
+    @Test
+    void rareMovesAndIllegalGamesAreLeftOut() throws IOException {
+        OpeningBook book = build(2, "7,7 7,8", "7,7 6,6", "7,7 7,7", "7,7 bad");
+        assertEquals(1, book.entryCount());
+        assertEquals(cell(7, 7), book.bestMove(0));
+        assertEquals(-1, book.bestMove(ZOBRIST.key(BitBoard.BLACK, cell(7, 7))));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotBooks() throws IOException {
+        Path path = dir.resolve("not-a-book.bin");
+        Files.write(path, new byte[32]);
+        assertThrows(IOException.class, () -> OpeningBook.open(path));
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoveJournalTest {
+    @TempDir
+    Path dir;
+
+    private Path segment() {
+        return dir.resolve("journal-00000000.log");
+    }
+
+    /**
+     * 写一盘走了三步的棋和一盘已经结束的棋
+     */
+    private long writeGames() throws IOException {
+        try (MoveJournal journal = MoveJournal.open(dir)) {
+            long live = journal.newGame("room-a");
+            long finished = journal.newGame("room-b");
+            journal.move(live, 0, 112, 0);
+            journal.move(finished, 0, 0, 0);
+            journal.move(live, 1, 113, 1);
+            journal.move(live, 2, 127, 0);
+            journal.end(finished);
+            return live;
+        }
+    }
+
+    private static void assertMoves(MoveJournal.RecoveredGame game, int... cells) {
+        assertEquals(cells.length, game.moveCount());
+        for (int seq = 0; seq < cells.length; seq++) {
+            assertEquals(cells[seq], game.cell(seq));
+        }
+    }
+
+    @Test
+    void recoversOnlyUnfinishedGames() throws IOException {
+        long live = writeGames();
+        try (MoveJournal journal = MoveJournal.open(dir)) {
+            List<MoveJournal.RecoveredGame> games = journal.recoveredGames();
+            assertEquals(1, games.size());
+            assertEquals(live, games.get(0).gameId());
+            assertEquals("room-a", games.get(0).room());
+            assertMoves(games.get(0), 112, 113, 127);
+            // 新棋局的编号接着已有的往后排
+            assertTrue(journal.newGame("room-c") > live + 1);
+        }
+    }
+
+    @Test
+    void longRoomNamesSpanSeveralRecords() throws IOException {
+        String room = "r".repeat(100) + "-end";
+        try (MoveJournal journal = MoveJournal.open(dir)) {
+            journal.move(journal.newGame(room), 0, 7, 0);
+        }
+        try (MoveJournal journal = MoveJournal.open(dir)) {
+            assertEquals(room, journal.recoveredGames().get(0).room());
+        }
+    }
+
+    @Test
+    void truncatesAHalfWrittenRecord() throws IOException {
+        writeGames();
+        long size = Files.size(segment());
+        Files.write(segment(), new byte[MoveJournal.RECORD_LENGTH / 2], StandardOpenOption.APPEND);
+        try (MoveJournal journal = MoveJournal.open(dir)) {
+            assertMoves(journal.recoveredGames().get(0), 112, 113, 127);
+        }
+        assertEquals(size, Files.size(segment()));
+    }
+
+    @Test
+    void stopsAtACorruptRecord() throws IOException {
+        writeGames();
+        // 记录依次为 OPEN a、OPEN b、MOVE a、MOVE b、MOVE a、MOVE a、END b，改坏第二步（第5条）的格子编号
+        try (FileChannel channel = FileChannel.open(segment(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0x7F}), 4L * MoveJournal.RECORD_LENGTH + 2);
+        }
+        try (MoveJournal journal = MoveJournal.open(dir)) {
+            // CRC不对的记录和它之后的都被丢弃，b的END也在其中，所以两盘都要恢复
+            List<MoveJournal.RecoveredGame> games = journal.recoveredGames();
+            assertEquals(2, games.size());
+            assertMoves(games.get(0), 112);
+            assertMoves(games.get(1), 0);
+        }
+        assertEquals(4L * MoveJournal.RECORD_LENGTH, Files.size(segment()));
+    }
+
+    @Test
+    void appendsAfterRecovery() throws IOException {
+        long live = writeGames();
+        Files.write(segment(), new byte[10], StandardOpenOption.APPEND);
+        try (MoveJournal journal = MoveJournal.open(dir)) {
+            journal.move(live, 3, 141, 1);
+        }
+        try (MoveJournal journal = MoveJournal.open(dir)) {
+            assertMoves(journal.recoveredGames().get(0), 112, 113, 127, 141);
+        }
+    }
+}
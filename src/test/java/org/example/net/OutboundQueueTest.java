@@ -0,0 +1,94 @@
+package org.example.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundQueueTest {
+
+    private static ByteBuffer frame(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+    }
+
+    private static String drain(OutboundQueue queue, int capacity) {
+        ByteBuffer dst = ByteBuffer.allocate(capacity);
+        int n = queue.drainTo(dst);
+        return new String(dst.array(), 0, n, StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void rejectsFramesBeyondTheLimit() {
+        OutboundQueue queue = new OutboundQueue(10);
+        assertTrue(queue.offer(frame("move,7,7\n")));
+        assertFalse(queue.offer(frame("move,8,8\n")));
+        assertEquals(9, queue.pendingBytes());
+
+        // 发出之后积压减少，又能入队
+        assertEquals("move,7,7\n", drain(queue, 64));
+        assertTrue(queue.isEmpty());
+        assertTrue(queue.offer(frame("move,8,8\n")));
+    }
+
+    @Test
+    void drainMergesFramesWithoutMovingSharedBuffers() {
+        OutboundQueue queue = new OutboundQueue(1024);
+        ByteBuffer shared = frame("abcd");
+        assertTrue(queue.offer(shared));
+        assertTrue(queue.offer(frame("ef")));
+
+        assertEquals("abc", drain(queue, 3));
+        assertEquals("def", drain(queue, 64));
+        // 同一个帧被所有接收者共享，发送不能改它的position和limit
+        assertEquals(0, shared.position());
+        assertEquals(4, shared.limit());
+    }
+
+    @Test
+    void replaceKeepsThePartlyWrittenHead() {
+        OutboundQueue queue = new OutboundQueue(1024);
+        queue.offer(frame("abcd"));
+        queue.offer(frame("efgh"));
+        queue.offer(frame("ijkl"));
+        assertEquals("ab", drain(queue, 2));
+
+        assertTrue(queue.replace(frame("XY")));
+        assertEquals(4, queue.pendingBytes());
+        assertEquals("cdXY", drain(queue, 64));
+    }
+
+    @Test
+    void replaceOnAnUntouchedQueueDropsEverything() {
+        OutboundQueue queue = new OutboundQueue(1024);
+        queue.offer(frame("abcd"));
+        queue.offer(frame("efgh"));
+
+        assertTrue(queue.replace(frame("XY")));
+        assertEquals("XY", drain(queue, 64));
+    }
+
+    @Test
+    void closeWakesABlockedTakeAndRejectsNewFrames() throws Exception {
+        OutboundQueue queue = new OutboundQueue(1024);
+        CompletableFuture<Integer> taken = CompletableFuture.supplyAsync(() -> {
+            try {
+                return queue.take(ByteBuffer.allocate(16));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(taken.isDone());
+
+        queue.close();
+        assertEquals(-1, taken.get(1, TimeUnit.SECONDS));
+        assertFalse(queue.offer(frame("late")));
+        assertFalse(queue.replace(frame("late")));
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.net;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+    // 槽数很少，几十毫秒的定时器就要转好几圈
+    private final TimerWheel timers = new TimerWheel("test-timer", 5, 8);
+
+    @AfterEach
+    void close() {
+        timers.close();
+    }
+
+    @Test
+    void firesNoEarlierThanTheDelay() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        long[] firedAt = new long[1];
+        long start = System.nanoTime();
+        timers.schedule(() -> {
+            firedAt[0] = System.nanoTime();
+            fired.countDown();
+        }, 50);
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(firedAt[0] - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(0, timers.pending());
+    }
+
+    @Test
+    void cancelledTimerNeverRuns() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        TimerWheel.Timeout timeout = timers.schedule(runs::incrementAndGet, 20);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        // 时间轮线程按顺序处理，后面的定时器到期时前面的早已过期
+        CountDownLatch later = new CountDownLatch(1);
+        timers.schedule(later::countDown, 100);
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void expiredTimerCannotBeCancelled() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        TimerWheel.Timeout timeout = timers.schedule(fired::countDown, 0);
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+    }
+
+    /**
+     * 几百个随机的定时器，有的要转很多圈，有的中途取消：没取消的都按时到期，一个也不提前
+     */
+    @Test
+    void manyTimersAcrossSeveralRounds() throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(42);
+        int count = 500;
+        CountDownLatch done = new CountDownLatch(count);
+        AtomicInteger early = new AtomicInteger();
+        AtomicInteger cancelledRuns = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            long delay = random.nextInt(300);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            if (i % 5 == 0) {
+                timers.schedule(cancelledRuns::incrementAndGet, delay + 100).cancel();
+            }
+            timers.schedule(() -> {
+                if (System.nanoTime() < deadline) {
+                    early.incrementAndGet();
+                }
+                done.countDown();
+            }, delay);
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+        // 被取消的定时器最迟在400毫秒时到期，再等一会儿确认它们没有运行
+        CountDownLatch later = new CountDownLatch(1);
+        timers.schedule(later::countDown, 500);
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertEquals(0, cancelledRuns.get());
+        assertEquals(0, timers.pending());
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.protocol;
+
+import org.example.board.BitBoard;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BinaryCodecTest {
+
+    private static ByteBuffer concat(ByteBuffer... frames) {
+        ByteBuffer out = ByteBuffer.allocate(4096);
+        for (ByteBuffer frame : frames) {
+            out.put(frame.duplicate());
+        }
+        out.flip();
+        return out;
+    }
+
+    private static ByteBuffer encoded(Frame frame) {
+        return frame.encoded(Frame.BINARY);
+    }
+
+    @Test
+    void serverFramesRoundTrip() {
+        byte[] cells = {(byte) 112, (byte) 224};
+        ByteBuffer in = concat(
+                encoded(Frame.move(3, 7, 8)),
+                encoded(Frame.move(4, 14, 0, 59_000, 3, 30_000, 0)),
+                encoded(Frame.win(9, BitBoard.WHITE)),
+                encoded(Frame.decided(6, BitBoard.BLACK)),
+                encoded(Frame.snapshot(cells, cells.length)),
+                encoded(Frame.matched(BitBoard.BLACK, "m7")),
+                encoded(Frame.error(ErrorCode.NOT_YOUR_TURN)),
+                encoded(Frame.session(0xFEDCBA9876543210L)),
+                encoded(Frame.PING),
+                encoded(Frame.PONG));
+        RecordingSink sink = new RecordingSink();
+        assertEquals(10, BinaryCodec.decode(in, sink));
+        assertEquals(List.of("move 3 7 8", "move 4 14 0", "clock 59000 3 30000 0", "win 9 1", "decided 6 0",
+                "snapshot 1 [112, 224]", "matched 0 m7", "error 2", "session fedcba9876543210", "ping", "pong"), sink.events);
+        assertEquals(in.limit(), in.position());
+    }
+
+    @Test
+    void clientFramesRoundTrip() {
+        ByteBuffer out = ByteBuffer.allocate(256);
+        BinaryCodec.encodeJoin(out, "room 1");
+        BinaryCodec.encodeWatch(out, "lobby");
+        BinaryCodec.encodeAi(out, 4);
+        BinaryCodec.encodeQueue(out, 1500);
+        BinaryCodec.encodeUnqueue(out);
+        BinaryCodec.encodeResume(out, 0x0123456789ABCDEFL, -1);
+        BinaryCodec.encodeMove(out, -1, 0, 14);
+        out.flip();
+        RecordingSink sink = new RecordingSink();
+        assertEquals(7, BinaryCodec.decode(out, sink));
+        assertEquals(List.of("join room 1", "watch lobby", "ai 4", "queue 1500", "unqueue",
+                "resume 123456789abcdef -1", "move -1 0 14"), sink.events);
+    }
+
+    /**
+     * 一个字节一个字节地到达时，只有收齐的帧才被解码，剩下的留在缓冲区
+     */
+    @Test
+    void partialFramesStayInTheBuffer() {
+        byte[] cells = {1, 2, 3};
+        ByteBuffer all = concat(encoded(Frame.snapshot(cells, cells.length)), encoded(Frame.move(0, 1, 2)),
+                encoded(Frame.matched(BitBoard.WHITE, "abc")));
+        ByteBuffer in = ByteBuffer.allocate(all.remaining());
+        RecordingSink sink = new RecordingSink();
+        int frames = 0;
+        while (all.hasRemaining()) {
+            in.put(all.get());
+            in.flip();
+            frames += BinaryCodec.decode(in, sink);
+            in.compact();
+        }
+        assertEquals(3, frames);
+        assertEquals(0, in.position());
+        assertEquals(List.of("snapshot 2 [1, 2, 3]", "move 0 1 2", "matched 1 abc"), sink.events);
+    }
+
+    @Test
+    void unknownTypeIsAnError() {
+        ByteBuffer in = ByteBuffer.wrap(new byte[]{BinaryCodec.TYPE_PING, 99, BinaryCodec.TYPE_PONG});
+        RecordingSink sink = new RecordingSink();
+        assertEquals(-1, BinaryCodec.decode(in, sink));
+        assertEquals(List.of("ping"), sink.events);
+    }
+}
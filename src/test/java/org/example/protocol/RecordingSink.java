@@ -0,0 +1,97 @@
+package org.example.protocol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 把每次回调记成一行文字，方便比较解码结果
+ */
+class RecordingSink implements MessageSink {
+    final List<String> events = new ArrayList<>();
+
+    @Override
+    public void onMove(int seq, int row, int col) {
+        events.add("move " + seq + " " + row + " " + col);
+    }
+
+    @Override
+    public void onClock(int blackMillis, int blackPeriods, int whiteMillis, int whitePeriods) {
+        events.add("clock " + blackMillis + " " + blackPeriods + " " + whiteMillis + " " + whitePeriods);
+    }
+
+    @Override
+    public void onWin(int seq, int color) {
+        events.add("win " + seq + " " + color);
+    }
+
+    @Override
+    public void onDecided(int seq, int color) {
+        events.add("decided " + seq + " " + color);
+    }
+
+    @Override
+    public void onError(int code) {
+        events.add("error " + code);
+    }
+
+    @Override
+    public void onJoin(String room) {
+        events.add("join " + room);
+    }
+
+    @Override
+    public void onWatch(String room) {
+        events.add("watch " + room);
+    }
+
+    @Override
+    public void onQueue(int rating) {
+        events.add("queue " + rating);
+    }
+
+    @Override
+    public void onUnqueue() {
+        events.add("unqueue");
+    }
+
+    @Override
+    public void onMatched(int color, String room) {
+        events.add("matched " + color + " " + room);
+    }
+
+    @Override
+    public void onSnapshot(int seq, int[] cells, int count) {
+        events.add("snapshot " + seq + " " + Arrays.toString(Arrays.copyOf(cells, count)));
+    }
+
+    @Override
+    public void onHello() {
+        events.add("hello");
+    }
+
+    @Override
+    public void onPing() {
+        events.add("ping");
+    }
+
+    @Override
+    public void onPong() {
+        events.add("pong");
+    }
+
+    @Override
+    public void onSession(long token) {
+        events.add("session " + Long.toHexString(token));
+    }
+
+    @Override
+    public void onResume(long token, int lastSeq) {
+        events.add("resume " + Long.toHexString(token) + " " + lastSeq);
+    }
+
+    @Override
+    public void onAi(int threads) {
+        events.add("ai " + threads);
+    }
+}
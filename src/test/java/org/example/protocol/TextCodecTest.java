@@ -0,0 +1,121 @@
+package org.example.protocol;
+
+import org.example.board.BitBoard;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextCodecTest {
+
+    /**
+     * 编码结果去掉末尾的换行
+     */
+    private static String line(ByteBuffer encoded) {
+        ByteBuffer copy = encoded.duplicate();
+        byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        String text = new String(bytes, StandardCharsets.US_ASCII);
+        assertTrue(text.endsWith("\n"), text);
+        return text.substring(0, text.length() - 1);
+    }
+
+    private static List<String> decode(String line) {
+        RecordingSink sink = new RecordingSink();
+        assertTrue(TextCodec.decode(line, sink), line);
+        return sink.events;
+    }
+
+    @Test
+    void legacyClientsGetThreeFieldMoves() {
+        Frame frame = Frame.move(3, 7, 8);
+        assertEquals("move,7,8", line(frame.encoded(Frame.LEGACY_TEXT)));
+        assertEquals("move,7,8,3", line(frame.encoded(Frame.TEXT)));
+        assertEquals(List.of("move -1 7 8"), decode("move,7,8"));
+        assertEquals(List.of("move 3 7 8"), decode("move,7,8,3"));
+    }
+
+    @Test
+    void clockedMoveRoundTrip() {
+        Frame frame = Frame.move(12, 0, 14, 59_000, 3, 30_000, 0);
+        assertEquals("move,0,14", line(frame.encoded(Frame.LEGACY_TEXT)));
+        assertEquals(List.of("move 12 0 14", "clock 59000 3 30000 0"), decode(line(frame.encoded(Frame.TEXT))));
+    }
+
+    @Test
+    void otherFramesShareOneTextEncoding() {
+        Frame win = Frame.win(8, BitBoard.WHITE);
+        assertEquals("win,X", line(win.encoded(Frame.TEXT)));
+        assertEquals(line(win.encoded(Frame.TEXT)), line(win.encoded(Frame.LEGACY_TEXT)));
+        assertEquals(List.of("win -1 1"), decode("win,X"));
+        assertEquals(List.of("decided -1 0"), decode(line(Frame.decided(5, BitBoard.BLACK).encoded(Frame.TEXT))));
+        assertEquals(List.of("error 3"), decode(line(Frame.error(ErrorCode.OCCUPIED).encoded(Frame.TEXT))));
+        assertEquals(List.of("matched 1 m42"), decode(line(Frame.matched(BitBoard.WHITE, "m42").encoded(Frame.TEXT))));
+        assertEquals(List.of("ping"), decode(line(Frame.PING.encoded(Frame.TEXT))));
+        assertEquals(List.of("pong"), decode(line(Frame.PONG.encoded(Frame.TEXT))));
+    }
+
+    @Test
+    void sessionAndResumeTokens() {
+        long token = 0xFEDCBA9876543210L;
+        String session = line(Frame.session(token).encoded(Frame.TEXT));
+        assertEquals("session,fedcba9876543210", session);
+        assertEquals(List.of("session fedcba9876543210"), decode(session));
+        assertEquals(List.of("resume fedcba9876543210 41"), decode("resume,fedcba9876543210,41"));
+        assertEquals(List.of("resume 123456789abcdef -1"), decode("resume,0123456789abcdef,-1"));
+    }
+
+    @Test
+    void snapshotRoundTrip() {
+        byte[] cells = {(byte) 112, (byte) 113, (byte) 224, 0};
+        Frame frame = Frame.snapshot(cells, cells.length);
+        assertEquals("snapshot,112,113,224,0", line(frame.encoded(Frame.TEXT)));
+        assertEquals(List.of("snapshot 3 [112, 113, 224, 0]"), decode(line(frame.encoded(Frame.TEXT))));
+        assertEquals(List.of("snapshot -1 []"), decode(line(Frame.snapshot(cells, 0).encoded(Frame.TEXT))));
+    }
+
+    @Test
+    void clientRequests() {
+        assertEquals(List.of("join room 1"), decode("join,room 1"));
+        assertEquals(List.of("watch lobby"), decode("watch,lobby"));
+        assertEquals(List.of("queue 1500"), decode("queue,1500"));
+        assertEquals(List.of("unqueue"), decode("unqueue"));
+        assertEquals(List.of("hello"), decode("hello"));
+        assertEquals(List.of("ai 1"), decode("ai"));
+        assertEquals(List.of("ai 4"), decode("ai,4"));
+    }
+
+    @Test
+    void rejectsMalformedLines() {
+        for (String line : new String[]{"", "move,", "move,a,b", "move,7", "win,", "join,", "error,x", "ai,0",
+                "session,123", "resume,0123456789abcdef,x", "snapshot,1,,2", "hello,", "pingpong", "nonsense"}) {
+            RecordingSink sink = new RecordingSink();
+            assertFalse(TextCodec.decode(line, sink), line);
+            assertEquals(List.of(), sink.events, line);
+        }
+    }
+
+    /**
+     * 字节数组和字符串走同一个解析过程，结果必须相同
+     */
+    @Test
+    void byteArrayDecodeMatchesString() {
+        String[] lines = {"move,7,8", "move,7,8,3", "move,1,2,3,4,5,6,7", "win,O", "join,abc", "resume,0123456789abcdef,-1",
+                "snapshot,1,2,3", "snapshot", "queue,1200", "hello", "ai,2", "move,x,1", "garbage"};
+        for (String line : lines) {
+            RecordingSink fromString = new RecordingSink();
+            boolean stringResult = TextCodec.decode(line, fromString);
+            // 前后各加一些字节，确认只读取给定的区间
+            byte[] padded = ("##" + line + "\n##").getBytes(StandardCharsets.US_ASCII);
+            RecordingSink fromBytes = new RecordingSink();
+            boolean bytesResult = TextCodec.decode(padded, 2, line.length(), fromBytes);
+            assertEquals(stringResult, bytesResult, line);
+            assertEquals(fromString.events, fromBytes.events, line);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.room;
+
+import org.example.board.BitBoard;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameClockTest {
+
+    private static long seconds(double seconds) {
+        return (long) (seconds * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    void blacksFirstMoveStartsTheClock() {
+        GameClock clock = new GameClock(10_000, 2_000, 0, 0);
+        clock.reset();
+        assertEquals(BitBoard.EMPTY, clock.running());
+        assertEquals(Long.MAX_VALUE, clock.remainingNanos(0));
+
+        // 第一步之前怎么等都不算时间
+        assertTrue(clock.moved(BitBoard.BLACK, seconds(100)));
+        assertEquals(BitBoard.WHITE, clock.running());
+        assertEquals(10_000, clock.displayMillis(BitBoard.BLACK));
+        assertEquals(seconds(7), clock.remainingNanos(seconds(103)));
+    }
+
+    @Test
+    void fischerIncrementIsAddedAfterEachMove() {
+        GameClock clock = new GameClock(10_000, 2_000, 0, 0);
+        clock.reset();
+        clock.moved(BitBoard.BLACK, 0);
+        assertTrue(clock.moved(BitBoard.WHITE, seconds(3)));
+        assertEquals(9_000, clock.displayMillis(BitBoard.WHITE));
+        assertTrue(clock.moved(BitBoard.BLACK, seconds(4)));
+        assertEquals(11_000, clock.displayMillis(BitBoard.BLACK));
+
+        // 没有读秒，用完基本用时就判负
+        assertFalse(clock.moved(BitBoard.WHITE, seconds(13.5)));
+        assertEquals(BitBoard.EMPTY, clock.running());
+    }
+
+    @Test
+    void byoyomiPeriodsAreUsedUpOnePerOverrun() {
+        GameClock clock = new GameClock(5_000, 0, 10_000, 3);
+        clock.reset();
+        clock.moved(BitBoard.BLACK, 0);
+        assertTrue(clock.moved(BitBoard.WHITE, seconds(4)));
+        assertEquals(1_000, clock.displayMillis(BitBoard.WHITE));
+        clock.moved(BitBoard.BLACK, seconds(5));
+
+        // 基本用时用完后在一次读秒内走完，不扣次数
+        assertTrue(clock.moved(BitBoard.WHITE, seconds(15)));
+        assertEquals(10_000, clock.displayMillis(BitBoard.WHITE));
+        assertEquals(3, clock.periods(BitBoard.WHITE));
+        clock.moved(BitBoard.BLACK, seconds(16));
+
+        // 超过两次读秒扣两次
+        assertTrue(clock.moved(BitBoard.WHITE, seconds(41)));
+        assertEquals(1, clock.periods(BitBoard.WHITE));
+        assertEquals(3, clock.periods(BitBoard.BLACK));
+        clock.moved(BitBoard.BLACK, seconds(42));
+        assertEquals(seconds(4), clock.remainingNanos(seconds(48)));
+
+        // 最后一次读秒也用完
+        assertFalse(clock.moved(BitBoard.WHITE, seconds(52.5)));
+    }
+
+    @Test
+    void resetRestoresBothSides() {
+        GameClock clock = new GameClock(0, 0, 10_000, 0);
+        clock.reset();
+        // 配置了读秒就至少有一次
+        assertEquals(1, clock.periods(BitBoard.BLACK));
+        clock.moved(BitBoard.BLACK, 0);
+        assertFalse(clock.moved(BitBoard.WHITE, seconds(20)));
+        assertEquals(BitBoard.EMPTY, clock.running());
+
+        clock.stop();
+        assertEquals(Long.MAX_VALUE, clock.remainingNanos(seconds(30)));
+        clock.reset();
+        assertEquals(1, clock.periods(BitBoard.WHITE));
+        assertEquals(10_000, clock.displayMillis(BitBoard.WHITE));
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.room;
+
+import org.example.board.BitBoard;
+import org.example.protocol.Frame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MatchmakerTest {
+    private final RoomManager rooms = new RoomManager(1);
+    private final SessionRegistry sessions = new SessionRegistry(rooms, rooms.timers());
+    private final Matchmaker matchmaker = new Matchmaker(rooms, sessions);
+
+    MatchmakerTest() {
+        // 停掉匹配线程，由测试指定时刻逐遍匹配
+        matchmaker.close();
+    }
+
+    @AfterEach
+    void shutdown() {
+        rooms.shutdown();
+    }
+
+    private RecordingPeer queue(String id, int rating) {
+        RecordingPeer peer = new RecordingPeer(id);
+        sessions.open(peer);
+        peer.take();
+        matchmaker.enqueue(peer, rating);
+        return peer;
+    }
+
+    private void pass(long afterSeconds) {
+        matchmaker.pass(System.nanoTime() + TimeUnit.SECONDS.toNanos(afterSeconds));
+        matchmaker.startGames();
+    }
+
+    private static List<String> matched(int color, String room) {
+        return List.of(RecordingPeer.text(Frame.matched(color, room)));
+    }
+
+    @Test
+    void closeRatingsPairInQueueOrder() {
+        RecordingPeer first = queue("c1", 1030);
+        RecordingPeer second = queue("c2", 1010);
+        pass(0);
+
+        assertEquals(matched(BitBoard.BLACK, "match-1"), first.frames());
+        assertEquals(matched(BitBoard.WHITE, "match-1"), second.frames());
+        assertEquals(0, matchmaker.size());
+    }
+
+    @Test
+    void bandWidensWhileWaiting() {
+        RecordingPeer low = queue("c1", 1000);
+        RecordingPeer high = queue("c2", 1150);
+        pass(0);
+        assertEquals(List.of(), low.frames());
+        assertEquals(2, matchmaker.size());
+
+        // 每秒放宽WIDEN_PER_SECOND，三秒后能接受160分的差距
+        pass(3);
+        assertEquals(matched(BitBoard.BLACK, "match-1"), low.frames());
+        assertEquals(matched(BitBoard.WHITE, "match-1"), high.frames());
+    }
+
+    @Test
+    void bandNeverExceedsTheMaximum() {
+        queue("c1", 0);
+        queue("c2", Matchmaker.MAX_BAND + 1);
+        pass(3600);
+        assertEquals(2, matchmaker.size());
+    }
+
+    @Test
+    void ratingsOutsideTheRangeAreClamped() {
+        RecordingPeer below = queue("c1", -500);
+        RecordingPeer inRange = queue("c2", 30);
+        RecordingPeer above = queue("c3", 99_999);
+        pass(0);
+
+        assertEquals(matched(BitBoard.BLACK, "match-1"), below.frames());
+        assertEquals(matched(BitBoard.WHITE, "match-1"), inRange.frames());
+        assertEquals(List.of(), above.frames());
+        assertEquals(1, matchmaker.size());
+    }
+
+    @Test
+    void leavingOrRequeueingTakesEffectBeforeTheGameStarts() {
+        RecordingPeer stays = queue("c1", 1000);
+        RecordingPeer leaves = queue("c2", 1000);
+        matchmaker.leave(leaves);
+        pass(0);
+        assertEquals(1, matchmaker.size());
+
+        // 配对之后、建房间之前对方退出，留下的人回到队列
+        RecordingPeer other = queue("c3", 1000);
+        matchmaker.pass(System.nanoTime());
+        matchmaker.leave(other);
+        matchmaker.startGames();
+        assertEquals(List.of(), stays.frames());
+        assertEquals(1, matchmaker.size());
+
+        // 按新的等级分重新排队
+        RecordingPeer late = queue("c4", 3000);
+        matchmaker.enqueue(late, 1020);
+        pass(0);
+        assertEquals(matched(BitBoard.BLACK, "match-1"), stays.frames());
+        assertEquals(matched(BitBoard.WHITE, "match-1"), late.frames());
+        assertEquals(0, matchmaker.size());
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.room;
+
+import org.example.net.Peer;
+import org.example.protocol.Frame;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把收到的每一帧按扩展文本协议记成一行，房间和分发线程都会调用，所以方法都加了同步
+ */
+class RecordingPeer implements Peer {
+    private final String id;
+    private final List<String> frames = new ArrayList<>();
+    private int pendingBytes;
+    private boolean closed;
+
+    RecordingPeer(String id) {
+        this.id = id;
+    }
+
+    /**
+     * 帧的扩展文本编码，去掉换行
+     */
+    static String text(Frame frame) {
+        // 编码结果被所有接收者共享，读之前复制一份位置
+        ByteBuffer buffer = frame.encoded(Frame.TEXT).duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8).trim();
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public synchronized boolean send(Frame frame) {
+        frames.add(text(frame));
+        return true;
+    }
+
+    @Override
+    public synchronized int pendingBytes() {
+        return pendingBytes;
+    }
+
+    synchronized void setPendingBytes(int pendingBytes) {
+        this.pendingBytes = pendingBytes;
+    }
+
+    /**
+     * 替换积压的帧记成"replace "开头的一行，之后积压清零
+     */
+    @Override
+    public synchronized boolean replacePending(Frame frame) {
+        frames.add("replace " + text(frame));
+        pendingBytes = 0;
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    synchronized List<String> frames() {
+        return new ArrayList<>(frames);
+    }
+
+    /**
+     * 取出目前记下的帧并清空
+     */
+    synchronized List<String> take() {
+        List<String> taken = new ArrayList<>(frames);
+        frames.clear();
+        return taken;
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
@@ -0,0 +1,167 @@
+package org.example.room;
+
+import org.example.board.BitBoard;
+import org.example.protocol.ErrorCode;
+import org.example.protocol.Frame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomTest {
+    private final RoomManager rooms = new RoomManager(1);
+
+    @AfterEach
+    void shutdown() {
+        rooms.shutdown();
+    }
+
+    /**
+     * 等房间线程处理完之前投递的所有任务
+     */
+    private static void settle(Room room) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        room.execute(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    private static String error(int code) {
+        return RecordingPeer.text(Frame.error(code));
+    }
+
+    /**
+     * 取出以prefix开头的帧，判定帧由搜索线程异步产生，不参与比较
+     */
+    private static List<String> framesStartingWith(RecordingPeer peer, String prefix) {
+        List<String> frames = new ArrayList<>();
+        for (String frame : peer.take()) {
+            if (frame.startsWith(prefix)) {
+                frames.add(frame);
+            }
+        }
+        return frames;
+    }
+
+    @Test
+    void invalidMovesAreRejectedOnlyToTheSender() throws InterruptedException {
+        RecordingPeer black = new RecordingPeer("c1");
+        RecordingPeer white = new RecordingPeer("c2");
+        RecordingPeer outsider = new RecordingPeer("c3");
+        Room room = rooms.join("r1", black);
+        rooms.join("r1", white);
+
+        room.move(outsider, "outsider", 7, 7);
+        room.move(black, "black", 7, 7);
+        room.move(black, "black", 7, 8);
+        room.move(white, "white", 7, 7);
+        room.move(white, "white", 15, 0);
+        room.move(white, "white", 7, 8);
+        settle(room);
+
+        assertEquals(List.of(error(ErrorCode.NOT_SEATED)), outsider.frames());
+        List<String> blackFrames = black.take();
+        assertEquals(3, blackFrames.size());
+        assertTrue(blackFrames.get(0).startsWith("move,7,7,0"));
+        assertEquals(error(ErrorCode.NOT_YOUR_TURN), blackFrames.get(1));
+        assertTrue(blackFrames.get(2).startsWith("move,7,8,1"));
+        List<String> whiteFrames = white.take();
+        assertEquals(4, whiteFrames.size());
+        assertEquals(error(ErrorCode.OCCUPIED), whiteFrames.get(1));
+        assertEquals(error(ErrorCode.OUT_OF_BOARD), whiteFrames.get(2));
+
+        // 座位绑定在第一次落子的会话上，别人换个连接也下不了这个颜色
+        RecordingPeer third = new RecordingPeer("c4");
+        rooms.join("r1", third);
+        room.move(third, "third", 0, 0);
+        settle(room);
+        assertEquals(List.of(error(ErrorCode.NOT_SEATED)), framesStartingWith(third, "error"));
+    }
+
+    @Test
+    void finishedGameRejectsMovesUntilARematch() throws InterruptedException {
+        RecordingPeer black = new RecordingPeer("c1");
+        RecordingPeer white = new RecordingPeer("c2");
+        Room room = rooms.join("r1", black);
+        rooms.join("r1", white);
+        for (int col = 3; col < 7; col++) {
+            room.move(black, "black", 7, col);
+            room.move(white, "white", 8, col);
+        }
+        room.move(black, "black", 7, 7);
+        room.move(white, "white", 9, 9);
+        settle(room);
+
+        assertEquals(List.of(RecordingPeer.text(Frame.win(8, BitBoard.BLACK))), framesStartingWith(black, "win"));
+        assertEquals(List.of(error(ErrorCode.GAME_OVER)), framesStartingWith(white, "error"));
+
+        // 再次加入同一房间开始新的一局，双方都收到空棋盘
+        rooms.join("r1", white);
+        room.move(white, "white", 7, 7);
+        settle(room);
+        List<String> frames = white.take();
+        assertEquals("snapshot", frames.get(0));
+        assertTrue(frames.get(1).startsWith("move,7,7,0"), frames.get(1));
+        assertEquals("snapshot", black.take().get(0));
+    }
+
+    @Test
+    void finishedGameResetsWhenEveryoneLeaves() throws InterruptedException {
+        RecordingPeer black = new RecordingPeer("c1");
+        RecordingPeer white = new RecordingPeer("c2");
+        Room room = rooms.join(RoomManager.DEFAULT_ROOM, black);
+        rooms.join(RoomManager.DEFAULT_ROOM, white);
+        for (int col = 0; col < 4; col++) {
+            room.move(black, "black", 0, col);
+            room.move(white, "white", 1, col);
+        }
+        room.move(black, "black", 0, 4);
+        rooms.leave(black);
+        rooms.leave(white);
+
+        // 默认房间不会被移除，新来的人直接开始新的一局
+        RecordingPeer next = new RecordingPeer("c3");
+        rooms.join(RoomManager.DEFAULT_ROOM, next);
+        room.move(next, "next", 7, 7);
+        settle(room);
+        List<String> frames = next.take();
+        assertEquals(1, frames.size());
+        assertTrue(frames.get(0).startsWith("move,7,7,0"), frames.get(0));
+    }
+
+    @Test
+    void fullBoardIsADraw() throws InterruptedException {
+        RecordingPeer black = new RecordingPeer("c1");
+        RecordingPeer white = new RecordingPeer("c2");
+        Room room = rooms.join("r1", black);
+        rooms.join("r1", white);
+        // 按(2*行+列)模4的余数分给两方，任何方向都连不到五子；黑方113格，白方112格
+        List<int[]> blackCells = new ArrayList<>();
+        List<int[]> whiteCells = new ArrayList<>();
+        int size = BitBoard.DEFAULT_SIZE;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                (((2 * row + col) % 4) < 2 ? blackCells : whiteCells).add(new int[] {row, col});
+            }
+        }
+        for (int i = 0; i < blackCells.size(); i++) {
+            room.move(black, "black", blackCells.get(i)[0], blackCells.get(i)[1]);
+            if (i < whiteCells.size()) {
+                room.move(white, "white", whiteCells.get(i)[0], whiteCells.get(i)[1]);
+            }
+        }
+        settle(room);
+        assertEquals(size * size, framesStartingWith(black, "move").size());
+        assertEquals(List.of(), framesStartingWith(white, "win"));
+
+        // 下满之后棋局已经结束
+        room.move(white, "white", 0, 0);
+        settle(room);
+        assertEquals(List.of(error(ErrorCode.GAME_OVER)), framesStartingWith(white, "error"));
+    }
+}
@@ -0,0 +1,167 @@
+package org.example.room;
+
+import org.example.board.BitBoard;
+import org.example.protocol.Frame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionRegistryTest {
+    private static final String ROOM = "r1";
+
+    private final RoomManager rooms = new RoomManager(1);
+    private final SessionRegistry sessions = new SessionRegistry(rooms, rooms.timers());
+
+    @AfterEach
+    void shutdown() {
+        rooms.shutdown();
+    }
+
+    /**
+     * 等房间线程处理完之前投递的所有任务
+     */
+    private static void settle(Room room) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        room.execute(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 依次找下了不会连五的空格，得到count步还没分出胜负的着法
+     */
+    private static int[] quietMoves(int count) {
+        BitBoard board = new BitBoard();
+        int size = board.size();
+        int[] cells = new int[count];
+        for (int seq = 0; seq < count; seq++) {
+            for (int cell = 0; ; cell++) {
+                int row = cell / size;
+                int col = cell % size;
+                if (!board.isEmpty(row, col)) {
+                    continue;
+                }
+                if (!board.place(row, col, seq % 2)) {
+                    cells[seq] = cell;
+                    break;
+                }
+                board.remove(row, col);
+            }
+        }
+        return cells;
+    }
+
+    private Session connect(RecordingPeer peer) {
+        Session session = sessions.open(peer);
+        rooms.join(ROOM, peer);
+        sessions.moved(peer, ROOM, false);
+        return session;
+    }
+
+    private static void play(Room room, RecordingPeer peer, Session session, int cell) {
+        int size = BitBoard.DEFAULT_SIZE;
+        room.move(peer, session.name(), cell / size, cell % size);
+    }
+
+    @Test
+    void newConnectionGetsItsToken() {
+        RecordingPeer peer = new RecordingPeer("c1");
+        Session session = sessions.open(peer);
+        assertEquals(List.of(RecordingPeer.text(Frame.session(session.token()))), peer.frames());
+        assertEquals(session, sessions.sessionOf(peer));
+        assertEquals(1, sessions.size());
+    }
+
+    @Test
+    void resumeReplaysOnlyTheMissedMoves() throws InterruptedException {
+        RecordingPeer black = new RecordingPeer("c1");
+        RecordingPeer white = new RecordingPeer("c2");
+        Session blackSession = connect(black);
+        Session whiteSession = connect(white);
+        Room room = rooms.roomOf(black);
+        play(room, black, blackSession, 112);
+        play(room, white, whiteSession, 113);
+        play(room, black, blackSession, 127);
+        settle(room);
+
+        // 黑方断线，白方继续走了一步
+        sessions.close(black);
+        play(room, white, whiteSession, 128);
+        settle(room);
+
+        RecordingPeer back = new RecordingPeer("c3");
+        Session fresh = connect(back);
+        settle(room);
+        back.take();
+        assertTrue(sessions.resume(back, blackSession.token(), 1));
+        settle(room);
+
+        List<String> frames = back.take();
+        assertEquals(RecordingPeer.text(Frame.session(blackSession.token())), frames.get(0));
+        assertEquals(3, frames.size());
+        assertTrue(frames.get(1).startsWith("move,8,7,2"), frames.get(1));
+        assertTrue(frames.get(2).startsWith("move,8,8,3"), frames.get(2));
+        // 新连接自己的会话作废，只剩原来的两个
+        assertEquals(2, sessions.size());
+        assertEquals(blackSession, sessions.sessionOf(back));
+        assertNotEquals(fresh.token(), blackSession.token());
+
+        // 重连后还是黑方的座位
+        play(room, back, blackSession, 142);
+        settle(room);
+        assertTrue(back.take().get(0).startsWith("move,9,7,4"));
+    }
+
+    @Test
+    void missingMoreThanTheRingSendsASnapshot() throws InterruptedException {
+        RecordingPeer black = new RecordingPeer("c1");
+        RecordingPeer white = new RecordingPeer("c2");
+        Session blackSession = connect(black);
+        Session whiteSession = connect(white);
+        Room room = rooms.roomOf(black);
+        int[] cells = quietMoves(Room.RESUME_RING + 6);
+        for (int seq = 0; seq < cells.length; seq++) {
+            if (seq % 2 == 0) {
+                play(room, black, blackSession, cells[seq]);
+            } else {
+                play(room, white, whiteSession, cells[seq]);
+            }
+        }
+        settle(room);
+
+        RecordingPeer back = new RecordingPeer("c3");
+        sessions.open(back);
+        assertTrue(sessions.resume(back, blackSession.token(), 0));
+        settle(room);
+
+        List<String> frames = back.frames();
+        assertEquals(RecordingPeer.text(Frame.session(blackSession.token())), frames.get(1));
+        String snapshot = frames.get(2);
+        assertTrue(snapshot.startsWith("snapshot,"), snapshot);
+        assertEquals(cells.length, snapshot.split(",").length - 1);
+        // 还连着的旧连接被关掉
+        assertTrue(black.isClosed());
+        assertFalse(white.isClosed());
+    }
+
+    @Test
+    void unknownTokenKeepsTheNewSession() throws InterruptedException {
+        RecordingPeer peer = new RecordingPeer("c1");
+        Session session = connect(peer);
+        settle(rooms.roomOf(peer));
+        peer.take();
+
+        assertFalse(sessions.resume(peer, session.token() + 1, 0));
+        assertFalse(sessions.resume(peer, session.token(), 0));
+        assertEquals(List.of(), peer.frames());
+        assertEquals(session, sessions.sessionOf(peer));
+        assertEquals(1, sessions.size());
+    }
+}
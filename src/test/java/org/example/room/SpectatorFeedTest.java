@@ -0,0 +1,101 @@
+package org.example.room;
+
+import org.example.protocol.Frame;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpectatorFeedTest {
+    // 直接在调用线程上分发，不用等分发线程
+    private final AtomicInteger resyncRequests = new AtomicInteger();
+    private final SpectatorFeed feed = new SpectatorFeed(Runnable::run, resyncRequests::incrementAndGet);
+
+    private static Frame snapshot(int... cells) {
+        byte[] bytes = new byte[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            bytes[i] = (byte) cells[i];
+        }
+        return Frame.snapshot(bytes, cells.length);
+    }
+
+    @Test
+    void newSpectatorGetsTheSnapshotThenDeltas() {
+        RecordingPeer peer = new RecordingPeer("w1");
+        feed.add(peer, snapshot(112));
+        feed.publish(Frame.move(1, 7, 8));
+
+        assertEquals(List.of("snapshot,112", "move,7,8,1"), peer.frames());
+        assertEquals(0, resyncRequests.get());
+    }
+
+    @Test
+    void laggingSpectatorSkipsDeltasUntilTheSnapshotArrives() {
+        RecordingPeer slow = new RecordingPeer("slow");
+        RecordingPeer fast = new RecordingPeer("fast");
+        feed.add(slow, snapshot());
+        feed.add(fast, snapshot());
+        slow.take();
+        fast.take();
+
+        slow.setPendingBytes(SpectatorFeed.LAG_LIMIT_BYTES + 1);
+        feed.publish(Frame.move(0, 7, 7));
+        feed.publish(Frame.move(1, 7, 8));
+        // 请求还没处理完，第二步不再重复请求
+        assertEquals(1, resyncRequests.get());
+        assertEquals(List.of(), slow.frames());
+        assertEquals(List.of("move,7,7,0", "move,7,8,1"), fast.take());
+
+        feed.resync(snapshot(112, 113), Frame.decided(1, 0), Frame.win(1, 0));
+        assertEquals(List.of("replace snapshot,112,113", "decided,O", "win,O"), slow.take());
+        assertEquals(List.of(), fast.frames());
+
+        // 追上以后恢复增量
+        feed.publish(Frame.move(2, 8, 8));
+        assertEquals(List.of("move,8,8,2"), slow.frames());
+        assertEquals(List.of("move,8,8,2"), fast.frames());
+    }
+
+    @Test
+    void resyncWithoutDecisionSendsOnlyTheSnapshot() {
+        RecordingPeer slow = new RecordingPeer("slow");
+        feed.add(slow, snapshot());
+        slow.take();
+        slow.setPendingBytes(SpectatorFeed.LAG_LIMIT_BYTES + 1);
+        feed.publish(Frame.move(0, 7, 7));
+
+        feed.resync(snapshot(112), null, null);
+        assertEquals(List.of("replace snapshot,112"), slow.take());
+
+        // 又跟不上时重新请求
+        slow.setPendingBytes(SpectatorFeed.LAG_LIMIT_BYTES + 1);
+        feed.publish(Frame.move(1, 7, 8));
+        assertEquals(2, resyncRequests.get());
+    }
+
+    @Test
+    void removedSpectatorsGetNothing() {
+        RecordingPeer slow = new RecordingPeer("slow");
+        RecordingPeer gone = new RecordingPeer("gone");
+        RecordingPeer stays = new RecordingPeer("stays");
+        feed.add(slow, snapshot());
+        feed.add(gone, snapshot());
+        feed.add(stays, snapshot());
+        slow.take();
+        gone.take();
+        stays.take();
+
+        slow.setPendingBytes(SpectatorFeed.LAG_LIMIT_BYTES + 1);
+        feed.publish(Frame.move(0, 7, 7));
+        feed.remove(slow);
+        feed.remove(gone);
+        feed.resync(snapshot(112), null, null);
+        feed.publish(Frame.move(1, 7, 8));
+
+        assertEquals(List.of(), slow.frames());
+        assertEquals(List.of("move,7,7,0"), gone.frames());
+        assertEquals(List.of("move,7,7,0", "move,7,8,1"), stays.frames());
+    }
+}